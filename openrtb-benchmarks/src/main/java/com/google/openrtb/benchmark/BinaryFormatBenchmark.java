@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonFormats;
+import com.google.openrtb.json.OpenRtbJsonReader;
+import com.google.openrtb.json.OpenRtbJsonWriter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares text JSON with the binary formats from {@link OpenRtbJsonFormats}. The payload sizes
+ * are printed by {@link #main(String[])}, since JMH only measures time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BinaryFormatBenchmark {
+  @Param({ "json", "smile", "cbor" })
+  private String format;
+
+  private OpenRtbJsonReader reader;
+  private OpenRtbJsonWriter writer;
+  private BidResponse resp;
+  private byte[] reqBytes;
+  private ByteArrayOutputStream os;
+
+  @Setup
+  public void setup() throws IOException {
+    OpenRtbJsonFactory factory = OpenRtbJsonFactory.create().setJsonFactory(jsonFactory(format));
+    reader = factory.newReader();
+    writer = factory.newWriter();
+    resp = Payloads.bidResponse();
+    reqBytes = writer.writeBidRequestBytes(Payloads.bidRequest());
+    os = new ByteArrayOutputStream(16 * 1024);
+  }
+
+  @Benchmark
+  public BidRequest readBidRequest() throws IOException {
+    return reader.readBidRequest(reqBytes, 0, reqBytes.length);
+  }
+
+  @Benchmark
+  public int writeBidResponse() throws IOException {
+    os.reset();
+    writer.writeBidResponse(resp, os);
+    return os.size();
+  }
+
+  static JsonFactory jsonFactory(String format) {
+    switch (format) {
+      case "smile":
+        return OpenRtbJsonFormats.newSmileFactory();
+      case "cbor":
+        return OpenRtbJsonFormats.newCborFactory();
+      default:
+        return new JsonFactory();
+    }
+  }
+
+  /**
+   * Prints the size of the benchmark payloads in each format.
+   */
+  public static void main(String[] args) throws IOException {
+    for (String format : new String[] { "json", "smile", "cbor" }) {
+      OpenRtbJsonWriter writer =
+          OpenRtbJsonFactory.create().setJsonFactory(jsonFactory(format)).newWriter();
+      System.out.printf("%-6s BidRequest: %5d bytes, BidResponse: %5d bytes%n", format,
+          writer.writeBidRequestBytes(Payloads.bidRequest()).length,
+          writer.writeBidResponseBytes(Payloads.bidResponse()).length);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.codec.OpenRtbCodec;
+import com.google.openrtb.codec.OpenRtbJsonCodec;
+import com.google.openrtb.codec.OpenRtbProtobufCodec;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link OpenRtbCodec} implementations, reading bid requests and writing
+ * bid responses as an exchange-facing server would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark {
+  @Param({ "json", "protobuf" })
+  private String format;
+
+  private OpenRtbCodec codec;
+  private BidResponse resp;
+  private byte[] reqBytes;
+  private ByteArrayOutputStream os;
+
+  @Setup
+  public void setup() throws IOException {
+    codec = "json".equals(format)
+        ? new OpenRtbJsonCodec(OpenRtbJsonFactory.create())
+        : new OpenRtbProtobufCodec();
+    resp = Payloads.bidResponse();
+    reqBytes = codec.writeBidRequest(Payloads.bidRequest());
+    os = new ByteArrayOutputStream(16 * 1024);
+  }
+
+  @Benchmark
+  public BidRequest readBidRequestBytes() throws IOException {
+    return codec.readBidRequest(reqBytes, 0, reqBytes.length);
+  }
+
+  @Benchmark
+  public BidRequest readBidRequestStream() throws IOException {
+    return codec.readBidRequest(new ByteArrayInputStream(reqBytes));
+  }
+
+  @Benchmark
+  public byte[] writeBidResponseBytes() throws IOException {
+    return codec.writeBidResponse(resp);
+  }
+
+  @Benchmark
+  public int writeBidResponseStream() throws IOException {
+    os.reset();
+    codec.writeBidResponse(resp, os);
+    return os.size();
+  }
+}
@@ -0,0 +1,542 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.App;
+import com.google.openrtb.OpenRtb.BidRequest.Data;
+import com.google.openrtb.OpenRtb.BidRequest.Data.Segment;
+import com.google.openrtb.OpenRtb.BidRequest.Device;
+import com.google.openrtb.OpenRtb.BidRequest.Device.DeviceType;
+import com.google.openrtb.OpenRtb.BidRequest.Geo;
+import com.google.openrtb.OpenRtb.BidRequest.Impression;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Banner;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Native;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.PMP;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.PMP.Deal;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Video;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Video.Linearity;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Video.Protocol;
+import com.google.openrtb.OpenRtb.BidRequest.Publisher;
+import com.google.openrtb.OpenRtb.BidRequest.Site;
+import com.google.openrtb.OpenRtb.BidRequest.User;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtbNative.NativeRequest;
+import com.google.openrtb.Test.Test1;
+import com.google.openrtb.TestExt;
+import com.google.openrtb.json.OpenRtbJsonExtWriter;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonWriter;
+import com.google.protobuf.Message;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates synthetic OpenRTB traffic for benchmarks and load tests, with configurable
+ * distributions for the shape of the messages. The output is deterministic for each seed,
+ * so a corpus can be reproduced anywhere from its configuration.
+ * <p>
+ * Counts (impressions, deals, segments) are drawn from weights indexed by the count, e.g.
+ * {@code setImpCounts(0, 70, 20, 10)} makes 70% of requests with one impression, 20% with two
+ * and 10% with three. String values like domains and IDs are drawn from a limited number of
+ * distinct values, skewed towards the most popular ones like real traffic.
+ * <p>
+ * Extensions use the {@code Test1} messages from the core tests, written in JSON as
+ * {@code "ext":{"test1":"..."}}. Unknown fields only exist in the JSON formats.
+ * <p>
+ * From the command line:
+ * <pre>
+ * java -cp benchmarks.jar com.google.openrtb.benchmark.CorpusGenerator \
+ *     requests|responses json|ndjson|protobuf count file [seed]
+ * </pre>
+ * This class is not threadsafe.
+ */
+public final class CorpusGenerator {
+  private static final int[][] BANNER_SIZES = {
+      { 300, 250 }, { 728, 90 }, { 320, 50 }, { 160, 600 }, { 300, 600 }, { 970, 250 } };
+  private static final int[][] VIDEO_SIZES = { { 640, 480 }, { 1280, 720 }, { 1920, 1080 } };
+  private static final String[] USER_AGENTS = {
+      "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) "
+          + "Chrome/39.0.2171.95 Safari/537.36",
+      "Mozilla/5.0 (iPhone; CPU iPhone OS 8_1_2 like Mac OS X) AppleWebKit/600.1.4 "
+          + "(KHTML, like Gecko) Version/8.0 Mobile/12B440 Safari/600.1.4",
+      "Mozilla/5.0 (Linux; Android 4.4.4; Nexus 5 Build/KTU84P) AppleWebKit/537.36 "
+          + "(KHTML, like Gecko) Chrome/39.0.2171.93 Mobile Safari/537.36",
+      "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_10_1) AppleWebKit/600.2.5 "
+          + "(KHTML, like Gecko) Version/8.0.2 Safari/600.2.5" };
+
+  /**
+   * Output formats.
+   */
+  public enum Format {
+    /** A JSON array of messages, one per line. */
+    JSON,
+    /** Newline-delimited JSON, one message per line. */
+    NDJSON,
+    /** Protobuf binary, each message prefixed by its length like {@code writeDelimitedTo}. */
+    PROTOBUF
+  }
+
+  private final Random random;
+  private final int[] impCounts;
+  private final int[] mediaWeights;
+  private final int[] dealCounts;
+  private final int[] segmentCounts;
+  private final int cardinality;
+  private final int bidPercent;
+  private final int unknownFieldsPercent;
+  private final int extensionLength;
+  private final OpenRtbJsonWriter jsonWriter;
+
+  private CorpusGenerator(Builder builder) {
+    this.random = new Random(builder.seed);
+    this.impCounts = builder.impCounts;
+    this.mediaWeights = builder.mediaWeights;
+    this.dealCounts = builder.dealCounts;
+    this.segmentCounts = builder.segmentCounts;
+    this.cardinality = builder.cardinality;
+    this.bidPercent = builder.bidPercent;
+    this.unknownFieldsPercent = builder.unknownFieldsPercent;
+    this.extensionLength = builder.extensionLength;
+    this.jsonWriter = OpenRtbJsonFactory.create()
+        .register(new Test1Writer(), Test1.class,
+            "BidRequest", "BidRequest.imp", "BidRequest.user", "BidResponse",
+            "BidResponse.seatbid.bid")
+        .newWriter();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Generates the next request.
+   */
+  public BidRequest nextBidRequest() {
+    BidRequest.Builder req = BidRequest.newBuilder()
+        .setId(new UUID(random.nextLong(), random.nextLong()).toString())
+        .setAt(1 + random.nextInt(2))
+        .setTmax(80 + 20 * random.nextInt(5))
+        .addCur("USD");
+    int imps = Math.max(1, sample(impCounts));
+    for (int i = 1; i <= imps; ++i) {
+      req.addImp(nextImp(i));
+    }
+
+    Publisher publisher = Publisher.newBuilder()
+        .setId(pick("pub"))
+        .setName(pick("publisher"))
+        .build();
+    if (random.nextInt(4) == 0) {
+      req.setApp(App.newBuilder()
+          .setId(pick("app"))
+          .setBundle("com.example." + pick("app"))
+          .setPublisher(publisher)
+          .addCat("IAB" + (1 + random.nextInt(26))));
+    } else {
+      String domain = pick("site") + ".example.com";
+      req.setSite(Site.newBuilder()
+          .setId(pick("site"))
+          .setDomain(domain)
+          .setPage("http://" + domain + "/" + pick("page") + ".html")
+          .setPublisher(publisher)
+          .addCat("IAB" + (1 + random.nextInt(26))));
+    }
+
+    req.setDevice(Device.newBuilder()
+        .setUa(USER_AGENTS[skewed(USER_AGENTS.length)])
+        .setIp(random.nextInt(224) + "." + random.nextInt(256) + "." + random.nextInt(256) + ".0")
+        .setDevicetype(random.nextBoolean() ? DeviceType.PC : DeviceType.MOBILE)
+        .setLanguage("en")
+        .setGeo(Geo.newBuilder()
+            .setCountry("USA")
+            .setRegion(pick("region"))
+            .setCity(pick("city"))));
+
+    User.Builder user = req.getUserBuilder().setId(pick("user"));
+    int segments = sample(segmentCounts);
+    if (segments != 0) {
+      Data.Builder data = user.addDataBuilder().setId(pick("dmp")).setName(pick("provider"));
+      for (int i = 0; i < segments; ++i) {
+        data.addSegment(Segment.newBuilder().setId(pick("seg")).setName(pick("segment")));
+      }
+    }
+    if (extensionLength != 0) {
+      user.setExtension(TestExt.testUser, nextExtension());
+      req.setExtension(TestExt.testRequest1, nextExtension());
+    }
+
+    for (int i = random.nextInt(4); i > 0; --i) {
+      req.addBcat("IAB" + (1 + random.nextInt(26)));
+      req.addBadv(pick("blocked") + ".com");
+    }
+    return req.build();
+  }
+
+  /**
+   * Generates a response for some request, with bids for a random subset of its impressions.
+   */
+  public BidResponse nextBidResponse(BidRequest req) {
+    BidResponse.Builder resp = BidResponse.newBuilder().setId(req.getId());
+    SeatBid.Builder seat = SeatBid.newBuilder().setSeat(pick("seat"));
+    for (Impression imp : req.getImpList()) {
+      if (random.nextInt(100) < bidPercent) {
+        seat.addBid(nextBid(req, imp));
+      }
+    }
+    if (seat.getBidCount() != 0) {
+      resp.addSeatbid(seat).setBidid(pick("bid")).setCur("USD");
+    }
+    if (extensionLength != 0) {
+      resp.setExtension(TestExt.testResponse1, nextExtension());
+    }
+    return resp.build();
+  }
+
+  /**
+   * Generates the next native request.
+   */
+  public NativeRequest nextNativeRequest() {
+    NativeRequest.Builder req = NativeRequest.newBuilder()
+        .setVer("1")
+        .setLayout(1 + random.nextInt(7))
+        .setAdunit(1 + random.nextInt(5))
+        .addAssets(NativeRequest.Asset.newBuilder()
+            .setId(1)
+            .setReq(true)
+            .setTitle(NativeRequest.Asset.Title.newBuilder().setLen(90)))
+        .addAssets(NativeRequest.Asset.newBuilder()
+            .setId(2)
+            .setImg(NativeRequest.Asset.Image.newBuilder()
+                .setType(3)
+                .setWmin(1200)
+                .setHmin(627)
+                .addMime("image/jpeg")));
+    if (random.nextBoolean()) {
+      req.addAssets(NativeRequest.Asset.newBuilder()
+          .setId(3)
+          .setData(NativeRequest.Asset.Data.newBuilder().setType(2).setLen(140)));
+    }
+    return req.build();
+  }
+
+  /**
+   * Writes generated requests.
+   */
+  public void writeBidRequests(int count, Format format, OutputStream os) throws IOException {
+    write(count, format, false, os);
+  }
+
+  /**
+   * Writes responses for generated requests (the requests are not written).
+   */
+  public void writeBidResponses(int count, Format format, OutputStream os) throws IOException {
+    write(count, format, true, os);
+  }
+
+  private void write(int count, Format format, boolean responses, OutputStream os)
+      throws IOException {
+    if (format == Format.JSON) {
+      os.write('[');
+    }
+    for (int i = 0; i < count; ++i) {
+      BidRequest req = nextBidRequest();
+      Message msg = responses ? nextBidResponse(req) : req;
+      if (format == Format.PROTOBUF) {
+        msg.writeDelimitedTo(os);
+        continue;
+      }
+
+      byte[] json = responses
+          ? jsonWriter.writeBidResponseBytes((BidResponse) msg)
+          : jsonWriter.writeBidRequestBytes(req);
+      if (unknownFieldsPercent != 0) {
+        json = Payloads.withUnknownFields(json, unknownFieldsPercent);
+      }
+      if (format == Format.JSON && i != 0) {
+        os.write(',');
+      }
+      os.write(json);
+      os.write('\n');
+    }
+    if (format == Format.JSON) {
+      os.write(']');
+      os.write('\n');
+    }
+  }
+
+  private Impression nextImp(int index) {
+    Impression.Builder imp = Impression.newBuilder()
+        .setId(String.valueOf(index))
+        .setTagid(pick("tag"))
+        .setBidfloor(random.nextInt(300) / 100.0)
+        .setBidfloorcur("USD");
+
+    switch (sample(mediaWeights)) {
+      case 0: {
+        int[] size = BANNER_SIZES[skewed(BANNER_SIZES.length)];
+        imp.setBanner(Banner.newBuilder().setW(size[0]).setH(size[1]));
+        break;
+      }
+      case 1: {
+        int[] size = VIDEO_SIZES[skewed(VIDEO_SIZES.length)];
+        imp.setVideo(Video.newBuilder()
+            .addMimes("video/mp4")
+            .addMimes("application/x-shockwave-flash")
+            .setMinduration(5)
+            .setMaxduration(15 * (1 + random.nextInt(4)))
+            .setLinearity(Linearity.LINEAR)
+            .addProtocols(Protocol.VAST_2_0)
+            .addProtocols(Protocol.VAST_3_0)
+            .setW(size[0])
+            .setH(size[1]));
+        break;
+      }
+      default:
+        imp.setNative(Native.newBuilder().setRequest(nextNativeRequest()).setVer("1"));
+    }
+
+    int deals = sample(dealCounts);
+    if (deals != 0) {
+      PMP.Builder pmp = imp.getPmpBuilder().setPrivateAuction(random.nextInt(4) == 0);
+      for (int i = 0; i < deals; ++i) {
+        pmp.addDeals(Deal.newBuilder()
+            .setId(pick("deal"))
+            .setBidfloor(1 + random.nextInt(500) / 100.0)
+            .setAt(1 + random.nextInt(2))
+            .addWseat(pick("seat")));
+      }
+    }
+
+    if (extensionLength != 0) {
+      imp.setExtension(TestExt.testImp, nextExtension());
+    }
+    return imp.build();
+  }
+
+  private Bid nextBid(BidRequest req, Impression imp) {
+    String domain = pick("advertiser") + ".com";
+    Bid.Builder bid = Bid.newBuilder()
+        .setId(pick("bid"))
+        .setImpid(imp.getId())
+        .setPrice(imp.getBidfloor() + random.nextInt(500) / 100.0)
+        .setAdid(pick("ad"))
+        .setNurl("http://adserver.example.com/win?id=${AUCTION_ID}&price=${AUCTION_PRICE}")
+        .setAdm("<a href=\"http://adserver.example.com/click?ad=" + pick("ad")
+            + "&req=" + req.getId() + "&redirect=%{http://" + domain + "/landing}%\">"
+            + "<img src=\"http://cdn.example.com/" + pick("creative") + ".jpg\"/></a>"
+            + "<img src=\"http://adserver.example.com/imp?imp=${AUCTION_IMP_ID}"
+            + "&price=${AUCTION_PRICE}\" width=\"1\" height=\"1\"/>")
+        .addAdomain(domain)
+        .setCid(pick("campaign"))
+        .setCrid(pick("creative"));
+    if (imp.hasBanner()) {
+      bid.setW(imp.getBanner().getW()).setH(imp.getBanner().getH());
+    }
+    if (extensionLength != 0) {
+      bid.setExtension(TestExt.testBid, nextExtension());
+    }
+    return bid.build();
+  }
+
+  private Test1 nextExtension() {
+    char[] chars = new char[extensionLength];
+    for (int i = 0; i < chars.length; ++i) {
+      chars[i] = (char) ('a' + random.nextInt(26));
+    }
+    return Test1.newBuilder().setTest1(new String(chars)).build();
+  }
+
+  private String pick(String prefix) {
+    return prefix + skewed(cardinality);
+  }
+
+  /**
+   * Returns a random index in {@code [0, n)}, where lower indexes are more likely.
+   */
+  private int skewed(int n) {
+    double r = random.nextDouble();
+    return (int) (n * r * r);
+  }
+
+  /**
+   * Returns a random index of {@code weights}, with probability proportional to its weight.
+   */
+  private int sample(int[] weights) {
+    int total = 0;
+    for (int weight : weights) {
+      total += weight;
+    }
+    int r = random.nextInt(total);
+    for (int i = 0; i < weights.length; ++i) {
+      r -= weights[i];
+      if (r < 0) {
+        return i;
+      }
+    }
+    throw new AssertionError();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4) {
+      System.err.println("Usage: CorpusGenerator requests|responses json|ndjson|protobuf "
+          + "count file [seed]");
+      System.exit(1);
+    }
+    boolean responses = "responses".equals(args[0]);
+    Format format = Format.valueOf(args[1].toUpperCase(Locale.ROOT));
+    int count = Integer.parseInt(args[2]);
+    CorpusGenerator generator = newBuilder()
+        .setSeed(args.length > 4 ? Long.parseLong(args[4]) : 1)
+        .build();
+    try (OutputStream os = new BufferedOutputStream(new FileOutputStream(args[3]))) {
+      if (responses) {
+        generator.writeBidResponses(count, format, os);
+      } else {
+        generator.writeBidRequests(count, format, os);
+      }
+    }
+  }
+
+  /**
+   * Configuration of a {@link CorpusGenerator}. The defaults resemble typical display traffic
+   * from a large exchange.
+   */
+  public static final class Builder {
+    private long seed = 1;
+    private int[] impCounts = { 0, 70, 20, 10 };
+    private int[] mediaWeights = { 80, 15, 5 };
+    private int[] dealCounts = { 70, 20, 10 };
+    private int[] segmentCounts = { 30, 20, 20, 10, 10, 5, 5 };
+    private int cardinality = 1000;
+    private int bidPercent = 30;
+    private int unknownFieldsPercent;
+    private int extensionLength;
+
+    private Builder() {
+    }
+
+    public Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /**
+     * Sets the weights of each number of impressions per request, from zero (which is
+     * generated as one impression, since a request needs at least one).
+     */
+    public Builder setImpCounts(int... weights) {
+      this.impCounts = checkWeights(weights);
+      return this;
+    }
+
+    /**
+     * Sets the relative weights of banner, video and native impressions.
+     */
+    public Builder setMediaMix(int banner, int video, int nativ) {
+      this.mediaWeights = checkWeights(new int[] { banner, video, nativ });
+      return this;
+    }
+
+    /**
+     * Sets the weights of each number of deals per impression, from zero.
+     */
+    public Builder setDealCounts(int... weights) {
+      this.dealCounts = checkWeights(weights);
+      return this;
+    }
+
+    /**
+     * Sets the weights of each number of user data segments per request, from zero.
+     */
+    public Builder setSegmentCounts(int... weights) {
+      this.segmentCounts = checkWeights(weights);
+      return this;
+    }
+
+    /**
+     * Sets the number of distinct values for each kind of string, like publisher IDs or
+     * advertiser domains.
+     */
+    public Builder setCardinality(int cardinality) {
+      checkArgument(cardinality > 0, "cardinality must be positive: %s", cardinality);
+      this.cardinality = cardinality;
+      return this;
+    }
+
+    /**
+     * Sets the percentage of impressions that get a bid in responses.
+     */
+    public Builder setBidPercent(int bidPercent) {
+      checkArgument(bidPercent >= 0 && bidPercent <= 100, "Invalid percentage: %s", bidPercent);
+      this.bidPercent = bidPercent;
+      return this;
+    }
+
+    /**
+     * Sets the percentage of unknown fields in JSON output. Zero disables unknown fields.
+     */
+    public Builder setUnknownFieldsPercent(int unknownFieldsPercent) {
+      checkArgument(unknownFieldsPercent >= 0 && unknownFieldsPercent < 100,
+          "Invalid percentage: %s", unknownFieldsPercent);
+      this.unknownFieldsPercent = unknownFieldsPercent;
+      return this;
+    }
+
+    /**
+     * Sets the length of the string in each extension. Zero disables extensions.
+     */
+    public Builder setExtensionLength(int extensionLength) {
+      checkArgument(extensionLength >= 0, "Invalid length: %s", extensionLength);
+      this.extensionLength = extensionLength;
+      return this;
+    }
+
+    public CorpusGenerator build() {
+      return new CorpusGenerator(this);
+    }
+
+    private static int[] checkWeights(int[] weights) {
+      int total = 0;
+      for (int weight : weights) {
+        checkArgument(weight >= 0, "Negative weight: %s", weight);
+        total += weight;
+      }
+      checkArgument(total > 0, "All weights are zero");
+      return Arrays.copyOf(weights, weights.length);
+    }
+  }
+
+  private static final class Test1Writer implements OpenRtbJsonExtWriter<Test1> {
+    @Override public void write(Test1 ext, JsonGenerator gen) throws IOException {
+      gen.writeStringField("test1", ext.getTest1());
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import static com.google.openrtb.json.OpenRtbJsonUtils.getCurrentName;
+
+import com.google.common.base.Charsets;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.Test.Test1;
+import com.google.openrtb.Test.Test2;
+import com.google.openrtb.TestExt;
+import com.google.openrtb.json.OpenRtbJsonExtReaderBase;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonReader;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures extension objects with properties from two readers, interleaved so each property
+ * needs a new pass of the main reader's extension loop. Readers either declare their
+ * properties (direct dispatch) or not (all readers tried for each property).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExtensionReaderBenchmark {
+  private static final String[] NONE = {};
+
+  @Param({ "2", "16" })
+  private int properties;
+  @Param({ "true", "false" })
+  private boolean named;
+  private OpenRtbJsonReader reader;
+  private byte[] json;
+
+  @Setup
+  public void setup() throws IOException {
+    OpenRtbJsonFactory factory = OpenRtbJsonFactory.create()
+        .register(new Test1Reader(named), "BidRequest")
+        .register(new Test2Reader(named), "BidRequest");
+    reader = factory.newReader();
+
+    StringBuilder ext = new StringBuilder(",\"ext\":{");
+    for (int i = 0; i < properties; ++i) {
+      ext.append(i == 0 ? "" : ",")
+          .append(i % 2 == 0 ? "\"test1\":\"" : "\"test2\":\"").append(i).append('"');
+    }
+    ext.append("}}");
+    String req = factory.newWriter().writeBidRequest(Payloads.bidRequest());
+    json = (req.substring(0, req.lastIndexOf('}')) + ext).getBytes(Charsets.UTF_8);
+  }
+
+  @Benchmark
+  public BidRequest read() throws IOException {
+    return reader.readBidRequest(json, 0, json.length);
+  }
+
+  static class Test1Reader extends OpenRtbJsonExtReaderBase<BidRequest.Builder, Test1.Builder> {
+    Test1Reader(boolean named) {
+      super(TestExt.testRequest1, Test1.newBuilder(), named ? new String[]{ "test1" } : NONE);
+    }
+
+    @Override protected boolean read(BidRequest.Builder msg, Test1.Builder ext, JsonParser par)
+        throws IOException {
+      switch (getCurrentName(par)) {
+        case "test1":
+          ext.setTest1(par.nextTextValue());
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+
+  static class Test2Reader extends OpenRtbJsonExtReaderBase<BidRequest.Builder, Test2.Builder> {
+    Test2Reader(boolean named) {
+      super(TestExt.testRequest2, Test2.newBuilder(), named ? new String[]{ "test2" } : NONE);
+    }
+
+    @Override protected boolean read(BidRequest.Builder msg, Test2.Builder ext, JsonParser par)
+        throws IOException {
+      switch (getCurrentName(par)) {
+        case "test2":
+          ext.setTest2(par.nextTextValue());
+          return true;
+        default:
+          return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonReader;
+import com.google.openrtb.json.OpenRtbJsonWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes requests and responses with {@link OpenRtbJsonReader} and
+ * {@link OpenRtbJsonWriter}, for each payload size from {@link Payloads}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonPayloadBenchmark {
+  @Param({ Payloads.SMALL, Payloads.MEDIUM, Payloads.HUGE })
+  private String size;
+
+  private OpenRtbJsonReader reader;
+  private OpenRtbJsonWriter writer;
+  private BidRequest req;
+  private BidResponse resp;
+  private byte[] reqBytes;
+  private byte[] respBytes;
+  private ByteArrayOutputStream os;
+
+  @Setup
+  public void setup() throws IOException {
+    OpenRtbJsonFactory factory = OpenRtbJsonFactory.create();
+    reader = factory.newReader();
+    writer = factory.newWriter();
+    req = Payloads.bidRequest(size);
+    resp = Payloads.bidResponse(size);
+    reqBytes = writer.writeBidRequestBytes(req);
+    respBytes = writer.writeBidResponseBytes(resp);
+    os = new ByteArrayOutputStream(64 * 1024);
+  }
+
+  @Benchmark
+  public BidRequest readBidRequest() throws IOException {
+    return reader.readBidRequest(reqBytes, 0, reqBytes.length);
+  }
+
+  @Benchmark
+  public int writeBidRequest() throws IOException {
+    os.reset();
+    writer.writeBidRequest(req, os);
+    return os.size();
+  }
+
+  @Benchmark
+  public BidResponse readBidResponse() throws IOException {
+    return reader.readBidResponse(respBytes, 0, respBytes.length);
+  }
+
+  @Benchmark
+  public int writeBidResponse() throws IOException {
+    os.reset();
+    writer.writeBidResponse(resp, os);
+    return os.size();
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.common.base.Charsets;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonReader;
+import com.google.protobuf.ByteString;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the input overloads of {@link OpenRtbJsonReader#readBidRequest}, for a payload
+ * that is already available as UTF-8 bytes (as is the case for bytes coming from a socket).
+ * Run with {@code java -jar target/benchmarks.jar JsonReaderBenchmark -prof gc} to also
+ * compare the allocation rate of each overload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonReaderBenchmark {
+  private OpenRtbJsonReader reader;
+  private byte[] bytes;
+  private ByteString byteString;
+  private ByteBuffer heapBuffer;
+  private ByteBuffer directBuffer;
+
+  @Setup
+  public void setup() throws IOException {
+    OpenRtbJsonFactory factory = OpenRtbJsonFactory.create();
+    reader = factory.newReader();
+    bytes = factory.newWriter().writeBidRequest(Payloads.bidRequest()).getBytes(Charsets.UTF_8);
+    byteString = ByteString.copyFrom(bytes);
+    heapBuffer = ByteBuffer.wrap(bytes);
+    directBuffer = ByteBuffer.allocateDirect(bytes.length);
+    directBuffer.put(bytes).flip();
+  }
+
+  @Benchmark
+  public BidRequest charSequence() throws IOException {
+    // Baseline for callers that decode the bytes into a String first
+    return reader.readBidRequest(new String(bytes, Charsets.UTF_8));
+  }
+
+  @Benchmark
+  public BidRequest byteString() throws IOException {
+    return reader.readBidRequest(byteString);
+  }
+
+  @Benchmark
+  public BidRequest inputStream() throws IOException {
+    return reader.readBidRequest(new ByteArrayInputStream(bytes));
+  }
+
+  @Benchmark
+  public BidRequest byteArray() throws IOException {
+    return reader.readBidRequest(bytes, 0, bytes.length);
+  }
+
+  @Benchmark
+  public BidRequest heapByteBuffer() throws IOException {
+    return reader.readBidRequest(heapBuffer);
+  }
+
+  @Benchmark
+  public BidRequest directByteBuffer() throws IOException {
+    return reader.readBidRequest(directBuffer);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link OpenRtbJsonWriter}, writing to a reused UTF-8 byte stream (as a server
+ * does for response bodies) and to a {@code String}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonWriterBenchmark {
+  private OpenRtbJsonWriter writer;
+  private BidRequest req;
+  private BidResponse resp;
+  private ByteArrayOutputStream os;
+
+  @Setup
+  public void setup() {
+    writer = OpenRtbJsonFactory.create().newWriter();
+    req = Payloads.bidRequest();
+    resp = Payloads.bidResponse();
+    os = new ByteArrayOutputStream(16 * 1024);
+  }
+
+  @Benchmark
+  public int bidResponseBytes() throws IOException {
+    os.reset();
+    writer.writeBidResponse(resp, os);
+    return os.size();
+  }
+
+  @Benchmark
+  public String bidResponseString() throws IOException {
+    return writer.writeBidResponse(resp);
+  }
+
+  @Benchmark
+  public int bidRequestBytes() throws IOException {
+    os.reset();
+    writer.writeBidRequest(req, os);
+    return os.size();
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.common.base.Charsets;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Device;
+import com.google.openrtb.json.LazyBidRequest;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares eager and lazy decoding of a {@link BidRequest}, for the common case of a no-bid
+ * decided only from {@code imp} and {@code device}, and for a bid that needs the full request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LazyReaderBenchmark {
+  private OpenRtbJsonReader reader;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() throws IOException {
+    OpenRtbJsonFactory factory = OpenRtbJsonFactory.create();
+    reader = factory.newReader();
+    bytes = factory.newWriter().writeBidRequest(Payloads.bidRequest()).getBytes(Charsets.UTF_8);
+  }
+
+  @Benchmark
+  public Device eager() throws IOException {
+    return reader.readBidRequest(bytes, 0, bytes.length).getDevice();
+  }
+
+  @Benchmark
+  public Device lazy() throws IOException {
+    return reader.readLazyBidRequest(bytes, 0, bytes.length).getRequest().getDevice();
+  }
+
+  @Benchmark
+  public BidRequest lazyFull() throws IOException {
+    LazyBidRequest lazy = reader.readLazyBidRequest(bytes, 0, bytes.length);
+    return lazy.build();
+  }
+}
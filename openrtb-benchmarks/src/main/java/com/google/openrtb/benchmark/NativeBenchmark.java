@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.common.base.Charsets;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Impression;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Native;
+import com.google.openrtb.OpenRtbNative.NativeRequest;
+import com.google.openrtb.OpenRtbNative.NativeResponse;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonReader;
+import com.google.openrtb.json.OpenRtbJsonWriter;
+import com.google.openrtb.json.OpenRtbNativeJsonReader;
+import com.google.openrtb.json.OpenRtbNativeJsonWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes a {@link BidRequest} with several native impressions, where each native
+ * request is embedded as a JSON string; and a standalone {@link NativeRequest} and
+ * {@link NativeResponse}, with {@link OpenRtbNativeJsonReader} and
+ * {@link OpenRtbNativeJsonWriter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NativeBenchmark {
+  private OpenRtbJsonReader reader;
+  private OpenRtbJsonWriter writer;
+  private BidRequest req;
+  private byte[] bytes;
+  private OpenRtbNativeJsonReader nativeReader;
+  private OpenRtbNativeJsonWriter nativeWriter;
+  private NativeRequest nativeReq;
+  private byte[] nativeReqBytes;
+  private NativeResponse nativeResp;
+  private byte[] nativeRespBytes;
+
+  @Setup
+  public void setup() throws IOException {
+    OpenRtbJsonFactory factory = OpenRtbJsonFactory.create();
+    reader = factory.newReader();
+    writer = factory.newWriter();
+    BidRequest.Builder builder = Payloads.bidRequest().toBuilder().clearImp();
+    for (int i = 1; i <= 4; ++i) {
+      builder.addImp(Impression.newBuilder()
+          .setId(String.valueOf(i))
+          .setNative(Native.newBuilder()
+              .setVer("1")
+              .setRequest(NativeRequest.newBuilder()
+                  .setVer("1")
+                  .setLayout(3)
+                  .setAdunit(2)
+                  .setPlcmtcnt(1)
+                  .addAssets(NativeRequest.Asset.newBuilder()
+                      .setId(1)
+                      .setReq(true)
+                      .setTitle(NativeRequest.Asset.Title.newBuilder().setLen(90)))
+                  .addAssets(NativeRequest.Asset.newBuilder()
+                      .setId(2)
+                      .setImg(NativeRequest.Asset.Image.newBuilder()
+                          .setType(3)
+                          .setWmin(1200)
+                          .setHmin(627)
+                          .addMime("image/jpeg")
+                          .addMime("image/png")))
+                  .addAssets(NativeRequest.Asset.newBuilder()
+                      .setId(3)
+                      .setData(NativeRequest.Asset.Data.newBuilder().setType(2).setLen(140)))))
+          .setBidfloor(0.8));
+    }
+    req = builder.build();
+    bytes = writer.writeBidRequest(req).getBytes(Charsets.UTF_8);
+
+    nativeReader = factory.newNativeReader();
+    nativeWriter = factory.newNativeWriter();
+    nativeReq = req.getImp(0).getNative().getRequest();
+    nativeReqBytes = nativeWriter.writeNativeRequest(nativeReq).getBytes(Charsets.UTF_8);
+    nativeResp = NativeResponse.newBuilder()
+        .setVer("1")
+        .addAssets(NativeResponse.Asset.newBuilder()
+            .setId(1)
+            .setTitle(NativeResponse.Asset.Title.newBuilder().setText("Learn about OpenRTB")))
+        .addAssets(NativeResponse.Asset.newBuilder()
+            .setId(2)
+            .setImg(NativeResponse.Asset.Image.newBuilder()
+                .setUrl("http://cdn.adserver.com/img/12345.jpg")
+                .setW(1200)
+                .setH(627)))
+        .addAssets(NativeResponse.Asset.newBuilder()
+            .setId(3)
+            .setData(NativeResponse.Asset.Data.newBuilder()
+                .setValue("The specification for real-time bidding, now with native ads")))
+        .setLink(NativeResponse.Link.newBuilder()
+            .setUrl("http://adserver.com/click?adid=12345")
+            .addClktrck("http://adserver.com/clicktrack?adid=12345"))
+        .addImptracker("http://adserver.com/imp?adid=12345")
+        .build();
+    nativeRespBytes = nativeWriter.writeNativeResponse(nativeResp).getBytes(Charsets.UTF_8);
+  }
+
+  @Benchmark
+  public BidRequest read() throws IOException {
+    return reader.readBidRequest(bytes, 0, bytes.length);
+  }
+
+  @Benchmark
+  public String write() throws IOException {
+    return writer.writeBidRequest(req);
+  }
+
+  @Benchmark
+  public NativeRequest readNativeRequest() throws IOException {
+    return nativeReader.readNativeRequest(nativeReqBytes, 0, nativeReqBytes.length);
+  }
+
+  @Benchmark
+  public String writeNativeRequest() throws IOException {
+    return nativeWriter.writeNativeRequest(nativeReq);
+  }
+
+  @Benchmark
+  public NativeResponse readNativeResponse() throws IOException {
+    return nativeReader.readNativeResponse(nativeRespBytes, 0, nativeRespBytes.length);
+  }
+
+  @Benchmark
+  public String writeNativeResponse() throws IOException {
+    return nativeWriter.writeNativeResponse(nativeResp);
+  }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Content;
+import com.google.openrtb.OpenRtb.BidRequest.Data;
+import com.google.openrtb.OpenRtb.BidRequest.Data.Segment;
+import com.google.openrtb.OpenRtb.BidRequest.Device;
+import com.google.openrtb.OpenRtb.BidRequest.Device.ConnectionType;
+import com.google.openrtb.OpenRtb.BidRequest.Device.DeviceType;
+import com.google.openrtb.OpenRtb.BidRequest.Geo;
+import com.google.openrtb.OpenRtb.BidRequest.Geo.LocationType;
+import com.google.openrtb.OpenRtb.BidRequest.Impression;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.AdPosition;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.ApiFramework;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Banner;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.PMP;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.PMP.Deal;
+import com.google.openrtb.OpenRtb.BidRequest.Producer;
+import com.google.openrtb.OpenRtb.BidRequest.Publisher;
+import com.google.openrtb.OpenRtb.BidRequest.Site;
+import com.google.openrtb.OpenRtb.BidRequest.User;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtb.CreativeAttribute;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Payloads shared by the benchmarks. The messages are modeled after typical display traffic:
+ * a couple of banner impressions with deals, a site with publisher, a device with geo,
+ * and a user with a few data segments.
+ */
+public final class Payloads {
+  public static final String SMALL = "small";
+  public static final String MEDIUM = "medium";
+  public static final String HUGE = "huge";
+  private static final int HUGE_COUNT = 20;
+
+  private Payloads() {
+  }
+
+  public static BidRequest bidRequest() {
+    BidRequest.Builder req = BidRequest.newBuilder()
+        .setId("9f3e8a0c-4d4f-4a6c-9d1c-62bf5f0d7a31")
+        .setSite(Site.newBuilder()
+            .setId("102855")
+            .setDomain("www.example.com")
+            .addCat("IAB3-1")
+            .setPage("http://www.example.com/1234.html")
+            .setRef("http://www.example.com/")
+            .setPublisher(Publisher.newBuilder()
+                .setId("8953")
+                .setName("example.com")
+                .addCat("IAB3-1")
+                .setDomain("example.com"))
+            .setContent(Content.newBuilder()
+                .setId("1234567")
+                .setTitle("Why an OpenRTB payload is rarely small")
+                .setSeries("All About Ad Tech")
+                .setSeason("2")
+                .setEpisode(23)
+                .setUrl("http://www.example.com/videos/rtb.html")
+                .addCat("IAB19-29")
+                .setKeywords("rtb,openrtb,advertising,protocols")
+                .setLen(129)
+                .setLanguage("en")
+                .setProducer(Producer.newBuilder()
+                    .setId("prod23")
+                    .setName("Example Studios")
+                    .setDomain("studios.example.com"))))
+        .setDevice(Device.newBuilder()
+            .setUa("Mozilla/5.0 (Macintosh; Intel Mac OS X 10_10_1) AppleWebKit/537.36 "
+                + "(KHTML, like Gecko) Chrome/39.0.2171.71 Safari/537.36")
+            .setIp("123.145.167.10")
+            .setDevicetype(DeviceType.PC)
+            .setLanguage("en")
+            .setJs(true)
+            .setConnectiontype(ConnectionType.WIFI)
+            .setGeo(Geo.newBuilder()
+                .setLat(37.4220)
+                .setLon(-122.0841)
+                .setType(LocationType.IP)
+                .setCountry("USA")
+                .setRegion("CA")
+                .setCity("Mountain View")
+                .setZip("94043")
+                .setUtcoffset(-480)))
+        .setUser(User.newBuilder()
+            .setId("55816b39711f9b5acf3b90e313ed29e51665623f")
+            .setBuyeruid("545678765467876567898765678987654")
+            .setYob(1981)
+            .setGender("F")
+            .addData(Data.newBuilder()
+                .setId("6")
+                .setName("Data Provider 1")
+                .addSegment(Segment.newBuilder()
+                    .setId("12341318394918")
+                    .setName("auto intenders"))
+                .addSegment(Segment.newBuilder()
+                    .setId("1234131839491234")
+                    .setName("auto enthusiasts"))
+                .addSegment(Segment.newBuilder()
+                    .setId("23423424")
+                    .setName("data-provider1-age")
+                    .setValue("30-40"))))
+        .setAt(1)
+        .setTmax(120)
+        .addCur("USD")
+        .addBcat("IAB25")
+        .addBcat("IAB7-39")
+        .addBcat("IAB8-18")
+        .addBadv("company1.com")
+        .addBadv("company2.com");
+
+    for (int i = 1; i <= 2; ++i) {
+      req.addImp(imp(i));
+    }
+
+    return req.build();
+  }
+
+  public static BidResponse bidResponse() {
+    BidResponse.Builder resp = BidResponse.newBuilder()
+        .setId("9f3e8a0c-4d4f-4a6c-9d1c-62bf5f0d7a31")
+        .setBidid("bid-5d22e1a9")
+        .setCur("USD");
+    SeatBid.Builder seat = resp.addSeatbidBuilder().setSeat("512");
+
+    for (int i = 1; i <= 2; ++i) {
+      seat.addBid(bid(i));
+    }
+
+    return resp.build();
+  }
+
+  /**
+   * Creates a request of some size, for benchmarks that take a {@code size} parameter:
+   * <ul>
+   *   <li>{@code small}: a single impression with only the essential fields</li>
+   *   <li>{@code medium}: the same as {@link #bidRequest()}</li>
+   *   <li>{@code huge}: {@code medium} with 20 impressions, 40 user segments and long
+   *   block lists, similar to the largest requests from exchanges</li>
+   * </ul>
+   */
+  public static BidRequest bidRequest(String size) {
+    switch (size) {
+      case SMALL:
+        return BidRequest.newBuilder()
+            .setId("9f3e8a0c-4d4f-4a6c-9d1c-62bf5f0d7a31")
+            .addImp(Impression.newBuilder()
+                .setId("1")
+                .setBanner(Banner.newBuilder().setW(300).setH(250))
+                .setBidfloor(0.5))
+            .setSite(Site.newBuilder()
+                .setId("102855")
+                .setPage("http://www.example.com/1234.html"))
+            .setDevice(Device.newBuilder()
+                .setUa("Mozilla/5.0 (Windows NT 6.1; WOW64; rv:34.0) Gecko/20100101 Firefox/34.0")
+                .setIp("123.145.167.10"))
+            .setAt(2)
+            .setTmax(100)
+            .build();
+      case MEDIUM:
+        return bidRequest();
+      case HUGE: {
+        BidRequest.Builder req = bidRequest().toBuilder();
+        for (int i = req.getImpCount() + 1; i <= HUGE_COUNT; ++i) {
+          req.addImp(imp(i));
+        }
+        Data.Builder data = req.getUserBuilder().getDataBuilder(0);
+        for (int i = data.getSegmentCount(); i < 2 * HUGE_COUNT; ++i) {
+          data.addSegment(Segment.newBuilder()
+              .setId(String.valueOf(100000 + i))
+              .setName("segment " + i));
+        }
+        for (int i = 1; i <= HUGE_COUNT; ++i) {
+          req.addBcat("IAB" + i).addBadv("blocked" + i + ".example.com");
+        }
+        return req.build();
+      }
+      default:
+        throw new IllegalArgumentException(size);
+    }
+  }
+
+  /**
+   * Creates a response of some size, with bids for the impressions of the request
+   * with the same size from {@link #bidRequest(String)}.
+   */
+  public static BidResponse bidResponse(String size) {
+    switch (size) {
+      case SMALL:
+        return BidResponse.newBuilder()
+            .setId("9f3e8a0c-4d4f-4a6c-9d1c-62bf5f0d7a31")
+            .addSeatbid(SeatBid.newBuilder()
+                .addBid(Bid.newBuilder()
+                    .setId("bid1")
+                    .setImpid("1")
+                    .setPrice(1.25)
+                    .setAdm("<img src=\"http://adserver.com/imp?price=${AUCTION_PRICE}\"/>")))
+            .build();
+      case MEDIUM:
+        return bidResponse();
+      case HUGE: {
+        BidResponse.Builder resp = bidResponse().toBuilder();
+        SeatBid.Builder seat = resp.addSeatbidBuilder().setSeat("513");
+        for (int i = resp.getSeatbid(0).getBidCount() + 1; i <= HUGE_COUNT; ++i) {
+          (i % 2 == 0 ? seat : resp.getSeatbidBuilder(0)).addBid(bid(i));
+        }
+        return resp.build();
+      }
+      default:
+        throw new IllegalArgumentException(size);
+    }
+  }
+
+  private static Impression imp(int i) {
+    return Impression.newBuilder()
+        .setId(String.valueOf(i))
+        .setBanner(Banner.newBuilder()
+            .setW(i == 1 ? 728 : 300)
+            .setH(i == 1 ? 90 : 250)
+            .setPos(AdPosition.ABOVE_THE_FOLD)
+            .addBattr(CreativeAttribute.AUDIO_AUTO_PLAY)
+            .addBattr(CreativeAttribute.AUDIO_USER_INITIATED)
+            .addApi(ApiFramework.MRAID_1))
+        .setTagid("agltb3B1Yi1pbmNyDQsSBFNpdGUY7fD0FAw")
+        .setBidfloor(0.5 * i)
+        .setBidfloorcur("USD")
+        .setPmp(PMP.newBuilder()
+            .setPrivateAuction(false)
+            .addDeals(Deal.newBuilder()
+                .setId("AB-Agency1-0001")
+                .setBidfloor(2.5)
+                .setAt(1)
+                .addWseat("Agency1"))
+            .addDeals(Deal.newBuilder()
+                .setId("XY-Agency2-0001")
+                .setBidfloor(2.0)
+                .setAt(2)
+                .addWseat("Agency2")))
+        .build();
+  }
+
+  private static Bid bid(int i) {
+    return Bid.newBuilder()
+        .setId("bid" + i)
+        .setImpid(String.valueOf(i))
+        .setPrice(9.43 / i)
+        .setAdid("314")
+        .setNurl("http://adserver.com/winnotice?impid=${AUCTION_IMP_ID}&bid=${AUCTION_BID_ID}"
+            + "&price=${AUCTION_PRICE}")
+        .setAdm("<a href=\"http://adserver.com/click?adid=12345&tag=${AUCTION_ID}"
+            + "&redirect=%{http://www.example.com/landing?ref=${AUCTION_SEAT_ID}}%\">"
+            + "<img src=\"http://cdn.adserver.com/img/12345.gif\" width=\"728\" height=\"90\""
+            + " border=\"0\" alt=\"Advertiser Name\"/></a>"
+            + "<img src=\"http://adserver.com/imp?impid=${AUCTION_IMP_ID}"
+            + "&price=${AUCTION_PRICE}\" width=\"1\" height=\"1\"/>")
+        .addAdomain("advertisername.com")
+        .setIurl("http://cdn.adserver.com/img/12345.gif")
+        .setCid("campaign111")
+        .setCrid("creative112")
+        .addAttr(CreativeAttribute.USER_INTERACTIVE)
+        .setW(i == 1 ? 728 : 300)
+        .setH(i == 1 ? 90 : 250)
+        .build();
+  }
+
+  /**
+   * Adds unknown fields to some JSON payload, until they make {@code percent}% of all fields.
+   * The values of these fields cycle between scalars, arrays and nested objects.
+   */
+  public static byte[] withUnknownFields(byte[] json, int percent) throws IOException {
+    JsonFactory jf = new JsonFactory();
+    ByteArrayOutputStream os = new ByteArrayOutputStream(json.length * 2);
+    int known = 0;
+    int unknown = 0;
+    try (JsonParser par = jf.createParser(json);
+        JsonGenerator gen = jf.createGenerator(os)) {
+      while (par.nextToken() != null) {
+        if (par.getCurrentToken() == JsonToken.FIELD_NAME) {
+          ++known;
+          while (unknown * 100 < (known + unknown) * percent) {
+            writeUnknownField(gen, unknown++);
+          }
+        }
+        gen.copyCurrentEvent(par);
+      }
+    }
+    return os.toByteArray();
+  }
+
+  private static void writeUnknownField(JsonGenerator gen, int n) throws IOException {
+    gen.writeFieldName("x_unknown" + n);
+    switch (n % 4) {
+      case 0:
+        gen.writeString("unknown value " + n);
+        break;
+      case 1:
+        gen.writeNumber(n * 1.5);
+        break;
+      case 2:
+        gen.writeStartArray();
+        gen.writeNumber(n);
+        gen.writeString("a");
+        gen.writeStartObject();
+        gen.writeBooleanField("b", true);
+        gen.writeEndObject();
+        gen.writeEndArray();
+        break;
+      default:
+        gen.writeStartObject();
+        gen.writeStringField("id", String.valueOf(n));
+        gen.writeArrayFieldStart("list");
+        gen.writeNumber(1);
+        gen.writeNumber(2);
+        gen.writeEndArray();
+        gen.writeObjectFieldStart("nested");
+        gen.writeNumberField("w", 300);
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.common.base.Charsets;
+import com.google.openrtb.json.OpenRtbJsonUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ways to parse price-like numbers, over an array of 1000 values with a log-normal
+ * distribution around 1.0 and 2-4 decimal places, like typical bid floors and prices.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PriceParsingBenchmark {
+  private JsonFactory jsonFactory;
+  private byte[] json;
+
+  @Setup
+  public void setup() {
+    jsonFactory = new JsonFactory();
+    Random random = new Random(1);
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < 1000; ++i) {
+      double price = Math.exp(random.nextGaussian());
+      int decimals = 2 + random.nextInt(3);
+      sb.append(i == 0 ? "" : ",").append(String.format("%." + decimals + "f", price));
+    }
+    json = sb.append(']').toString().getBytes(Charsets.UTF_8);
+  }
+
+  @Benchmark
+  public double parseDouble() throws IOException {
+    JsonParser par = jsonFactory.createParser(json);
+    try {
+      double sum = 0;
+      par.nextToken();
+      while (par.nextToken() != JsonToken.END_ARRAY) {
+        sum += Double.parseDouble(par.getText());
+      }
+      return sum;
+    } finally {
+      par.close();
+    }
+  }
+
+  @Benchmark
+  public double doubleValue() throws IOException {
+    JsonParser par = jsonFactory.createParser(json);
+    try {
+      double sum = 0;
+      par.nextToken();
+      while (par.nextToken() != JsonToken.END_ARRAY) {
+        sum += OpenRtbJsonUtils.getDoubleValue(par);
+      }
+      return sum;
+    } finally {
+      par.close();
+    }
+  }
+
+  @Benchmark
+  public long microsValue() throws IOException {
+    JsonParser par = jsonFactory.createParser(json);
+    try {
+      long sum = 0;
+      par.nextToken();
+      while (par.nextToken() != JsonToken.END_ARRAY) {
+        sum += OpenRtbJsonUtils.getMicrosValue(par);
+      }
+      return sum;
+    } finally {
+      par.close();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decoding time of a {@link BidRequest} for projections of increasing width.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+  private static final ImmutableMap<String, String[]> PROJECTIONS =
+      ImmutableMap.<String, String[]>builder()
+          .put("minimal", new String[]{
+              "BidRequest.tmax"})
+          .put("narrow", new String[]{
+              "BidRequest.imp.banner", "BidRequest.imp.bidfloor",
+              "BidRequest.device.geo", "BidRequest.tmax"})
+          .put("wide", new String[]{
+              "BidRequest.imp", "BidRequest.device", "BidRequest.site.publisher",
+              "BidRequest.tmax", "BidRequest.at", "BidRequest.bcat", "BidRequest.badv"})
+          .put("full", new String[0])
+          .build();
+
+  @Param({"minimal", "narrow", "wide", "full"})
+  private String projection;
+
+  private OpenRtbJsonReader reader;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() throws IOException {
+    OpenRtbJsonFactory factory = OpenRtbJsonFactory.create();
+    bytes = factory.newWriter().writeBidRequest(Payloads.bidRequest()).getBytes(Charsets.UTF_8);
+    reader = factory.setProjection(PROJECTIONS.get(projection)).newReader();
+  }
+
+  @Benchmark
+  public BidRequest read() throws IOException {
+    return reader.readBidRequest(bytes, 0, bytes.length);
+  }
+}
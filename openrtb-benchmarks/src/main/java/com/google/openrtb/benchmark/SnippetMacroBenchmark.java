@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.snippet.OpenRtbMacros;
+import com.google.openrtb.snippet.SnippetMacroType;
+import com.google.openrtb.snippet.SnippetProcessor;
+import com.google.openrtb.snippet.SnippetProcessorContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the macro lookups of {@link SnippetProcessor} with different numbers of registered
+ * macros: the standard OpenRTB macros, plus custom macros up to {@code macroCount}. The snippet
+ * cache is disabled, so every call scans the snippet for macros. The snippet uses the first
+ * and last registered macros, and has some "${" that don't match any macro.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnippetMacroBenchmark {
+  @Param({ "7", "50", "200" })
+  private int macroCount;
+
+  private SnippetProcessor processor;
+  private SnippetProcessorContext ctx;
+  private String snippet;
+
+  @Setup
+  public void setup() {
+    ImmutableList.Builder<SnippetMacroType> macros = ImmutableList.builder();
+    macros.add(OpenRtbMacros.values());
+    for (int i = OpenRtbMacros.values().length; i < macroCount; ++i) {
+      macros.add(new CustomMacro("${CUSTOM_MACRO_" + i + "}"));
+    }
+    MacroProcessor.registering = macros.build();
+    processor = new MacroProcessor();
+
+    BidRequest req = Payloads.bidRequest();
+    BidResponse resp = Payloads.bidResponse();
+    Bid bid = resp.getSeatbid(0).getBid(0);
+    ctx = new SnippetProcessorContext(req, resp, bid);
+
+    String lastKey = macroCount > OpenRtbMacros.values().length
+        ? "${CUSTOM_MACRO_" + (macroCount - 1) + "}"
+        : OpenRtbMacros.values()[OpenRtbMacros.values().length - 1].key();
+    snippet = "<a href=\"http://adserver.example.com/click?auction=${AUCTION_ID}"
+        + "&custom=" + lastKey + "&price=${AUCTION_PRICE}\">"
+        + "<script>var t = '${NOT_A_MACRO}'; var u = `${t}`;</script>"
+        + "<img src=\"http://cdn.example.com/ad.jpg?imp=${AUCTION_IMP_ID}&x=" + lastKey
+        + "\"/></a>";
+  }
+
+  @Benchmark
+  public String process() {
+    return processor.process(ctx, snippet);
+  }
+
+  static final class CustomMacro implements SnippetMacroType {
+    private final String key;
+
+    CustomMacro(String key) {
+      this.key = key;
+    }
+
+    @Override public String key() {
+      return key;
+    }
+  }
+
+  static final class MacroProcessor extends SnippetProcessor {
+    // registerMacros() is called by the superclass constructor, before any fields are set
+    static List<SnippetMacroType> registering;
+
+    MacroProcessor() {
+      super(0);
+    }
+
+    @Override protected List<SnippetMacroType> registerMacros() {
+      return registering;
+    }
+
+    @Override protected void processMacroAt(
+        SnippetProcessorContext ctx, StringBuilder sb, SnippetMacroType macroDef) {
+      sb.append("value");
+    }
+  }
+}
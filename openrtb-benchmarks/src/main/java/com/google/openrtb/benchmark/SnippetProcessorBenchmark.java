@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonWriter;
+import com.google.openrtb.json.OpenRtbSnippetJsonWriter;
+import com.google.openrtb.snippet.OpenRtbSnippetProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link OpenRtbSnippetProcessor#process(BidRequest, BidResponse.Builder)}, which
+ * expands the macros in all bids of a response. Each invocation processes a fresh builder,
+ * since the processing is in-place; {@link #copy()} measures that overhead alone.
+ * A template cache of zero bytes measures the processing without compiled snippets.
+ * {@link #processAndWrite()} and {@link #writeProcessing()} compare processing followed by
+ * JSON serialization with the {@link OpenRtbSnippetJsonWriter}, which processes the snippets
+ * while writing them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnippetProcessorBenchmark {
+  @Param({ Payloads.SMALL, Payloads.MEDIUM, Payloads.HUGE })
+  private String size;
+
+  @Param({ "0", "16777216" })
+  private int templateCacheBytes;
+
+  private OpenRtbSnippetProcessor processor;
+  private OpenRtbJsonWriter writer;
+  private OpenRtbSnippetJsonWriter snippetWriter;
+  private BidRequest req;
+  private BidResponse resp;
+
+  @Setup
+  public void setup() {
+    processor = new OpenRtbSnippetProcessor(templateCacheBytes);
+    OpenRtbJsonFactory jsonFactory = OpenRtbJsonFactory.create();
+    writer = jsonFactory.newWriter();
+    snippetWriter = jsonFactory.newSnippetWriter(processor);
+    req = Payloads.bidRequest(size);
+    resp = Payloads.bidResponse(size);
+  }
+
+  @Benchmark
+  public BidResponse.Builder copy() {
+    return resp.toBuilder();
+  }
+
+  @Benchmark
+  public BidResponse.Builder process() {
+    BidResponse.Builder builder = resp.toBuilder();
+    processor.process(req, builder);
+    return builder;
+  }
+
+  @Benchmark
+  public byte[] processAndWrite() throws IOException {
+    BidResponse.Builder builder = resp.toBuilder();
+    processor.process(req, builder);
+    return writer.writeBidResponseBytes(builder.build());
+  }
+
+  @Benchmark
+  public byte[] writeProcessing() throws IOException {
+    return snippetWriter.writeBidResponseBytes(req, resp);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonReader;
+import com.google.openrtb.json.OpenRtbJsonTranscoder;
+import com.google.protobuf.CodedOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link OpenRtbJsonTranscoder} with reading a message and serializing it,
+ * for archiving JSON bid requests in the protobuf binary format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TranscoderBenchmark {
+  private OpenRtbJsonReader reader;
+  private OpenRtbJsonTranscoder transcoder;
+  private byte[] json;
+  private ByteArrayOutputStream os;
+  private CodedOutputStream out;
+
+  @Setup
+  public void setup() throws IOException {
+    OpenRtbJsonFactory factory = OpenRtbJsonFactory.create();
+    reader = factory.newReader();
+    transcoder = reader.newTranscoder();
+    json = factory.newWriter().writeBidRequestBytes(Payloads.bidRequest());
+    os = new ByteArrayOutputStream(16 * 1024);
+    out = CodedOutputStream.newInstance(os);
+  }
+
+  @Benchmark
+  public int readAndSerialize() throws IOException {
+    os.reset();
+    reader.readBidRequest(json, 0, json.length).writeTo(out);
+    out.flush();
+    return os.size();
+  }
+
+  @Benchmark
+  public int transcode() throws IOException {
+    os.reset();
+    transcoder.transcodeBidRequest(json, 0, json.length, out);
+    out.flush();
+    return os.size();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Impression;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.util.OpenRtbUtils;
+import com.google.openrtb.util.ProtoUtils;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups from {@link OpenRtbUtils} and {@link ProtoUtils#filter}. The lookups
+ * search for the last impression or bid, which is the worst case for linear searches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UtilsBenchmark {
+  private static final Predicate<Bid.Builder> HAS_ADM = new Predicate<Bid.Builder>() {
+    @Override public boolean apply(Bid.Builder bid) {
+      return bid.hasAdm();
+    }
+  };
+  private static final Predicate<FieldDescriptor> NOT_ADM = new Predicate<FieldDescriptor>() {
+    @Override public boolean apply(FieldDescriptor fd) {
+      return fd.getNumber() != Bid.ADM_FIELD_NUMBER
+          || fd.getContainingType() != Bid.getDescriptor();
+    }
+  };
+
+  @Param({ Payloads.SMALL, Payloads.MEDIUM, Payloads.HUGE })
+  private String size;
+
+  private BidRequest req;
+  private BidResponse resp;
+  private BidResponse.Builder respBuilder;
+  private String lastImpId;
+  private String lastBidId;
+
+  @Setup
+  public void setup() {
+    req = Payloads.bidRequest(size);
+    resp = Payloads.bidResponse(size);
+    respBuilder = resp.toBuilder();
+    lastImpId = req.getImp(req.getImpCount() - 1).getId();
+    SeatBid lastSeat = resp.getSeatbid(resp.getSeatbidCount() - 1);
+    lastBidId = lastSeat.getBid(lastSeat.getBidCount() - 1).getId();
+  }
+
+  @Benchmark
+  public Impression impWithId() {
+    return OpenRtbUtils.impWithId(req, lastImpId);
+  }
+
+  @Benchmark
+  public Bid.Builder bidWithId() {
+    return OpenRtbUtils.bidWithId(respBuilder, lastBidId);
+  }
+
+  @Benchmark
+  public int bidsWith() {
+    return Iterables.size(OpenRtbUtils.bidsWith(respBuilder, HAS_ADM));
+  }
+
+  @Benchmark
+  public BidRequest filterAll() {
+    // Fast path: all fields are retained
+    return ProtoUtils.filter(req, true, ProtoUtils.NOT_EXTENSION);
+  }
+
+  @Benchmark
+  public BidResponse filterSome() {
+    return ProtoUtils.filter(resp, true, NOT_ADM);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.benchmark;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.util.OpenRtbValidator;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link OpenRtbValidator#validate(BidRequest, BidResponse.Builder)} for responses
+ * where all bids are valid, which is the common case (and the one where no bid is removed).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValidatorBenchmark {
+  @Param({ Payloads.SMALL, Payloads.MEDIUM, Payloads.HUGE })
+  private String size;
+
+  private OpenRtbValidator validator;
+  private BidRequest req;
+  private BidResponse resp;
+
+  @Setup
+  public void setup() {
+    validator = new OpenRtbValidator(new MetricRegistry());
+    req = Payloads.bidRequest(size);
+    resp = Payloads.bidResponse(size);
+  }
+
+  @Benchmark
+  public boolean validate() {
+    return validator.validate(req, resp.toBuilder());
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.codec;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Serializes and desserializes OpenRTB messages in some format, like JSON or protobuf.
+ * <p>
+ * Implementations of this interface have to be threadsafe.
+ */
+public interface OpenRtbCodec {
+
+  /**
+   * Returns the content type of this codec's format, e.g. {@code "application/json"}.
+   */
+  String getContentType();
+
+  /**
+   * Desserializes a {@link BidRequest}, provided as a slice of a byte array.
+   */
+  BidRequest readBidRequest(byte[] bytes, int offset, int len) throws IOException;
+
+  /**
+   * Desserializes a {@link BidRequest}, read from an {@link InputStream}.
+   * The stream is not closed.
+   */
+  BidRequest readBidRequest(InputStream is) throws IOException;
+
+  /**
+   * Desserializes a {@link BidResponse}, provided as a slice of a byte array.
+   */
+  BidResponse readBidResponse(byte[] bytes, int offset, int len) throws IOException;
+
+  /**
+   * Desserializes a {@link BidResponse}, read from an {@link InputStream}.
+   * The stream is not closed.
+   */
+  BidResponse readBidResponse(InputStream is) throws IOException;
+
+  /**
+   * Serializes a {@link BidRequest}, returned as a byte array.
+   */
+  byte[] writeBidRequest(BidRequest req) throws IOException;
+
+  /**
+   * Serializes a {@link BidRequest} into an {@link OutputStream}, which is not closed.
+   */
+  void writeBidRequest(BidRequest req, OutputStream os) throws IOException;
+
+  /**
+   * Serializes a {@link BidResponse}, returned as a byte array.
+   */
+  byte[] writeBidResponse(BidResponse resp) throws IOException;
+
+  /**
+   * Serializes a {@link BidResponse} into an {@link OutputStream}, which is not closed.
+   */
+  void writeBidResponse(BidResponse resp, OutputStream os) throws IOException;
+}
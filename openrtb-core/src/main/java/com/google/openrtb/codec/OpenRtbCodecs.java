@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.codec;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.net.MediaType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Selects an {@link OpenRtbCodec} by content type, for example from the {@code Content-Type}
+ * or {@code Accept} headers of a HTTP request. Content types are matched by their type and
+ * subtype, ignoring case and parameters like {@code charset}.
+ * <p>
+ * This class is not threadsafe for {@link #register(OpenRtbCodec, String...)}; you should
+ * register all codecs before concurrent calls to {@link #get(String)}.
+ */
+public class OpenRtbCodecs {
+  private final Map<String, OpenRtbCodec> codecs = new LinkedHashMap<>();
+
+  protected OpenRtbCodecs() {
+  }
+
+  /**
+   * Creates an empty instance.
+   */
+  public static OpenRtbCodecs create() {
+    return new OpenRtbCodecs();
+  }
+
+  /**
+   * Registers a codec for some content types. If none is provided, the codec is registered
+   * for its own {@link OpenRtbCodec#getContentType()}. A codec registered later for the same
+   * content type replaces the previous one.
+   */
+  public OpenRtbCodecs register(OpenRtbCodec codec, String... contentTypes) {
+    checkNotNull(codec);
+    if (contentTypes.length == 0) {
+      codecs.put(normalize(codec.getContentType()), codec);
+    }
+    for (String contentType : contentTypes) {
+      codecs.put(normalize(contentType), codec);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the codec for some content type, or {@code null} if no codec is registered
+   * for that type or if the content type can't be parsed.
+   */
+  public @Nullable OpenRtbCodec get(String contentType) {
+    try {
+      return codecs.get(normalize(contentType));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static String normalize(String contentType) {
+    MediaType mediaType = MediaType.parse(contentType);
+    return mediaType.type() + '/' + mediaType.subtype();
+  }
+}
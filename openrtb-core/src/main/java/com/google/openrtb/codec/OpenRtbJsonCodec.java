@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.codec;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.json.OpenRtbJsonFactory;
+import com.google.openrtb.json.OpenRtbJsonReader;
+import com.google.openrtb.json.OpenRtbJsonWriter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * {@link OpenRtbCodec} for JSON, using the {@link OpenRtbJsonReader} and
+ * {@link OpenRtbJsonWriter} from a {@link OpenRtbJsonFactory}, with all its extensions.
+ * <p>
+ * The content type follows the format of the writer's {@link JsonFactory}:
+ * {@link #CONTENT_TYPE} for JSON, {@link #SMILE_CONTENT_TYPE} for Smile,
+ * {@link #CBOR_CONTENT_TYPE} for CBOR, or {@code application/x-jackson-<format>}
+ * for other Jackson formats.
+ * <p>
+ * This class is threadsafe.
+ */
+public class OpenRtbJsonCodec implements OpenRtbCodec {
+  public static final String CONTENT_TYPE = "application/json";
+  public static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+  public static final String CBOR_CONTENT_TYPE = "application/cbor";
+
+  private final OpenRtbJsonReader reader;
+  private final OpenRtbJsonWriter writer;
+  private final String contentType;
+
+  public OpenRtbJsonCodec(OpenRtbJsonFactory factory) {
+    this(factory.newReader(), factory.newWriter());
+  }
+
+  public OpenRtbJsonCodec(OpenRtbJsonReader reader, OpenRtbJsonWriter writer) {
+    this.reader = checkNotNull(reader);
+    this.writer = checkNotNull(writer);
+    this.contentType = contentType(writer.factory().getJsonFactory().getFormatName());
+  }
+
+  @Override public String getContentType() {
+    return contentType;
+  }
+
+  @Override public BidRequest readBidRequest(byte[] bytes, int offset, int len)
+      throws IOException {
+    return reader.readBidRequest(bytes, offset, len);
+  }
+
+  @Override public BidRequest readBidRequest(InputStream is) throws IOException {
+    JsonParser par = createParser(is);
+    try {
+      return reader.readBidRequest(par).build();
+    } finally {
+      par.close();
+    }
+  }
+
+  @Override public BidResponse readBidResponse(byte[] bytes, int offset, int len)
+      throws IOException {
+    return reader.readBidResponse(bytes, offset, len);
+  }
+
+  @Override public BidResponse readBidResponse(InputStream is) throws IOException {
+    JsonParser par = createParser(is);
+    try {
+      return reader.readBidResponse(par).build();
+    } finally {
+      par.close();
+    }
+  }
+
+  @Override public byte[] writeBidRequest(BidRequest req) throws IOException {
+    return writer.writeBidRequestBytes(req);
+  }
+
+  @Override public void writeBidRequest(BidRequest req, OutputStream os) throws IOException {
+    writer.writeBidRequest(req, os);
+  }
+
+  @Override public byte[] writeBidResponse(BidResponse resp) throws IOException {
+    return writer.writeBidResponseBytes(resp);
+  }
+
+  @Override public void writeBidResponse(BidResponse resp, OutputStream os) throws IOException {
+    writer.writeBidResponse(resp, os);
+  }
+
+  // Compares names, since the Smile and CBOR modules are optional dependencies
+  private static String contentType(String formatName) {
+    switch (formatName) {
+      case JsonFactory.FORMAT_NAME_JSON:
+        return CONTENT_TYPE;
+      case "Smile":
+        return SMILE_CONTENT_TYPE;
+      case "CBOR":
+        return CBOR_CONTENT_TYPE;
+      default:
+        return "application/x-jackson-" + formatName.toLowerCase(Locale.ROOT);
+    }
+  }
+
+  private JsonParser createParser(InputStream is) throws IOException {
+    // Closing the parser recycles its buffers, but the stream belongs to the caller
+    return reader.factory().getJsonFactory().createParser(is)
+        .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+  }
+}
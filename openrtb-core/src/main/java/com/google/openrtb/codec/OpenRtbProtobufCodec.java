@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.codec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * {@link OpenRtbCodec} for the protobuf binary format of {@code openrtb.proto}.
+ * Extensions are parsed if they are registered in the {@link ExtensionRegistryLite}
+ * provided to the constructor; other extensions are preserved as unknown fields.
+ * <p>
+ * Streams are copied to or from a per-thread scratch buffer, and the messages are parsed
+ * or written by array-backed {@link com.google.protobuf.CodedInputStream} and
+ * {@link CodedOutputStream} instances, that don't allocate their own buffers. Buffers grown
+ * over 64Kb are dropped after use, so idle threads don't keep them. Messages read from streams
+ * are limited to {@link #DEFAULT_MAX_MESSAGE_SIZE} bytes (the same as
+ * {@link com.google.protobuf.CodedInputStream}), unless another limit is provided.
+ * <p>
+ * This class is threadsafe.
+ */
+public class OpenRtbProtobufCodec implements OpenRtbCodec {
+  public static final String CONTENT_TYPE = "application/x-protobuf";
+  public static final int DEFAULT_MAX_MESSAGE_SIZE = 64 << 20;
+  private static final int INITIAL_SCRATCH_SIZE = 4096;
+  private static final int MAX_SCRATCH_SIZE = 1 << 16;
+  private static final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+    @Override protected byte[] initialValue() {
+      return new byte[INITIAL_SCRATCH_SIZE];
+    }
+  };
+
+  private final ExtensionRegistryLite registry;
+  private final int maxMessageSize;
+
+  /**
+   * Creates a codec that doesn't parse any extensions.
+   */
+  public OpenRtbProtobufCodec() {
+    this(ExtensionRegistryLite.getEmptyRegistry());
+  }
+
+  public OpenRtbProtobufCodec(ExtensionRegistryLite registry) {
+    this(registry, DEFAULT_MAX_MESSAGE_SIZE);
+  }
+
+  /**
+   * Creates a codec with a custom limit for the size of messages read from streams.
+   * Longer streams fail with {@link InvalidProtocolBufferException}.
+   */
+  public OpenRtbProtobufCodec(ExtensionRegistryLite registry, int maxMessageSize) {
+    checkArgument(maxMessageSize > 0 && maxMessageSize < Integer.MAX_VALUE,
+        "Invalid maxMessageSize: %s", maxMessageSize);
+    this.registry = checkNotNull(registry);
+    this.maxMessageSize = maxMessageSize;
+  }
+
+  @Override public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  @Override public BidRequest readBidRequest(byte[] bytes, int offset, int len)
+      throws IOException {
+    return BidRequest.PARSER.parseFrom(bytes, offset, len, registry);
+  }
+
+  @Override public BidRequest readBidRequest(InputStream is) throws IOException {
+    return read(BidRequest.PARSER, is);
+  }
+
+  @Override public BidResponse readBidResponse(byte[] bytes, int offset, int len)
+      throws IOException {
+    return BidResponse.PARSER.parseFrom(bytes, offset, len, registry);
+  }
+
+  @Override public BidResponse readBidResponse(InputStream is) throws IOException {
+    return read(BidResponse.PARSER, is);
+  }
+
+  @Override public byte[] writeBidRequest(BidRequest req) {
+    return req.toByteArray();
+  }
+
+  @Override public void writeBidRequest(BidRequest req, OutputStream os) throws IOException {
+    write(req, os);
+  }
+
+  @Override public byte[] writeBidResponse(BidResponse resp) {
+    return resp.toByteArray();
+  }
+
+  @Override public void writeBidResponse(BidResponse resp, OutputStream os) throws IOException {
+    write(resp, os);
+  }
+
+  private <M extends MessageLite> M read(Parser<M> parser, InputStream is) throws IOException {
+    byte[] buf = scratch.get();
+    int len = 0;
+    try {
+      for (int n; (n = is.read(buf, len, buf.length - len)) != -1; ) {
+        len += n;
+        if (len > maxMessageSize) {
+          throw new InvalidProtocolBufferException(
+              "Message exceeds the size limit of " + maxMessageSize + " bytes");
+        }
+        if (len == buf.length) {
+          // Grows up to one byte over the limit, enough to detect longer streams
+          buf = Arrays.copyOf(buf, (int) Math.min(len * 2L, maxMessageSize + 1L));
+          scratch.set(buf);
+        }
+      }
+      // Parsing copies all bytes/string fields, so the buffer can be reused
+      return parser.parseFrom(buf, 0, len, registry);
+    } finally {
+      if (buf.length > MAX_SCRATCH_SIZE) {
+        scratch.remove();
+      }
+    }
+  }
+
+  private static void write(MessageLite msg, OutputStream os) throws IOException {
+    int size = msg.getSerializedSize();
+    byte[] buf = scratch.get();
+    if (size > buf.length) {
+      buf = new byte[size];
+      scratch.set(buf);
+    }
+    try {
+      CodedOutputStream cos = CodedOutputStream.newInstance(buf, 0, size);
+      msg.writeTo(cos);
+      cos.checkNoSpaceLeft();
+      os.write(buf, 0, size);
+    } finally {
+      if (buf.length > MAX_SCRATCH_SIZE) {
+        scratch.remove();
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package com.google.openrtb.json;
 
 import static com.google.openrtb.json.OpenRtbJsonUtils.endObject;
+import static com.google.openrtb.json.OpenRtbJsonUtils.getCurrentName;
 import static com.google.openrtb.json.OpenRtbJsonUtils.startObject;
 
 import com.google.protobuf.GeneratedMessage.ExtendableBuilder;
@@ -24,7 +25,12 @@ import com.google.protobuf.GeneratedMessage.ExtendableBuilder;
 import com.fasterxml.jackson.core.JsonParser;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
 /**
  * Desserializes OpenRTB messages from JSON.
@@ -40,26 +46,107 @@ public abstract class AbstractOpenRtbJsonReader {
     return factory;
   }
 
+  /**
+   * Creates a parser for the remaining content of a {@link ByteBuffer}, without modifying its
+   * position. Array-backed buffers are parsed in-place; other buffers are streamed with bulk
+   * copies into the parser's own input buffer.
+   */
+  final JsonParser createParser(ByteBuffer buf) throws IOException {
+    return buf.hasArray()
+        ? factory.getJsonFactory().createParser(
+            buf.array(), buf.arrayOffset() + buf.position(), buf.remaining())
+        : factory.getJsonFactory().createParser(new ByteBufferInputStream(buf));
+  }
+
+  /**
+   * Returns the names of the fields selected by the factory's projection for the object
+   * at {@code path}, or {@code null} if all fields are selected.
+   *
+   * @see OpenRtbJsonFactory#setProjection(String...)
+   */
+  protected final @Nullable Set<String> projection(String path) {
+    return factory.getProjection(path);
+  }
+
+  /**
+   * Checks if a field is selected by a projection. If not selected, the field's value
+   * is skipped, including any nested objects or arrays.
+   *
+   * @param par JSON parser, positioned at the field's value
+   * @param projection Selected fields, from {@link #projection(String)}
+   * @param fieldName Name of the field
+   * @return {@code true} if the field is selected and its value should be desserialized
+   */
+  protected final boolean selected(JsonParser par, @Nullable Set<String> projection,
+      String fieldName) throws IOException {
+    if (projection == null || projection.contains(fieldName)) {
+      return true;
+    }
+    par.skipChildren();
+    return false;
+  }
+
+  /**
+   * Special case for fields that are not part of the model. The default implementation skips
+   * the field's value, including any nested objects or arrays, so the parsing can continue
+   * with the next field; it also counts the field if metrics are enabled. Subclasses can
+   * override this to count or log unknown fields, or to reject them by throwing an exception.
+   *
+   * @param par JSON parser, positioned at the unknown field's value
+   * @param path Path of the object that contains the field, e.g. "BidRequest.imp"
+   * @param fieldName Name of the unknown field
+   */
+  protected void readUnknownField(JsonParser par, String path, String fieldName)
+      throws IOException {
+    OpenRtbJsonMetrics metrics = factory.getMetrics();
+    if (metrics != null) {
+      metrics.unknownField(path);
+    }
+    par.skipChildren();
+  }
+
   protected <EB extends ExtendableBuilder<?, EB>>
   void readExtensions(EB ext, JsonParser par, String path) throws IOException {
     startObject(par);
-    @SuppressWarnings("unchecked")
+    Map<String, OpenRtbJsonExtReader<EB>> namedReaders = factory.getNamedReaders(path);
     Collection<OpenRtbJsonExtReader<EB>> extReaders = factory.getReaders(path);
+    OpenRtbJsonExtContext context = new OpenRtbJsonExtContext();
+
+    fields:
+    while (endObject(par)) {
+      OpenRtbJsonExtReader<EB> namedReader = namedReaders.get(getCurrentName(par));
+      if (namedReader != null && read(namedReader, ext, par, context)) {
+        continue;
+      }
 
-    while (true) {
+      // Readers that don't declare their properties: try all readers
       boolean someFieldRead = false;
       for (OpenRtbJsonExtReader<EB> extReader : extReaders) {
-        someFieldRead |= extReader.read(ext, par);
+        someFieldRead |= read(extReader, ext, par, context);
 
         if (!endObject(par)) {
-          return;
+          break fields;
         }
       }
 
       if (!someFieldRead) {
+        OpenRtbJsonMetrics metrics = factory.getMetrics();
+        if (metrics != null) {
+          metrics.unhandledExtension(path);
+        }
         throw new IOException("Unhandled extension");
       }
       // Else loop, try all readers again
     }
+
+    context.close(ext);
+  }
+
+  private static <EB extends ExtendableBuilder<?, EB>> boolean read(
+      OpenRtbJsonExtReader<EB> extReader, EB ext, JsonParser par, OpenRtbJsonExtContext context)
+      throws IOException {
+    return extReader instanceof OpenRtbJsonExtReaderBase<?, ?>
+        ? ((OpenRtbJsonExtReaderBase<EB, ?>) extReader).read(ext, par, context)
+        : extReader.read(ext, par);
   }
 }
@@ -21,6 +21,7 @@ import com.google.protobuf.GeneratedMessage.ExtendableMessage;
 import com.google.protobuf.Message;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 
 import java.io.IOException;
 import java.util.Map;
@@ -29,6 +30,7 @@ import java.util.Map;
  * Serializes OpenRTB messages to JSON.
  */
 public class AbstractOpenRtbJsonWriter {
+  private static final SerializedString EXT = new SerializedString("ext");
   private final OpenRtbJsonFactory factory;
   private final boolean requiredAlways = false;
 
@@ -42,25 +44,32 @@ public class AbstractOpenRtbJsonWriter {
 
   protected <EM extends ExtendableMessage<EM>>
   void writeExtensions(EM msg, JsonGenerator gen, String path) throws IOException {
+    OpenRtbJsonFactory.ExtWriters extWriters = factory.getWriters(path);
+    if (extWriters == null) {
+      return;
+    }
     boolean openExt = false;
-    StringBuilder fullPath = new StringBuilder(path).append(':');
-    int pathMsg = fullPath.length();
 
-    for (Map.Entry<FieldDescriptor, Object> entry : msg.getAllFields().entrySet()) {
-      FieldDescriptor fd = entry.getKey();
-      if (fd.isExtension() && entry.getValue() instanceof Message) {
-        Message extMsg = (Message) entry.getValue();
-        fullPath.setLength(pathMsg);
-        fullPath.append(extMsg.getClass().getName());
-        @SuppressWarnings("unchecked")
-        OpenRtbJsonExtWriter<Message> extWriter = factory.getWriter(fullPath.toString());
-        if (extWriter != null) {
-          if (!openExt) {
-            openExt = true;
-            gen.writeFieldName("ext");
-            gen.writeStartObject();
+    for (int i = 0; i < extWriters.fields.size(); ++i) {
+      FieldDescriptor fd = extWriters.fields.get(i);
+      if (msg.hasField(fd)) {
+        openExt = openExt(openExt, gen);
+        write(extWriters.fieldWriters.get(i), (Message) msg.getField(fd), gen);
+      }
+    }
+
+    // Writers registered only by class: need to scan the fields to find the extensions
+    if (!extWriters.classWriters.isEmpty()) {
+      for (Map.Entry<FieldDescriptor, Object> entry : msg.getAllFields().entrySet()) {
+        FieldDescriptor fd = entry.getKey();
+        if (fd.isExtension() && entry.getValue() instanceof Message) {
+          Message extMsg = (Message) entry.getValue();
+          OpenRtbJsonExtWriter<?> extWriter =
+              extWriters.classWriters.get(extMsg.getClass().getName());
+          if (extWriter != null) {
+            openExt = openExt(openExt, gen);
+            write(extWriter, extMsg, gen);
           }
-          extWriter.write(extMsg, gen);
         }
       }
     }
@@ -70,6 +79,20 @@ public class AbstractOpenRtbJsonWriter {
     }
   }
 
+  private static boolean openExt(boolean openExt, JsonGenerator gen) throws IOException {
+    if (!openExt) {
+      gen.writeFieldName(EXT);
+      gen.writeStartObject();
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void write(OpenRtbJsonExtWriter<?> extWriter, Message extMsg, JsonGenerator gen)
+      throws IOException {
+    ((OpenRtbJsonExtWriter<Message>) extWriter).write(extMsg, gen);
+  }
+
   protected boolean checkRequired(boolean hasProperty) {
     return requiredAlways || hasProperty;
   }
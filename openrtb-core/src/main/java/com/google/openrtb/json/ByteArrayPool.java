@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of byte arrays, in size classes that are powers of two. Arrays larger than the
+ * largest size class are allocated on demand, and never pooled. Each size class keeps
+ * a bounded number of free arrays, so the memory held by an idle pool is also bounded.
+ * <p>
+ * This class is threadsafe.
+ */
+final class ByteArrayPool {
+  static final int MIN_SIZE_SHIFT = 10; // 1Kb
+  static final int MAX_SIZE_SHIFT = 20; // 1Mb
+
+  private final Bucket[] buckets = new Bucket[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+  private final int maxArraysPerBucket;
+
+  ByteArrayPool(int maxArraysPerBucket) {
+    checkArgument(maxArraysPerBucket >= 0);
+    this.maxArraysPerBucket = maxArraysPerBucket;
+    for (int i = 0; i < buckets.length; ++i) {
+      buckets[i] = new Bucket();
+    }
+  }
+
+  /**
+   * Returns an array with at least {@code minSize} bytes, and unspecified content.
+   */
+  byte[] acquire(int minSize) {
+    int index = bucketIndex(minSize);
+    if (index >= buckets.length) {
+      return new byte[minSize];
+    }
+    byte[] array = buckets[index].free.poll();
+    if (array == null) {
+      return new byte[1 << (index + MIN_SIZE_SHIFT)];
+    }
+    buckets[index].size.decrementAndGet();
+    return array;
+  }
+
+  /**
+   * Returns an array to the pool. Only arrays obtained from {@link #acquire(int)} should
+   * be released, and never used after that.
+   */
+  void release(byte[] array) {
+    int index = bucketIndex(array.length);
+    if (index < buckets.length && array.length == 1 << (index + MIN_SIZE_SHIFT)) {
+      Bucket bucket = buckets[index];
+      if (bucket.size.incrementAndGet() <= maxArraysPerBucket) {
+        bucket.free.offer(array);
+      } else {
+        bucket.size.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Index of the smallest size class that fits {@code size} bytes.
+   */
+  static int bucketIndex(int size) {
+    return size <= 1 << MIN_SIZE_SHIFT
+        ? 0
+        : 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+  }
+
+  private static final class Bucket {
+    final Queue<byte[]> free = new ConcurrentLinkedQueue<>();
+    final AtomicInteger size = new AtomicInteger();
+  }
+}
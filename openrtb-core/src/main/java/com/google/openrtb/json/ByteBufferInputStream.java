@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} that reads the remaining bytes of a {@link ByteBuffer}, using bulk
+ * transfers. Only needed for buffers without an accessible array (e.g. direct buffers);
+ * the buffer passed to the constructor is duplicated, so its position is never modified.
+ * <p>
+ * This class is not threadsafe.
+ */
+final class ByteBufferInputStream extends InputStream {
+  private final ByteBuffer buf;
+
+  public ByteBufferInputStream(ByteBuffer buf) {
+    this.buf = checkNotNull(buf).duplicate();
+  }
+
+  @Override
+  public int read() {
+    return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] bytes, int off, int len) {
+    checkPositionIndexes(off, off + len, bytes.length);
+    if (len == 0) {
+      return 0;
+    }
+    if (!buf.hasRemaining()) {
+      return -1;
+    }
+    int bytesToRead = Math.min(len, buf.remaining());
+    buf.get(bytes, off, bytesToRead);
+    return bytesToRead;
+  }
+
+  @Override
+  public long skip(long n) {
+    if (n <= 0) {
+      return 0;
+    }
+    int bytesToSkip = (int) Math.min(buf.remaining(), n); // safe because remaining is an int
+    buf.position(buf.position() + bytesToSkip);
+    return bytesToSkip;
+  }
+
+  @Override
+  public int available() {
+    return buf.remaining();
+  }
+}
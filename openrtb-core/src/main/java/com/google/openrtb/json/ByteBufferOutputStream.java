@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputStream} that writes into a {@link ByteBuffer}, using bulk transfers and
+ * advancing the buffer's position. Writing past the buffer's limit throws
+ * {@link BufferOverflowException}.
+ * <p>
+ * This class is not threadsafe.
+ */
+final class ByteBufferOutputStream extends OutputStream {
+  private final ByteBuffer buf;
+
+  public ByteBufferOutputStream(ByteBuffer buf) {
+    this.buf = checkNotNull(buf);
+  }
+
+  @Override
+  public void write(int b) {
+    buf.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int off, int len) {
+    buf.put(bytes, off, len);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * Desserializes a {@link BidRequest} from JSON that arrives in chunks, for example in the
+ * event loop of a non-blocking server. Each chunk is appended to an internal buffer and
+ * scanned as soon as it's fed, tracking strings and nesting so the end of the request's
+ * object is detected without waiting for the end of the input; the request is then
+ * desserialized in-place from the buffer, with no further copies.
+ * <p>
+ * Created by {@link OpenRtbJsonReader#newIncrementalReader(int)}. After a request is complete,
+ * {@link #reset()} allows reading another request reusing the same buffer.
+ * This class is not threadsafe.
+ */
+public final class IncrementalBidRequestReader {
+  private static final int INITIAL_CAPACITY = 4096;
+
+  private final OpenRtbJsonReader reader;
+  private final int maxSize;
+  private byte[] buf;
+  private int size;
+  private int scanned;
+  private int depth;
+  private boolean inString;
+  private boolean escape;
+  private BidRequest.Builder req;
+
+  IncrementalBidRequestReader(OpenRtbJsonReader reader, int maxSize) {
+    checkArgument(maxSize > 0, "maxSize must be positive: %s", maxSize);
+    this.reader = reader;
+    this.maxSize = maxSize;
+    this.buf = new byte[Math.min(INITIAL_CAPACITY, maxSize)];
+  }
+
+  /**
+   * Feeds the next chunk of input.
+   *
+   * @return the request, if this chunk completed its JSON object; otherwise {@code null}
+   * @throws JsonParseException if the input is not valid JSON, if it has anything except
+   * whitespace after the request's object, or if the request is larger than the maximum size
+   */
+  public @Nullable BidRequest.Builder feed(byte[] chunk, int offset, int len) throws IOException {
+    checkPositionIndexes(offset, offset + len, chunk.length);
+    ensureCapacity(len);
+    System.arraycopy(chunk, offset, buf, size, len);
+    size += len;
+    return scan();
+  }
+
+  /**
+   * Feeds the next chunk of input, from the remaining content of a {@link ByteBuffer}.
+   * The buffer's position is advanced to its limit.
+   *
+   * @see #feed(byte[], int, int)
+   */
+  public @Nullable BidRequest.Builder feed(ByteBuffer chunk) throws IOException {
+    int len = chunk.remaining();
+    ensureCapacity(len);
+    chunk.get(buf, size, len);
+    size += len;
+    return scan();
+  }
+
+  /**
+   * Returns {@code true} if the request's JSON object was completely received.
+   */
+  public boolean isComplete() {
+    return req != null;
+  }
+
+  /**
+   * Discards the current request and its input, so another request can be read.
+   */
+  public void reset() {
+    size = scanned = depth = 0;
+    inString = escape = false;
+    req = null;
+  }
+
+  private void ensureCapacity(int len) throws JsonParseException {
+    if (len > maxSize - size) {
+      throw new JsonParseException(
+          "Request larger than the maximum size: " + maxSize, location());
+    }
+    if (size + len > buf.length) {
+      buf = Arrays.copyOf(buf, Math.min(Math.max(buf.length * 2, size + len), maxSize));
+    }
+  }
+
+  private @Nullable BidRequest.Builder scan() throws IOException {
+    for (; scanned < size; ++scanned) {
+      byte b = buf[scanned];
+      if (req != null) {
+        if (!isWhitespace(b)) {
+          throw new JsonParseException("Unexpected content after end of object", location());
+        }
+      } else if (inString) {
+        if (escape) {
+          escape = false;
+        } else if (b == '\\') {
+          escape = true;
+        } else if (b == '"') {
+          inString = false;
+        }
+      } else if (depth == 0 && b != '{') {
+        if (!isWhitespace(b)) {
+          throw new JsonParseException("Expected start of object", location());
+        }
+      } else if (b == '"') {
+        inString = true;
+      } else if (b == '{' || b == '[') {
+        ++depth;
+      } else if (b == '}' || b == ']') {
+        if (--depth == 0) {
+          ++scanned;
+          return req = decode();
+        }
+      }
+    }
+    return null;
+  }
+
+  private BidRequest.Builder decode() throws IOException {
+    JsonParser par = reader.factory().getJsonFactory().createParser(buf, 0, scanned);
+    try {
+      return reader.readBidRequest(par);
+    } finally {
+      par.close();
+    }
+  }
+
+  private JsonLocation location() {
+    return new JsonLocation(null, scanned, -1, -1);
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.openrtb.json.OpenRtbJsonUtils.endArray;
+import static com.google.openrtb.json.OpenRtbJsonUtils.endObject;
+import static com.google.openrtb.json.OpenRtbJsonUtils.getCurrentName;
+import static com.google.openrtb.json.OpenRtbJsonUtils.startArray;
+import static com.google.openrtb.json.OpenRtbJsonUtils.startObject;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.App;
+import com.google.openrtb.OpenRtb.BidRequest.Content;
+import com.google.openrtb.OpenRtb.BidRequest.Impression;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Native;
+import com.google.openrtb.OpenRtb.BidRequest.Site;
+import com.google.openrtb.OpenRtb.BidRequest.User;
+import com.google.openrtb.OpenRtb.BidRequestOrBuilder;
+import com.google.openrtb.OpenRtbNative.NativeRequest;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link BidRequest} where some large, rarely used objects are only desserialized
+ * when first accessed. These objects are {@code user}, {@code site.content},
+ * {@code app.content} and each {@code imp.native.request}; the reader only keeps their
+ * position in the input, so the input byte array must not be modified while this
+ * object is in use. All other fields are desserialized eagerly into {@link #getRequest()}.
+ * <p>
+ * Created by {@link OpenRtbJsonReader#readLazyBidRequest(byte[], int, int)}.
+ * This class is not threadsafe.
+ */
+public final class LazyBidRequest {
+  private final OpenRtbJsonReader reader;
+  private final byte[] bytes;
+  private final BidRequest.Builder req = BidRequest.newBuilder();
+  private int delta;
+  private Span user;
+  private Span siteContent;
+  private Span appContent;
+  private final List<Span> nativeRequests = new ArrayList<>();
+
+  private LazyBidRequest(OpenRtbJsonReader reader, byte[] bytes) {
+    this.reader = reader;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Returns the request, without the fields that are desserialized lazily.
+   */
+  public BidRequestOrBuilder getRequest() {
+    return req;
+  }
+
+  public boolean hasUser() {
+    return user != null;
+  }
+
+  /**
+   * Returns the {@code user} object, desserializing it on the first call.
+   */
+  public User getUser() throws IOException {
+    if (user == null) {
+      return User.getDefaultInstance();
+    } else if (user.value == null) {
+      JsonParser par = user.createParser();
+      try {
+        user.value = reader.readUser(par).build();
+      } finally {
+        par.close();
+      }
+    }
+    return (User) user.value;
+  }
+
+  public boolean hasSiteContent() {
+    return siteContent != null;
+  }
+
+  /**
+   * Returns the {@code site.content} object, desserializing it on the first call.
+   */
+  public Content getSiteContent() throws IOException {
+    return getContent(siteContent, "BidRequest.site.content");
+  }
+
+  public boolean hasAppContent() {
+    return appContent != null;
+  }
+
+  /**
+   * Returns the {@code app.content} object, desserializing it on the first call.
+   */
+  public Content getAppContent() throws IOException {
+    return getContent(appContent, "BidRequest.app.content");
+  }
+
+  private Content getContent(Span content, String path) throws IOException {
+    if (content == null) {
+      return Content.getDefaultInstance();
+    } else if (content.value == null) {
+      JsonParser par = content.createParser();
+      try {
+        content.value = reader.readContent(par, path).build();
+      } finally {
+        par.close();
+      }
+    }
+    return (Content) content.value;
+  }
+
+  /**
+   * Returns {@code true} if the impression at {@code impIndex} has a native request
+   * that is desserialized lazily.
+   */
+  public boolean hasNativeRequest(int impIndex) {
+    return impIndex < nativeRequests.size() && nativeRequests.get(impIndex) != null;
+  }
+
+  /**
+   * Returns the native request of the impression at {@code impIndex}, desserializing it
+   * on the first call.
+   */
+  public NativeRequest getNativeRequest(int impIndex) throws IOException {
+    Span request = impIndex < nativeRequests.size() ? nativeRequests.get(impIndex) : null;
+    if (request == null) {
+      return NativeRequest.getDefaultInstance();
+    } else if (request.value == null) {
+      JsonParser par = request.createParser();
+      try {
+        Native.Builder nativ = Native.newBuilder();
+        reader.readNativeField(par, nativ, "request");
+        request.value = nativ.getRequest();
+      } finally {
+        par.close();
+      }
+    }
+    return (NativeRequest) request.value;
+  }
+
+  /**
+   * Builds the complete {@link BidRequest}, desserializing any lazy objects
+   * that were not accessed yet.
+   */
+  public BidRequest build() throws IOException {
+    BidRequest.Builder full = req.clone();
+    if (hasUser()) {
+      full.setUser(getUser());
+    }
+    if (hasSiteContent()) {
+      full.getSiteBuilder().setContent(getSiteContent());
+    }
+    if (hasAppContent()) {
+      full.getAppBuilder().setContent(getAppContent());
+    }
+    for (int i = 0; i < nativeRequests.size(); ++i) {
+      if (hasNativeRequest(i)) {
+        full.getImpBuilder(i).getNativeBuilder().setRequest(getNativeRequest(i));
+      }
+    }
+    return full.build();
+  }
+
+  static LazyBidRequest read(OpenRtbJsonReader reader, byte[] bytes, int offset, int len)
+      throws IOException {
+    LazyBidRequest lazy = new LazyBidRequest(reader, checkNotNull(bytes));
+    JsonParser par = reader.factory().getJsonFactory().createParser(bytes, offset, len);
+    try {
+      if (par.nextToken() == JsonToken.START_OBJECT) {
+        lazy.calibrate(par, offset, len);
+      }
+      lazy.readBidRequest(par);
+    } finally {
+      par.close();
+    }
+    return lazy;
+  }
+
+  /**
+   * Finds the difference between the actual position of the first token in the byte array,
+   * and the offset reported by the parser.
+   */
+  private void calibrate(JsonParser par, int offset, int len) {
+    int start = offset;
+    while (start < offset + len && bytes[start] != '{') {
+      ++start;
+    }
+    delta = start - tokenOffset(par);
+  }
+
+  private static int tokenOffset(JsonParser par) {
+    JsonLocation loc = par.getTokenLocation();
+    // Byte-based parsers may report the byte offset as the "char offset"
+    return (int) (loc.getByteOffset() == -1 ? loc.getCharOffset() : loc.getByteOffset());
+  }
+
+  private void readBidRequest(JsonParser par) throws IOException {
+    Set<String> projection = reader.projection("BidRequest");
+    for (startObject(par); endObject(par); par.nextToken()) {
+      String fieldName = getCurrentName(par);
+      if (par.nextToken() != JsonToken.VALUE_NULL
+          && reader.selected(par, projection, fieldName)) {
+        switch (fieldName) {
+          case "imp":
+            // Partial: native.request is required, but only desserialized lazily
+            for (startArray(par); endArray(par); par.nextToken()) {
+              req.addImp(readImp(par, req.getImpCount()).buildPartial());
+            }
+            break;
+          case "site":
+            req.setSite(readSite(par));
+            break;
+          case "app":
+            req.setApp(readApp(par));
+            break;
+          case "user":
+            user = captureObject(par);
+            break;
+          default:
+            reader.readBidRequestField(par, req, fieldName);
+        }
+      }
+    }
+  }
+
+  private Impression.Builder readImp(JsonParser par, int impIndex) throws IOException {
+    Impression.Builder imp = Impression.newBuilder();
+    Set<String> projection = reader.projection("BidRequest.imp");
+    for (startObject(par); endObject(par); par.nextToken()) {
+      String fieldName = getCurrentName(par);
+      if (par.nextToken() != JsonToken.VALUE_NULL
+          && reader.selected(par, projection, fieldName)) {
+        if (fieldName.equals("native")) {
+          imp.setNative(readNative(par, impIndex).buildPartial());
+        } else {
+          reader.readImpField(par, imp, fieldName);
+        }
+      }
+    }
+    return imp;
+  }
+
+  private Native.Builder readNative(JsonParser par, int impIndex) throws IOException {
+    Native.Builder nativ = Native.newBuilder();
+    Set<String> projection = reader.projection("BidRequest.imp.native");
+    for (startObject(par); endObject(par); par.nextToken()) {
+      String fieldName = getCurrentName(par);
+      if (par.nextToken() != JsonToken.VALUE_NULL
+          && reader.selected(par, projection, fieldName)) {
+        if (fieldName.equals("request") && par.getCurrentToken() == JsonToken.VALUE_STRING) {
+          while (nativeRequests.size() <= impIndex) {
+            nativeRequests.add(null);
+          }
+          nativeRequests.set(impIndex, captureString(par));
+        } else {
+          reader.readNativeField(par, nativ, fieldName);
+        }
+      }
+    }
+    return nativ;
+  }
+
+  private Site.Builder readSite(JsonParser par) throws IOException {
+    Site.Builder site = Site.newBuilder();
+    Set<String> projection = reader.projection("BidRequest.site");
+    for (startObject(par); endObject(par); par.nextToken()) {
+      String fieldName = getCurrentName(par);
+      if (par.nextToken() != JsonToken.VALUE_NULL
+          && reader.selected(par, projection, fieldName)) {
+        if (fieldName.equals("content")) {
+          siteContent = captureObject(par);
+        } else {
+          reader.readSiteField(par, site, fieldName);
+        }
+      }
+    }
+    return site;
+  }
+
+  private App.Builder readApp(JsonParser par) throws IOException {
+    App.Builder app = App.newBuilder();
+    Set<String> projection = reader.projection("BidRequest.app");
+    for (startObject(par); endObject(par); par.nextToken()) {
+      String fieldName = getCurrentName(par);
+      if (par.nextToken() != JsonToken.VALUE_NULL
+          && reader.selected(par, projection, fieldName)) {
+        if (fieldName.equals("content")) {
+          appContent = captureObject(par);
+        } else {
+          reader.readAppField(par, app, fieldName);
+        }
+      }
+    }
+    return app;
+  }
+
+  /**
+   * Skips an object value, returning its position in the input.
+   */
+  private Span captureObject(JsonParser par) throws IOException {
+    if (par.getCurrentToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException("Expected start of object", par.getCurrentLocation());
+    }
+    int start = valueOffset(par);
+    par.skipChildren();
+    return new Span(start, tokenOffset(par) + delta + 1);
+  }
+
+  /**
+   * Returns the position of a string value in the input, including the quotes. The parser
+   * doesn't need to decode the value: it's skipped when the parser moves to the next token.
+   */
+  private Span captureString(JsonParser par) {
+    int start = valueOffset(par);
+    return new Span(start, skipString(start));
+  }
+
+  /**
+   * Returns the position of the current value in the input. For the values of an object's
+   * fields, the parser reports the position of the field name (or of the comma before it),
+   * which is skipped.
+   */
+  private int valueOffset(JsonParser par) {
+    int pos = tokenOffset(par) + delta;
+    JsonStreamContext context = par.getCurrentToken().isStructStart()
+        ? par.getParsingContext().getParent()
+        : par.getParsingContext();
+    if (context.inObject()) {
+      while (bytes[pos] != '"') {
+        ++pos;
+      }
+      pos = skipString(pos);
+      while (bytes[pos] != ':') {
+        ++pos;
+      }
+      do {
+        ++pos;
+      } while (bytes[pos] == ' ' || bytes[pos] == '\t' || bytes[pos] == '\n'
+          || bytes[pos] == '\r');
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the position after the end of the string that starts at some position.
+   */
+  private int skipString(int start) {
+    int end = start + 1;
+    while (bytes[end] != '"') {
+      end += bytes[end] == '\\' ? 2 : 1;
+    }
+    return end + 1;
+  }
+
+  private final class Span {
+    final int start;
+    final int end;
+    Object value;
+
+    Span(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    JsonParser createParser() throws IOException {
+      JsonParser par = reader.factory().getJsonFactory().createParser(bytes, start, end - start);
+      par.nextToken();
+      return par;
+    }
+  }
+}
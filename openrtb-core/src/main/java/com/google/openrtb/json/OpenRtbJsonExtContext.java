@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import com.google.protobuf.GeneratedMessage.ExtendableBuilder;
+import com.google.protobuf.GeneratedMessage.GeneratedExtension;
+import com.google.protobuf.Message;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Extension builders that are open while desserializing a single "ext" object. Each extension
+ * key has one builder, shared by all {@link OpenRtbJsonExtReaderBase} readers for that key, even
+ * if their properties are interleaved; the extensions are built and set in the container
+ * message only once, by {@link #close(ExtendableBuilder)}, when the "ext" object ends.
+ * <p>
+ * This class is not threadsafe.
+ */
+final class OpenRtbJsonExtContext {
+  // Created only when the first extension is open, most objects don't have any
+  private Map<GeneratedExtension<?, ?>, Message.Builder> builders;
+
+  @Nullable Message.Builder getBuilder(GeneratedExtension<?, ?> key) {
+    return builders == null ? null : builders.get(key);
+  }
+
+  void putBuilder(GeneratedExtension<?, ?> key, Message.Builder builder) {
+    if (builders == null) {
+      builders = new IdentityHashMap<>();
+    }
+    builders.put(key, builder);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  <EB extends ExtendableBuilder<?, EB>> void close(EB msg) {
+    if (builders != null) {
+      for (Map.Entry<GeneratedExtension<?, ?>, Message.Builder> entry : builders.entrySet()) {
+        msg.setExtension((GeneratedExtension) entry.getKey(), entry.getValue().build());
+      }
+      builders = null;
+    }
+  }
+}
@@ -19,6 +19,7 @@ package com.google.openrtb.json;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.openrtb.json.OpenRtbJsonUtils.endObject;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.protobuf.GeneratedMessage.ExtendableBuilder;
 import com.google.protobuf.GeneratedMessage.GeneratedExtension;
 import com.google.protobuf.Message;
@@ -40,8 +41,9 @@ import java.io.IOException;
  *    it needs to reset the loop and try all ExtReaders again (ER2 will read p2).
  * 2) ER2 won't recognize p3, so the same thing happens: return false, main reader
  *    tries all ExtReader's, ER3 will handle p3.  This will be the second invocation
- *    to ER3 for the same "ext" object, that's why we need the ternary conditional
- *    below to reuse the MyExt.Impression.Builder if that was already set previously.
+ *    to ER3 for the same "ext" object. The main reader keeps the MyExt.Impression.Builder
+ *    open in a {@link OpenRtbJsonExtContext} until the "ext" object ends, so ER3 continues
+ *    with the same builder, and the extension is built only once.
  * 3) ER1 will be invoked several times, but never find any property it recognizes.
  *    It shouldn'set set an extension object that will be always empty.
  */
@@ -53,18 +55,66 @@ implements OpenRtbJsonExtReader<EB> {
   @SuppressWarnings("rawtypes")
   private final GeneratedExtension key;
   private final XB prototypeBuilder;
+  private final ImmutableSet<String> fieldNames;
 
+  /**
+   * Creates an extension reader.
+   *
+   * @param key Extension key, for the container message
+   * @param prototypeBuilder Buider for the extension object
+   * @param fieldNames Names of all extension properties supported by this reader, if known.
+   * This is optional, but allows the main reader to invoke this reader directly for these
+   * properties, instead of trying all readers registered for the same path.
+   */
   @SuppressWarnings("unchecked")
-  protected OpenRtbJsonExtReaderBase(GeneratedExtension<?, ?> key, XB prototypeBuilder) {
+  protected OpenRtbJsonExtReaderBase(
+      GeneratedExtension<?, ?> key, XB prototypeBuilder, String... fieldNames) {
     this.key = checkNotNull(key);
     this.prototypeBuilder = (XB) prototypeBuilder.clone();
+    this.fieldNames = ImmutableSet.copyOf(fieldNames);
+  }
+
+  final ImmutableSet<String> getFieldNames() {
+    return fieldNames;
   }
 
   @SuppressWarnings("unchecked")
   @Override public final boolean read(EB msg, JsonParser par) throws IOException {
-    XB ext = (XB) (msg.hasExtension(key)
+    XB ext = newBuilder(msg);
+    boolean someFieldRead = readFields(msg, ext, par);
+    if (someFieldRead) {
+      msg.setExtension(key, ext.build());
+    }
+    return someFieldRead;
+  }
+
+  /**
+   * Like {@link #read(ExtendableBuilder, JsonParser)}, but keeps the extension builder open
+   * in {@code context} so later passes over the same "ext" object will reuse it. The extension
+   * is only set in {@code msg} when the context is closed.
+   */
+  @SuppressWarnings("unchecked")
+  final boolean read(EB msg, JsonParser par, OpenRtbJsonExtContext context) throws IOException {
+    XB ext = (XB) context.getBuilder(key);
+    if (ext != null) {
+      return readFields(msg, ext, par);
+    }
+    ext = newBuilder(msg);
+    if (readFields(msg, ext, par)) {
+      context.putBuilder(key, ext);
+      return true;
+    }
+    return false;
+  }
+
+  @SuppressWarnings("unchecked")
+  private XB newBuilder(EB msg) {
+    return (XB) (msg.hasExtension(key)
         ? ((Message) msg.getExtension(key)).toBuilder()
         : prototypeBuilder.clone());
+  }
+
+  private boolean readFields(EB msg, XB ext, JsonParser par) throws IOException {
     boolean someFieldRead = false;
     while (endObject(par)) {
       if (read(msg, ext, par)) {
@@ -74,9 +124,6 @@ implements OpenRtbJsonExtReader<EB> {
         break;
       }
     }
-    if (someFieldRead) {
-      msg.setExtension(key, ext.build());
-    }
     return someFieldRead;
   }
 
@@ -16,20 +16,34 @@
 
 package com.google.openrtb.json;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.openrtb.snippet.OpenRtbSnippetProcessor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.GeneratedMessage.ExtendableBuilder;
+import com.google.protobuf.GeneratedMessage.GeneratedExtension;
 import com.google.protobuf.Message;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
 /**
  * Factory that will create JSON serializer objects:
@@ -39,12 +53,27 @@ import java.util.Map;
  * </ul>
  * <p>
  * This class is not threadsafe. You should use only to configure and create the
- * reader/writer objects, which will be threadsafe.
+ * reader/writer objects, which will be threadsafe. Readers and writers keep a frozen copy
+ * of the factory (returned by their {@code factory()} method) that cannot be modified;
+ * all its setters and {@code register()} methods throw {@link IllegalStateException}.
  */
 public class OpenRtbJsonFactory {
+  // Parses embedded JSON strings for binary formats; the defaults intern field names
+  private static final JsonFactory TEXT_JSON_FACTORY = new JsonFactory();
+
   private JsonFactory jsonFactory;
   private final Multimap<String, OpenRtbJsonExtReader<?>> extReaders;
+  private final ImmutableMap<String, ImmutableMap<String, OpenRtbJsonExtReader<?>>> namedReaders;
   private final Map<String, OpenRtbJsonExtWriter<?>> extWriters;
+  private final Map<String, FieldDescriptor> extWriterFields;
+  private @Nullable ImmutableMap<String, ExtWriters> pathWriters;
+  private ImmutableMap<String, ImmutableSet<String>> projection;
+  private OpenRtbJsonMetrics metrics;
+  private final boolean frozen;
+  // Native reader/writer, shared by all users of a frozen factory.
+  // Benign races: these are immutable and threadsafe.
+  private OpenRtbNativeJsonReader nativeReader;
+  private OpenRtbNativeJsonWriter nativeWriter;
 
   /**
    * Creates a new factory with default configuration.
@@ -52,22 +81,48 @@ public class OpenRtbJsonFactory {
   public static OpenRtbJsonFactory create() {
     return new OpenRtbJsonFactory(null,
         LinkedListMultimap.<String, OpenRtbJsonExtReader<?>>create(),
-        Maps.<String, OpenRtbJsonExtWriter<?>>newLinkedHashMap());
+        Maps.<String, OpenRtbJsonExtWriter<?>>newLinkedHashMap(),
+        Maps.<String, FieldDescriptor>newHashMap(),
+        ImmutableMap.<String, ImmutableSet<String>>of(),
+        null,
+        false);
   }
 
   private OpenRtbJsonFactory(
       JsonFactory jsonFactory,
       Multimap<String, OpenRtbJsonExtReader<?>> extReaders,
-      Map<String, OpenRtbJsonExtWriter<?>> extWriters) {
+      Map<String, OpenRtbJsonExtWriter<?>> extWriters,
+      Map<String, FieldDescriptor> extWriterFields,
+      ImmutableMap<String, ImmutableSet<String>> projection,
+      @Nullable OpenRtbJsonMetrics metrics,
+      boolean frozen) {
     this.jsonFactory = jsonFactory;
     this.extReaders = checkNotNull(extReaders);
     this.extWriters = checkNotNull(extWriters);
+    this.extWriterFields = checkNotNull(extWriterFields);
+    this.projection = checkNotNull(projection);
+    this.metrics = metrics;
+    this.frozen = frozen;
+    this.namedReaders = frozen
+        ? indexReaders(extReaders)
+        : ImmutableMap.<String, ImmutableMap<String, OpenRtbJsonExtReader<?>>>of();
+    this.pathWriters = frozen ? indexWriters(extWriters, extWriterFields) : null;
   }
 
   /**
    * Use a specific {@link JsonFactory}. A default factory will created if this is never called.
+   * <p>
+   * Readers always use a factory with {@link JsonFactory.Feature#CANONICALIZE_FIELD_NAMES} and
+   * {@link JsonFactory.Feature#INTERN_FIELD_NAMES} enabled; if any of these features is disabled
+   * in {@code jsonFactory}, readers will use a copy with the features enabled.
+   * <p>
+   * Binary formats (see {@link OpenRtbJsonFormats}) are supported for byte-oriented input
+   * and output, i.e. byte arrays, buffers and streams; but not for {@code String}s,
+   * {@code Reader}s or {@code Writer}s, or for {@link LazyBidRequest} and
+   * {@link IncrementalBidRequestReader} which scan the JSON text directly.
    */
   public OpenRtbJsonFactory setJsonFactory(JsonFactory jsonFactory) {
+    checkNotFrozen();
     this.jsonFactory = checkNotNull(jsonFactory);
     return this;
   }
@@ -75,12 +130,15 @@ public class OpenRtbJsonFactory {
   /**
    * Register a desserializer extension.
    * See {@link #register(OpenRtbJsonExtWriter, Class, String...)} about {@code paths}.
+   * Readers that declare their properties (see {@link OpenRtbJsonExtReaderBase}) are invoked
+   * directly for these properties; other readers are tried in order of registration.
    *
    * @param extReader code to desserialize some extension properties
    * @param paths Paths in the OpenRTB model
    */
   public <EB extends ExtendableBuilder<?, EB>> OpenRtbJsonFactory register(
       OpenRtbJsonExtReader<EB> extReader, String... paths) {
+    checkNotFrozen();
     for (String path : paths) {
       extReaders.put(path, extReader);
     }
@@ -95,6 +153,10 @@ public class OpenRtbJsonFactory {
    * you might have the same message in a different place in the model (in this case,
    * there's also "BidRequest.user.geo") but you may not want the same extension
    * properties to be supported in both places.
+   * <p>
+   * Writers registered by class need to scan all fields of the messages at {@code paths}
+   * to find extensions of type {@code extKlass}; prefer
+   * {@link #register(OpenRtbJsonExtWriter, GeneratedExtension, String...)} when possible.
    *
    * @param extWriter code to serialize some {@code extKlass}'s properties
    * @param extKlass class of container message, e.g. {@code MyImpression.class}
@@ -102,9 +164,99 @@ public class OpenRtbJsonFactory {
    */
   public <M extends Message> OpenRtbJsonFactory register(
       OpenRtbJsonExtWriter<M> extWriter, Class<M> extKlass, String... paths) {
+    checkNotFrozen();
+    for (String path : paths) {
+      String key = path + ':' + extKlass.getName();
+      extWriters.put(key, extWriter);
+      extWriterFields.remove(key);
+    }
+    pathWriters = null;
+    return this;
+  }
+
+  /**
+   * Register a serializer extension for a specific protobuf extension.
+   * See {@link #register(OpenRtbJsonExtWriter, Class, String...)} about {@code paths},
+   * which must contain messages extended by {@code ext}. Writers will only check if each
+   * message has this extension, without scanning its fields.
+   *
+   * @param extWriter code to serialize the extension's properties
+   * @param ext protobuf extension, e.g. {@code MyExt.myImpression}
+   * @param paths Paths in the OpenRTB model
+   */
+  public <M extends Message> OpenRtbJsonFactory register(
+      OpenRtbJsonExtWriter<M> extWriter, GeneratedExtension<?, M> ext, String... paths) {
+    checkNotFrozen();
+    String klassName = ext.getMessageDefaultInstance().getClass().getName();
     for (String path : paths) {
-      extWriters.put(path + ':' + extKlass.getName(), extWriter);
+      String key = path + ':' + klassName;
+      extWriters.put(key, extWriter);
+      extWriterFields.put(key, ext.getDescriptor());
     }
+    pathWriters = null;
+    return this;
+  }
+
+  /**
+   * Sets a projection, so readers will only desserialize the selected parts of the model.
+   * Paths use the same syntax of {@link #register(OpenRtbJsonExtWriter, Class, String...)},
+   * for example "BidRequest.imp.banner" or "BidRequest.site.content"; a selected path
+   * includes all its contents, and its parent objects will only contain the fields that lead
+   * to selected paths, plus any required fields. Fields that are not selected are skipped
+   * without building anything. Projections are supported for "BidRequest" and "BidResponse";
+   * if some root doesn't appear in any path, it's not restricted.
+   * <p>
+   * Notice that projection paths follow the actual structure of the model, so site content is
+   * "BidRequest.site.content" (while its extensions use "BidRequest.app.content"). One exception
+   * are producer objects, always projected as "BidRequest.app.content.producer". The native
+   * request can only be selected as a whole ("BidRequest.imp.native.request"), since its
+   * reader doesn't support projections.
+   * <p>
+   * The projection is compiled by this call, and shared by readers created afterwards;
+   * existing readers keep their projection.
+   * Calling this without any paths removes the projection.
+   *
+   * @param paths Paths in the OpenRTB model
+   * @throws IllegalArgumentException if some path is not valid
+   */
+  public OpenRtbJsonFactory setProjection(String... paths) {
+    checkNotFrozen();
+    this.projection = OpenRtbJsonProjection.compile(ImmutableSet.copyOf(paths));
+    return this;
+  }
+
+  /**
+   * Enables metrics for readers and writers, registered in {@code metricRegistry}.
+   * Timers and size histograms record about one of every 16 calls; see
+   * {@link #setMetricRegistry(MetricRegistry, int)}.
+   */
+  public OpenRtbJsonFactory setMetricRegistry(MetricRegistry metricRegistry) {
+    return setMetricRegistry(metricRegistry, 16);
+  }
+
+  /**
+   * Enables metrics for readers and writers, registered in {@code metricRegistry}:
+   * latency timers and payload size histograms for each top-level read and write, counters
+   * of failures by kind, and counters of unknown fields and unhandled extensions by path.
+   * Metric names start with the reader or writer class, e.g.
+   * "com.google.openrtb.json.OpenRtbJsonReader.bid-request.time".
+   * <p>
+   * Metrics are disabled by default, which costs nothing but a null check per message.
+   * When enabled, counters are updated on every call; timers and histograms, which are more
+   * expensive to update, only record a random sample of the calls. Metrics are only updated
+   * by the methods that read or write complete messages, not by {@link LazyBidRequest},
+   * {@link IncrementalBidRequestReader} or {@link OpenRtbJsonTranscoder}. Unknown fields are
+   * counted by the default {@link AbstractOpenRtbJsonReader#readUnknownField}.
+   *
+   * @param metricRegistry Registry for the metrics; factories that use the same registry
+   *     will share their metrics
+   * @param sampling Timers and histograms record one of every {@code sampling} calls, on
+   *     average; use 1 to record all calls
+   */
+  public OpenRtbJsonFactory setMetricRegistry(MetricRegistry metricRegistry, int sampling) {
+    checkNotFrozen();
+    checkArgument(sampling > 0, "sampling must be positive: %s", sampling);
+    this.metrics = new OpenRtbJsonMetrics(checkNotNull(metricRegistry), sampling);
     return this;
   }
 
@@ -112,40 +264,73 @@ public class OpenRtbJsonFactory {
    * Creates an {@link OpenRtbJsonWriter}, configured to the current state of this factory.
    */
   public OpenRtbJsonWriter newWriter() {
-    return new OpenRtbJsonWriter(new OpenRtbJsonFactory(
-        getJsonFactory(),
-        ImmutableMultimap.copyOf(extReaders),
-        ImmutableMap.copyOf(extWriters)));
+    return new OpenRtbJsonWriter(snapshot(getJsonFactory()));
   }
 
   /**
-   * Creates an {@link OpenRtbJsonWriter}, configured to the current state of this factory.
+   * Creates an {@link OpenRtbSnippetJsonWriter}, configured to the current state of this
+   * factory, that processes snippets with the provided processor.
+   */
+  public OpenRtbSnippetJsonWriter newSnippetWriter(OpenRtbSnippetProcessor processor) {
+    return new OpenRtbSnippetJsonWriter(snapshot(getJsonFactory()), processor);
+  }
+
+  /**
+   * Creates an {@link OpenRtbJsonReader}, configured to the current state of this factory.
    */
   public OpenRtbJsonReader newReader() {
-    return new OpenRtbJsonReader(new OpenRtbJsonFactory(
-        getJsonFactory(),
-        ImmutableMultimap.copyOf(extReaders),
-        ImmutableMap.copyOf(extWriters)));
+    return new OpenRtbJsonReader(snapshot(getReaderJsonFactory()));
   }
 
   /**
    * Creates an {@link OpenRtbNativeJsonWriter}, configured to the current state of this factory.
+   * For the factory of an existing reader or writer, this always returns the same object.
    */
   public OpenRtbNativeJsonWriter newNativeWriter() {
-    return new OpenRtbNativeJsonWriter(new OpenRtbJsonFactory(
-        getJsonFactory(),
-        ImmutableMultimap.copyOf(extReaders),
-        ImmutableMap.copyOf(extWriters)));
+    if (!frozen) {
+      return new OpenRtbNativeJsonWriter(snapshot(getJsonFactory()));
+    }
+    OpenRtbNativeJsonWriter writer = nativeWriter;
+    if (writer == null) {
+      nativeWriter = writer = new OpenRtbNativeJsonWriter(snapshot(getJsonFactory()));
+    }
+    return writer;
   }
 
   /**
-   * Creates an {@link OpenRtbNativeJsonWriter}, configured to the current state of this factory.
+   * Creates an {@link OpenRtbNativeJsonReader}, configured to the current state of this factory.
+   * For the factory of an existing reader or writer, this always returns the same object.
    */
   public OpenRtbNativeJsonReader newNativeReader() {
-    return new OpenRtbNativeJsonReader(new OpenRtbJsonFactory(
-        getJsonFactory(),
-        ImmutableMultimap.copyOf(extReaders),
-        ImmutableMap.copyOf(extWriters)));
+    if (!frozen) {
+      return new OpenRtbNativeJsonReader(snapshot(getReaderJsonFactory()));
+    }
+    OpenRtbNativeJsonReader reader = nativeReader;
+    if (reader == null) {
+      nativeReader = reader = new OpenRtbNativeJsonReader(snapshot(getReaderJsonFactory()));
+    }
+    return reader;
+  }
+
+  /**
+   * Returns a frozen copy of this factory, used by readers and writers. A frozen factory
+   * is its own snapshot, unless the readers need a different {@link JsonFactory}.
+   */
+  private OpenRtbJsonFactory snapshot(JsonFactory jsonFactory) {
+    return frozen && jsonFactory == this.jsonFactory
+        ? this
+        : new OpenRtbJsonFactory(
+            jsonFactory,
+            ImmutableMultimap.copyOf(extReaders),
+            ImmutableMap.copyOf(extWriters),
+            ImmutableMap.copyOf(extWriterFields),
+            projection,
+            metrics,
+            true);
+  }
+
+  private void checkNotFrozen() {
+    checkState(!frozen, "The factory of a reader or writer cannot be modified");
   }
 
   @SuppressWarnings("unchecked")
@@ -154,9 +339,123 @@ public class OpenRtbJsonFactory {
     return (Collection<OpenRtbJsonExtReader<EB>>) (Collection<?>) extReaders.get(path);
   }
 
+  /**
+   * Returns the extension readers that declared their properties, indexed by property name.
+   * Only available in the frozen factory of a reader.
+   */
   @SuppressWarnings("unchecked")
-  <M extends Message> OpenRtbJsonExtWriter<M> getWriter(String path) {
-    return (OpenRtbJsonExtWriter<M>) extWriters.get(path);
+  <EB extends ExtendableBuilder<?, EB>>
+  Map<String, OpenRtbJsonExtReader<EB>> getNamedReaders(String path) {
+    Map<String, OpenRtbJsonExtReader<?>> readers = namedReaders.get(path);
+    return readers == null
+        ? ImmutableMap.<String, OpenRtbJsonExtReader<EB>>of()
+        : (Map<String, OpenRtbJsonExtReader<EB>>) (Map<String, ?>) readers;
+  }
+
+  private static ImmutableMap<String, ImmutableMap<String, OpenRtbJsonExtReader<?>>>
+  indexReaders(Multimap<String, OpenRtbJsonExtReader<?>> extReaders) {
+    ImmutableMap.Builder<String, ImmutableMap<String, OpenRtbJsonExtReader<?>>> index =
+        ImmutableMap.builder();
+    for (Map.Entry<String, Collection<OpenRtbJsonExtReader<?>>> entry
+        : extReaders.asMap().entrySet()) {
+      Map<String, OpenRtbJsonExtReader<?>> pathIndex = new LinkedHashMap<>();
+      for (OpenRtbJsonExtReader<?> extReader : entry.getValue()) {
+        if (extReader instanceof OpenRtbJsonExtReaderBase<?, ?>) {
+          for (String fieldName : ((OpenRtbJsonExtReaderBase<?, ?>) extReader).getFieldNames()) {
+            if (!pathIndex.containsKey(fieldName)) {
+              pathIndex.put(fieldName, extReader);
+            }
+          }
+        }
+      }
+      if (!pathIndex.isEmpty()) {
+        index.put(entry.getKey(), ImmutableMap.copyOf(pathIndex));
+      }
+    }
+    return index.build();
+  }
+
+  /**
+   * Returns the extension writers registered for some path, or {@code null} if none.
+   * Precompiled in frozen factories; other factories, used by writers created directly with
+   * a subclass constructor, index the writers once until the next {@code register()}.
+   */
+  @Nullable ExtWriters getWriters(String path) {
+    ImmutableMap<String, ExtWriters> writers = pathWriters;
+    if (writers == null) {
+      pathWriters = writers = indexWriters(extWriters, extWriterFields);
+    }
+    return writers.get(path);
+  }
+
+  private static ImmutableMap<String, ExtWriters> indexWriters(
+      Map<String, OpenRtbJsonExtWriter<?>> extWriters,
+      Map<String, FieldDescriptor> extWriterFields) {
+    Map<String, ExtWriters.Builder> index = new LinkedHashMap<>();
+    for (Map.Entry<String, OpenRtbJsonExtWriter<?>> entry : extWriters.entrySet()) {
+      String key = entry.getKey();
+      int sep = key.lastIndexOf(':');
+      String path = key.substring(0, sep);
+      ExtWriters.Builder pathIndex = index.get(path);
+      if (pathIndex == null) {
+        index.put(path, pathIndex = new ExtWriters.Builder());
+      }
+      FieldDescriptor fd = extWriterFields.get(key);
+      if (fd == null) {
+        pathIndex.classWriters.put(key.substring(sep + 1), entry.getValue());
+      } else {
+        pathIndex.fields.add(fd);
+        pathIndex.fieldWriters.add(entry.getValue());
+      }
+    }
+    ImmutableMap.Builder<String, ExtWriters> built = ImmutableMap.builder();
+    for (Map.Entry<String, ExtWriters.Builder> entry : index.entrySet()) {
+      built.put(entry.getKey(), entry.getValue().build());
+    }
+    return built.build();
+  }
+
+  /**
+   * Returns the {@link JsonFactory} for readers. Field names must be canonicalized and interned,
+   * so the readers' {@code switch (fieldName)} finds each name with a cached hash code and
+   * an identity match, without allocating a new {@code String} for every field.
+   */
+  private JsonFactory getReaderJsonFactory() {
+    JsonFactory jf = getJsonFactory();
+    return jf.isEnabled(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES)
+            && jf.isEnabled(JsonFactory.Feature.INTERN_FIELD_NAMES)
+        ? jf
+        : jf.copy()
+            .enable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES)
+            .enable(JsonFactory.Feature.INTERN_FIELD_NAMES);
+  }
+
+  /**
+   * Returns {@code true} if the format is text JSON, as opposed to a binary format
+   * such as Smile or CBOR.
+   */
+  boolean isTextFormat() {
+    return JsonFactory.FORMAT_NAME_JSON.equals(getJsonFactory().getFormatName());
+  }
+
+  /**
+   * Creates a parser for a JSON document that is embedded in a string value, like the native
+   * request. Such documents are always text JSON, even if the enclosing document is binary.
+   */
+  JsonParser createEmbeddedParser(JsonParser par) throws IOException {
+    JsonFactory jf = isTextFormat() ? getJsonFactory() : TEXT_JSON_FACTORY;
+    return jf.createParser(par.getTextCharacters(), par.getTextOffset(), par.getTextLength());
+  }
+
+  /**
+   * Returns the metrics, or {@code null} if metrics are disabled.
+   */
+  @Nullable OpenRtbJsonMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Nullable Set<String> getProjection(String path) {
+    return projection.get(path);
   }
 
   public JsonFactory getJsonFactory() {
@@ -165,4 +464,32 @@ public class OpenRtbJsonFactory {
     }
     return jsonFactory;
   }
+
+  /**
+   * Extension writers for a single path. Writers registered for a protobuf extension are
+   * kept with its field descriptor, in parallel lists; writers registered only by class
+   * are indexed by the class name of the extension message.
+   */
+  static final class ExtWriters {
+    final ImmutableList<FieldDescriptor> fields;
+    final ImmutableList<OpenRtbJsonExtWriter<?>> fieldWriters;
+    final ImmutableMap<String, OpenRtbJsonExtWriter<?>> classWriters;
+
+    private ExtWriters(Builder builder) {
+      this.fields = builder.fields.build();
+      this.fieldWriters = builder.fieldWriters.build();
+      this.classWriters = ImmutableMap.copyOf(builder.classWriters);
+    }
+
+    private static final class Builder {
+      final ImmutableList.Builder<FieldDescriptor> fields = ImmutableList.builder();
+      final ImmutableList.Builder<OpenRtbJsonExtWriter<?>> fieldWriters =
+          ImmutableList.builder();
+      final Map<String, OpenRtbJsonExtWriter<?>> classWriters = new LinkedHashMap<>();
+
+      ExtWriters build() {
+        return new ExtWriters(this);
+      }
+    }
+  }
 }
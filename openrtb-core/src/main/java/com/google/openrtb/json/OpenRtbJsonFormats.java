@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * {@link com.fasterxml.jackson.core.JsonFactory}s for binary JSON formats, that can be used
+ * with {@link OpenRtbJsonFactory#setJsonFactory} for service-to-service traffic. The Smile and
+ * CBOR modules are optional dependencies, so each method requires its own module at runtime.
+ * <p>
+ * All the JSON model is supported, except that the native request is written as an embedded
+ * object instead of a JSON string (both forms are accepted by the readers).
+ */
+public final class OpenRtbJsonFormats {
+
+  private OpenRtbJsonFormats() {
+  }
+
+  /**
+   * Creates a factory for Smile, with back-references enabled for both field names and
+   * string values, so repeated keys and values (e.g. in impressions or bids) are written once.
+   */
+  public static SmileFactory newSmileFactory() {
+    return new SmileFactory()
+        .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+        .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+  }
+
+  /**
+   * Creates a factory for CBOR (RFC 7049). CBOR has no back-references, so it's usually
+   * larger than Smile, but it has wider support in other languages.
+   */
+  public static CBORFactory newCborFactory() {
+    return new CBORFactory();
+  }
+}
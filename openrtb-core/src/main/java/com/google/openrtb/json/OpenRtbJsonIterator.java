@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.AbstractIterator;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads consecutive OpenRTB messages from a single JSON stream, which can be either a sequence
+ * of top-level objects (including NDJSON, one object per line) or a top-level array of objects.
+ * All messages are read with the same {@link JsonParser}, reusing its buffers.
+ * <p>
+ * Messages are only read on demand, so memory use is bounded by the largest message, no matter
+ * the size of the stream; a consumer that is slow to call {@link #next()} will just keep the
+ * stream waiting. Use {@link #readNext()} to handle {@link IOException}s directly; the
+ * {@link java.util.Iterator} methods wrap them in {@link ReadException}. Don't mix both styles
+ * on the same iterator: {@link #hasNext()} and {@link #peek()} read ahead one message, which
+ * a following {@link #readNext()} would skip. The underlying input is closed when all messages
+ * are read, or by {@link #close()}.
+ * <p>
+ * For parallel processing, an NDJSON buffer can be split by {@link #splitLines(ByteBuffer, int)}
+ * and each slice read by its own iterator.
+ * <p>
+ * This class is not threadsafe.
+ *
+ * @param <M> Type of the messages
+ */
+public abstract class OpenRtbJsonIterator<M> extends AbstractIterator<M> implements Closeable {
+  private final JsonParser par;
+  private boolean started;
+  private boolean array;
+
+  OpenRtbJsonIterator(JsonParser par) {
+    this.par = par;
+  }
+
+  /**
+   * Reads the next message. Must not be used after {@link #hasNext()} or {@link #peek()},
+   * since the message they already read would be lost.
+   *
+   * @return the next message, or {@code null} if there are no more messages
+   */
+  public @Nullable M readNext() throws IOException {
+    if (par.isClosed()) {
+      return null;
+    }
+    JsonToken token = par.nextToken();
+    if (!started) {
+      started = true;
+      if (token == JsonToken.START_ARRAY) {
+        array = true;
+        token = par.nextToken();
+      }
+    }
+    if (token == null || (array && token == JsonToken.END_ARRAY)) {
+      close();
+      return null;
+    } else if (token != JsonToken.START_OBJECT) {
+      throw new JsonParseException("Expected start of object", par.getCurrentLocation());
+    }
+    return read(par);
+  }
+
+  @Override protected final M computeNext() {
+    try {
+      M msg = readNext();
+      return msg == null ? endOfData() : msg;
+    } catch (IOException e) {
+      throw new ReadException(e);
+    }
+  }
+
+  @Override public void close() throws IOException {
+    par.close();
+  }
+
+  /**
+   * Desserializes a single message. The parser is positioned at its start of object,
+   * and must be left at its end of object.
+   */
+  protected abstract M read(JsonParser par) throws IOException;
+
+  /**
+   * Splits a buffer of NDJSON content in up to {@code parts} slices of similar size, each
+   * ending after a newline (except possibly the last). Newlines never occur inside JSON tokens
+   * or UTF-8 multi-byte sequences, so each slice contains only complete messages. The slices
+   * share content with {@code buf}, and its position is not modified; a memory-mapped file
+   * can be split without copying anything.
+   */
+  public static List<ByteBuffer> splitLines(ByteBuffer buf, int parts) {
+    checkArgument(parts > 0, "parts must be positive: %s", parts);
+    List<ByteBuffer> slices = new ArrayList<>(parts);
+    int start = buf.position();
+    int limit = buf.limit();
+
+    for (int part = parts; part > 0 && start < limit; --part) {
+      // Ends at the first newline from the last byte of an even split
+      int end = Math.max(start + (limit - start) / part - 1, start);
+      while (end < limit && buf.get(end) != '\n') {
+        ++end;
+      }
+      end = Math.min(end + 1, limit);
+      ByteBuffer slice = buf.duplicate();
+      slice.limit(end);
+      slice.position(start);
+      slices.add(slice.slice());
+      start = end;
+    }
+
+    return slices;
+  }
+
+  /**
+   * Thrown by the {@link java.util.Iterator} methods of {@link OpenRtbJsonIterator}
+   * when reading a message fails.
+   */
+  public static class ReadException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    ReadException(IOException cause) {
+      super(cause);
+    }
+
+    @Override public IOException getCause() {
+      return (IOException) super.getCause();
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import com.google.protobuf.UninitializedMessageException;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonParseException;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics for the JSON readers and writers, enabled by
+ * {@link OpenRtbJsonFactory#setMetricRegistry(MetricRegistry, int)}.
+ * <p>
+ * Each top-level operation (e.g. reading a {@code BidRequest}) has a latency timer,
+ * a payload size histogram (bytes, only for byte array and buffer input/output), and failure
+ * counters by kind: "syntax" for malformed JSON, "missing-required" for messages without some
+ * required field, "io" for other I/O errors, and "other" for runtime exceptions. Readers also
+ * count unknown fields and unhandled extensions by the path of the containing object.
+ * <p>
+ * Timers and most failures are recorded by the methods that take a {@code JsonParser} or
+ * {@code JsonGenerator}, which all other overloads (and {@code OpenRtbJsonCodec}) use, so each
+ * message is counted once. A native request nested in a {@code BidRequest} is part of that
+ * operation, not a top-level one. Readers check required fields only when building the
+ * message, so "missing-required" failures of reads are counted after a successful read.
+ * <p>
+ * Counters are updated on every call, but metrics-core's {@link Counter}s are striped so
+ * they don't contend. The timers and histograms use reservoirs that are much more costly
+ * to update, so they only record a random sample of the calls; their counts and rates
+ * reflect the sampled calls, not the total.
+ * <p>
+ * This class is threadsafe.
+ */
+final class OpenRtbJsonMetrics {
+  private static final String READER_NAME = AbstractOpenRtbJsonReader.class.getName();
+
+  private final MetricRegistry metricRegistry;
+  private final int sampling;
+  private final ConcurrentMap<String, Counter> unknownFields = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> unhandledExtensions = new ConcurrentHashMap<>();
+
+  final Operation readBidRequest;
+  final Operation readBidResponse;
+  final Operation writeBidRequest;
+  final Operation writeBidResponse;
+  final Operation readNativeRequest;
+  final Operation readNativeResponse;
+  final Operation writeNativeRequest;
+  final Operation writeNativeResponse;
+
+  /**
+   * Creates the metrics, registered in {@code metricRegistry}. If the registry already has the
+   * same metrics (from some other factory), they are shared.
+   *
+   * @param sampling Records one of every {@code sampling} calls in the timers and histograms,
+   *     on average
+   */
+  OpenRtbJsonMetrics(MetricRegistry metricRegistry, int sampling) {
+    this.metricRegistry = metricRegistry;
+    this.sampling = sampling;
+    this.readBidRequest = new Operation(OpenRtbJsonReader.class, "bid-request");
+    this.readBidResponse = new Operation(OpenRtbJsonReader.class, "bid-response");
+    this.writeBidRequest = new Operation(OpenRtbJsonWriter.class, "bid-request");
+    this.writeBidResponse = new Operation(OpenRtbJsonWriter.class, "bid-response");
+    this.readNativeRequest = new Operation(OpenRtbNativeJsonReader.class, "native-request");
+    this.readNativeResponse = new Operation(OpenRtbNativeJsonReader.class, "native-response");
+    this.writeNativeRequest = new Operation(OpenRtbNativeJsonWriter.class, "native-request");
+    this.writeNativeResponse = new Operation(OpenRtbNativeJsonWriter.class, "native-response");
+  }
+
+  void unknownField(String path) {
+    counter(unknownFields, path, READER_NAME, "unknown-field").inc();
+  }
+
+  void unhandledExtension(String path) {
+    counter(unhandledExtensions, path, READER_NAME, "unhandled-extension").inc();
+  }
+
+  /**
+   * Returns the counter for {@code key}, registered as "{@code prefix}.{@code kind}.{@code key}".
+   */
+  private Counter counter(
+      ConcurrentMap<String, Counter> counters, String key, String prefix, String kind) {
+    Counter counter = counters.get(key);
+    if (counter == null) {
+      // The registry returns the same counter for racing threads
+      counter = metricRegistry.counter(MetricRegistry.name(prefix, kind, key));
+      counters.put(key, counter);
+    }
+    return counter;
+  }
+
+  private boolean sample() {
+    return sampling == 1 || ThreadLocalRandom.current().nextInt(sampling) == 0;
+  }
+
+  /**
+   * Metrics for a single kind of top-level read or write.
+   */
+  final class Operation {
+    private final String name;
+    private final Timer timer;
+    private final Histogram sizes;
+    private final ConcurrentMap<String, Counter> failures = new ConcurrentHashMap<>();
+
+    private Operation(Class<?> klass, String message) {
+      this.name = MetricRegistry.name(klass, message);
+      this.timer = metricRegistry.timer(MetricRegistry.name(name, "time"));
+      this.sizes = metricRegistry.histogram(MetricRegistry.name(name, "size"));
+    }
+
+    /**
+     * Starts timing a call.
+     *
+     * @return Start time in nanos, or zero if this call is not sampled
+     */
+    long start() {
+      return sample() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stops timing a call that completed normally.
+     *
+     * @param start Value returned by {@link #start()}
+     */
+    void stop(long start) {
+      if (start != 0) {
+        timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    void size(int size) {
+      if (sample()) {
+        sizes.update(size);
+      }
+    }
+
+    void failure(Exception e) {
+      counter(failures, kind(e), name, "failure").inc();
+    }
+  }
+
+  private static String kind(Exception e) {
+    if (e instanceof JsonParseException) {
+      return "syntax";
+    } else if (e instanceof UninitializedMessageException) {
+      return "missing-required";
+    } else if (e instanceof IOException) {
+      return "io";
+    } else {
+      return "other";
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtbNative.NativeRequest;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles projection paths, like "BidRequest.imp.banner", into the set of selected
+ * fields for each object path of the model.
+ * <p>
+ * A selected path includes its whole subtree. Each ancestor of a selected path is restricted
+ * to the fields that lead to selected paths, plus its required fields (so the result can still
+ * be built). Objects not found in the result are not restricted: either they are inside a
+ * selected subtree, or their root is not part of the projection at all.
+ * <p>
+ * The native request can be selected as a whole, but not projected: it's a separate document
+ * that's read by {@link OpenRtbNativeJsonReader}, so paths inside it are rejected.
+ */
+final class OpenRtbJsonProjection {
+  private static final ImmutableMap<String, Descriptor> ROOTS = ImmutableMap.of(
+      "BidRequest", BidRequest.getDescriptor(),
+      "BidResponse", BidResponse.getDescriptor());
+  private static final Splitter PATH_SPLITTER = Splitter.on('.');
+
+  private OpenRtbJsonProjection() {
+  }
+
+  static ImmutableMap<String, ImmutableSet<String>> compile(Collection<String> paths) {
+    Map<String, Set<String>> projection = new LinkedHashMap<>();
+
+    for (String path : paths) {
+      List<String> names = PATH_SPLITTER.splitToList(path);
+      Descriptor desc = ROOTS.get(names.get(0));
+      checkArgument(desc != null, "Unsupported root in projection path: %s", path);
+      String parent = names.get(0);
+
+      for (int i = 1; i < names.size(); ++i) {
+        String name = names.get(i);
+        checkArgument(desc != NativeRequest.getDescriptor(),
+            "Unsupported projection inside the native request: %s", path);
+        FieldDescriptor fd = findField(desc, name);
+        checkArgument(fd != null || (name.equals("ext") && i == names.size() - 1),
+            "Unknown field %s in projection path: %s", name, path);
+        checkArgument(i == names.size() - 1 || fd.getJavaType() == FieldDescriptor.JavaType.MESSAGE,
+            "Field %s is not an object in projection path: %s", name, path);
+        if (paths.contains(parent)) {
+          break; // Parent's subtree is already fully selected
+        }
+
+        Set<String> fields = projection.get(parent);
+        if (fields == null) {
+          fields = new LinkedHashSet<>();
+          for (FieldDescriptor field : desc.getFields()) {
+            if (field.isRequired()) {
+              fields.add(field.getName());
+            }
+          }
+          projection.put(parent, fields);
+        }
+        fields.add(name);
+        parent = parent + '.' + name;
+        desc = fd == null || fd.getJavaType() != FieldDescriptor.JavaType.MESSAGE
+            ? null
+            : fd.getMessageType();
+      }
+    }
+
+    ImmutableMap.Builder<String, ImmutableSet<String>> compiled = ImmutableMap.builder();
+    for (Map.Entry<String, Set<String>> entry : projection.entrySet()) {
+      compiled.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+    }
+    return compiled.build();
+  }
+
+  /**
+   * Finds a field from its JSON name. These are the same as the field names in the model's
+   * proto descriptors, except for deprecated fields (like "protocol" in Video).
+   */
+  private static FieldDescriptor findField(Descriptor desc, String name) {
+    FieldDescriptor fd = desc.findFieldByName(name);
+    return fd == null ? desc.findFieldByName("deprecated_" + name) : fd;
+  }
+}
@@ -65,15 +65,18 @@ import com.google.openrtb.OpenRtb.BidResponse.NoBidReasonCode;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
 import com.google.openrtb.OpenRtb.CreativeAttribute;
+import com.google.openrtb.OpenRtbNative.NativeRequest;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UninitializedMessageException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 
-import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Set;
 
 /**
  * Desserializes OpenRTB BidRequest/BidResponse messages from JSON.
@@ -93,6 +96,62 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
     return readBidRequest(bs.newInput());
   }
 
+  /**
+   * Desserializes a {@link BidRequest} from JSON, provided as a slice of a byte array.
+   * The JSON content is parsed in-place, with no intermediate stream or character decoding.
+   */
+  public BidRequest readBidRequest(byte[] bytes, int offset, int len) throws IOException {
+    JsonParser par = factory().getJsonFactory().createParser(bytes, offset, len);
+    try {
+      return buildBidRequest(par, len);
+    } finally {
+      par.close();
+    }
+  }
+
+  /**
+   * Desserializes a {@link BidRequest} from JSON, provided as the remaining content of a
+   * {@link ByteBuffer}. The buffer's position is not modified. Array-backed buffers are
+   * parsed in-place; direct buffers are streamed with bulk copies, with no character decoding.
+   */
+  public BidRequest readBidRequest(ByteBuffer buf) throws IOException {
+    JsonParser par = createParser(buf);
+    try {
+      return buildBidRequest(par, buf.remaining());
+    } finally {
+      par.close();
+    }
+  }
+
+  /**
+   * Desserializes a {@link BidRequest} from JSON, provided as a slice of a byte array,
+   * deferring the desserialization of some large objects until they are accessed.
+   * See {@link LazyBidRequest} for details; the byte array must not be modified
+   * while the result is in use.
+   */
+  public LazyBidRequest readLazyBidRequest(byte[] bytes, int offset, int len)
+      throws IOException {
+    return LazyBidRequest.read(this, bytes, offset, len);
+  }
+
+  /**
+   * Creates an {@link IncrementalBidRequestReader}, that will desserialize a {@link BidRequest}
+   * from JSON that is received in chunks.
+   *
+   * @param maxSize Maximum size of the request, in bytes
+   */
+  public IncrementalBidRequestReader newIncrementalReader(int maxSize) {
+    return new IncrementalBidRequestReader(this, maxSize);
+  }
+
+  /**
+   * Creates an {@link OpenRtbJsonTranscoder}, that will transcode messages from JSON
+   * to the protobuf binary format with the same field mapping and extensions as this reader.
+   */
+  public OpenRtbJsonTranscoder newTranscoder() {
+    return new OpenRtbJsonTranscoder(this);
+  }
+
   /**
    * Desserializes a {@link BidRequest} from a JSON string, provided as a {@link CharSequence}.
    */
@@ -104,7 +163,7 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
    * Desserializes a {@link BidRequest} from JSON, streamed from a {@link Reader}.
    */
   public BidRequest readBidRequest(Reader reader) throws IOException {
-    return readBidRequest(factory().getJsonFactory().createParser(reader)).build();
+    return buildBidRequest(factory().getJsonFactory().createParser(reader), -1);
   }
 
   /**
@@ -112,21 +171,89 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
    */
   public BidRequest readBidRequest(InputStream is) throws IOException {
     try {
-      return readBidRequest(factory().getJsonFactory().createParser(is)).build();
+      return buildBidRequest(factory().getJsonFactory().createParser(is), -1);
     } finally {
       Closeables.closeQuietly(is);
     }
   }
 
+  /**
+   * Desserializes a stream of {@link BidRequest}s from JSON, either a sequence of objects
+   * (such as NDJSON) or an array of objects. The stream is closed after all messages are read,
+   * or when the iterator is closed.
+   */
+  public OpenRtbJsonIterator<BidRequest> readBidRequests(InputStream is) throws IOException {
+    return readBidRequests(factory().getJsonFactory().createParser(is));
+  }
+
+  /**
+   * Desserializes a stream of {@link BidRequest}s from JSON, provided as the remaining content
+   * of a {@link ByteBuffer}, either a sequence of objects (such as NDJSON) or an array of
+   * objects. The buffer's position is not modified.
+   *
+   * @see OpenRtbJsonIterator#splitLines(ByteBuffer, int)
+   */
+  public OpenRtbJsonIterator<BidRequest> readBidRequests(ByteBuffer buf) throws IOException {
+    return readBidRequests(createParser(buf));
+  }
+
+  private OpenRtbJsonIterator<BidRequest> readBidRequests(JsonParser par) {
+    return new OpenRtbJsonIterator<BidRequest>(par) {
+      @Override protected BidRequest read(JsonParser par) throws IOException {
+        return buildBidRequest(par, -1);
+      }
+    };
+  }
+
+  /**
+   * Desserializes and builds a {@link BidRequest}, updating the size and missing-required
+   * metrics if enabled (the read itself is measured by {@link #readBidRequest(JsonParser)}).
+   *
+   * @param size Size of the JSON input in bytes, or -1 if unknown
+   */
+  private BidRequest buildBidRequest(JsonParser par, int size) throws IOException {
+    BidRequest.Builder req = readBidRequest(par);
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      return req.build();
+    }
+    if (size >= 0) {
+      metrics.readBidRequest.size(size);
+    }
+    try {
+      return req.build();
+    } catch (UninitializedMessageException e) {
+      metrics.readBidRequest.failure(e);
+      throw e;
+    }
+  }
+
   /**
    * Desserializes a {@link BidRequest} from JSON, with a provided {@link JsonParser}
    * which allows several choices of input and encoding.
    */
   public final BidRequest.Builder readBidRequest(JsonParser par) throws IOException {
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      return readBidRequestObject(par);
+    }
+    long start = metrics.readBidRequest.start();
+    try {
+      BidRequest.Builder req = readBidRequestObject(par);
+      metrics.readBidRequest.stop(start);
+      return req;
+    } catch (IOException | RuntimeException e) {
+      metrics.readBidRequest.failure(e);
+      throw e;
+    }
+  }
+
+  private BidRequest.Builder readBidRequestObject(JsonParser par) throws IOException {
     BidRequest.Builder req = BidRequest.newBuilder();
+    Set<String> projection = projection("BidRequest");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readBidRequestField(par, req, fieldName);
       }
     }
@@ -194,14 +321,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(req, par, "BidRequest");
         break;
+      default:
+        readUnknownField(par, "BidRequest", fieldName);
     }
   }
 
   protected final Regulations.Builder readRegulations(JsonParser par) throws IOException {
     Regulations.Builder reg = Regulations.newBuilder();
+    Set<String> projection = projection("BidRequest.regs");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readRegulationsField(par, reg, fieldName);
       }
     }
@@ -217,14 +347,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(reg, par, "BidRequest.regs");
         break;
+      default:
+        readUnknownField(par, "BidRequest.regs", fieldName);
     }
   }
 
   protected final Impression.Builder readImp(JsonParser par) throws IOException {
     Impression.Builder imp = Impression.newBuilder();
+    Set<String> projection = projection("BidRequest.imp");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readImpField(par, imp, fieldName);
       }
     }
@@ -278,14 +411,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(imp, par, "BidRequest.imp");
         break;
+      default:
+        readUnknownField(par, "BidRequest.imp", fieldName);
     }
   }
 
   protected final Native.Builder readNative(JsonParser par) throws IOException {
     Native.Builder nativ = Native.newBuilder();
+    Set<String> projection = projection("BidRequest.imp.native");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readNativeField(par, nativ, fieldName);
       }
     }
@@ -295,11 +431,8 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
   protected void readNativeField(JsonParser par, Native.Builder nativ, String fieldName)
       throws IOException {
     switch (fieldName) {
-      case "request": {
-          OpenRtbNativeJsonReader nativeReader = factory().newNativeReader();
-          nativ.setRequest(nativeReader.readNativeRequest(new CharArrayReader(
-              par.getTextCharacters(), par.getTextOffset(), par.getTextLength())));
-        }
+      case "request":
+        nativ.setRequest(readNativeRequest(par));
         break;
       case "ver":
         nativ.setVer(par.getText());
@@ -317,14 +450,35 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(nativ, par, "BidRequest.imp.native");
         break;
+      default:
+        readUnknownField(par, "BidRequest.imp.native", fieldName);
+    }
+  }
+
+  /**
+   * Desserializes the native request, which is usually a JSON string but can also be
+   * a JSON object. Strings are parsed directly from the parser's text buffer, and objects
+   * directly from the parser, without any intermediate copies.
+   */
+  protected final NativeRequest.Builder readNativeRequest(JsonParser par) throws IOException {
+    OpenRtbNativeJsonReader nativeReader = factory().newNativeReader();
+    if (par.getCurrentToken() == JsonToken.START_OBJECT) {
+      return nativeReader.readNativeRequestObject(par);
+    }
+    JsonParser nativePar = factory().createEmbeddedParser(par);
+    try {
+      return nativeReader.readNativeRequestObject(nativePar);
+    } finally {
+      nativePar.close();
     }
   }
 
   protected final PMP.Builder readPMP(JsonParser par) throws IOException {
     PMP.Builder pmp = PMP.newBuilder();
+    Set<String> projection = projection("BidRequest.imp.pmp");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readPMPField(par, pmp, fieldName);
       }
     }
@@ -345,14 +499,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(pmp, par, "BidRequest.imp.pmp");
         break;
+      default:
+        readUnknownField(par, "BidRequest.imp.pmp", fieldName);
     }
   }
 
   protected final Deal.Builder readDeal(JsonParser par) throws IOException {
     Deal.Builder deal = Deal.newBuilder();
+    Set<String> projection = projection("BidRequest.imp.pmp.deals");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readDealField(par, deal, fieldName);
       }
     }
@@ -387,14 +544,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(deal, par, "BidRequest.imp.pmp.deals");
         break;
+      default:
+        readUnknownField(par, "BidRequest.imp.pmp.deals", fieldName);
     }
   }
 
   protected final Video.Builder readVideo(JsonParser par) throws IOException {
     Video.Builder video = Video.newBuilder();
+    Set<String> projection = projection("BidRequest.imp.video");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readVideoField(par, video, fieldName);
       }
     }
@@ -470,7 +630,7 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
         break;
       case "companionad":
         for (startArray(par); endArray(par); par.nextToken()) {
-          video.addCompanionad(readBanner(par));
+          video.addCompanionad(readBanner(par, "BidRequest.imp.video.companionad"));
         }
         break;
       case "api":
@@ -486,14 +646,26 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(video, par, "BidRequest.imp.video");
         break;
+      default:
+        readUnknownField(par, "BidRequest.imp.video", fieldName);
     }
   }
 
   protected final Banner.Builder readBanner(JsonParser par) throws IOException {
+    return readBanner(par, "BidRequest.imp.banner");
+  }
+
+  /**
+   * Desserializes a {@link Banner} found at {@code path} in the model, for example
+   * "BidRequest.imp.video.companionad". The path is only used for projection;
+   * extensions are always read with the path "BidRequest.imp.banner".
+   */
+  protected final Banner.Builder readBanner(JsonParser par, String path) throws IOException {
     Banner.Builder banner = Banner.newBuilder();
+    Set<String> projection = projection(path);
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readBannerField(par, banner, fieldName);
       }
     }
@@ -558,14 +730,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(banner, par, "BidRequest.imp.banner");
         break;
+      default:
+        readUnknownField(par, "BidRequest.imp.banner", fieldName);
     }
   }
 
   protected final Site.Builder readSite(JsonParser par) throws IOException {
     Site.Builder site = Site.newBuilder();
+    Set<String> projection = projection("BidRequest.site");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readSiteField(par, site, fieldName);
       }
     }
@@ -615,10 +790,10 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
         site.setPrivacypolicy(getIntBoolValue(par));
         break;
       case "publisher":
-        site.setPublisher(readPublisher(par));
+        site.setPublisher(readPublisher(par, "BidRequest.site.publisher"));
         break;
       case "content":
-        site.setContent(readContent(par));
+        site.setContent(readContent(par, "BidRequest.site.content"));
         break;
       case "keywords":
         site.setKeywords(par.getText());
@@ -626,14 +801,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(site, par, "BidRequest.site");
         break;
+      default:
+        readUnknownField(par, "BidRequest.site", fieldName);
     }
   }
 
   protected final App.Builder readApp(JsonParser par) throws IOException {
     App.Builder app = App.newBuilder();
+    Set<String> projection = projection("BidRequest.app");
     for (startObject(par); endObject(par); par.nextToken()) {
       String name = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, name)) {
         readAppField(par, app, name);
       }
     }
@@ -694,14 +872,26 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(app, par, "BidRequest.app");
         break;
+      default:
+        readUnknownField(par, "BidRequest.app", fieldName);
     }
   }
 
   protected final Content.Builder readContent(JsonParser par) throws IOException {
+    return readContent(par, "BidRequest.app.content");
+  }
+
+  /**
+   * Desserializes a {@link Content} found at {@code path} in the model, for example
+   * "BidRequest.site.content". The path is only used for projection;
+   * extensions are always read with the path "BidRequest.app.content".
+   */
+  protected final Content.Builder readContent(JsonParser par, String path) throws IOException {
     Content.Builder content = Content.newBuilder();
+    Set<String> projection = projection(path);
     for (startObject(par); endObject(par); par.nextToken()) {
       String name = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, name)) {
         readContentField(par, content, name);
       }
     }
@@ -778,14 +968,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(content, par, "BidRequest.app.content");
         break;
+      default:
+        readUnknownField(par, "BidRequest.app.content", fieldName);
     }
   }
 
   protected final Producer.Builder readProducer(JsonParser par) throws IOException {
     Producer.Builder producer = Producer.newBuilder();
+    Set<String> projection = projection("BidRequest.app.content.producer");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readProducerField(par, producer, fieldName);
       }
     }
@@ -812,14 +1005,26 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(producer, par, "BidRequest.app.content.producer");
         break;
+      default:
+        readUnknownField(par, "BidRequest.app.content.producer", fieldName);
     }
   }
 
   protected final Publisher.Builder readPublisher(JsonParser par) throws IOException {
+    return readPublisher(par, "BidRequest.app.publisher");
+  }
+
+  /**
+   * Desserializes a {@link Publisher} found at {@code path} in the model, for example
+   * "BidRequest.site.publisher". The path is only used for projection;
+   * extensions are always read with the path "BidRequest.app.publisher".
+   */
+  protected final Publisher.Builder readPublisher(JsonParser par, String path) throws IOException {
     Publisher.Builder publisher = Publisher.newBuilder();
+    Set<String> projection = projection(path);
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readPublisherField(par, publisher, fieldName);
       }
     }
@@ -846,14 +1051,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(publisher, par, "BidRequest.app.publisher");
         break;
+      default:
+        readUnknownField(par, "BidRequest.app.publisher", fieldName);
     }
   }
 
   protected final Device.Builder readDevice(JsonParser par) throws IOException {
     Device.Builder device = Device.newBuilder();
+    Set<String> projection = projection("BidRequest.device");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readDeviceField(par, device, fieldName);
       }
     }
@@ -950,14 +1158,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(device, par, "BidRequest.device");
         break;
+      default:
+        readUnknownField(par, "BidRequest.device", fieldName);
     }
   }
 
   protected final Geo.Builder readGeo(JsonParser par, String path) throws IOException {
     Geo.Builder geo = Geo.newBuilder();
+    Set<String> projection = projection(path);
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readGeoField(par, path, geo, fieldName);
       }
     }
@@ -1000,14 +1211,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(geo, par, path);
         break;
+      default:
+        readUnknownField(par, path, fieldName);
     }
   }
 
   protected final User.Builder readUser(JsonParser par) throws IOException {
     User.Builder user = User.newBuilder();
+    Set<String> projection = projection("BidRequest.user");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readUserField(par, user, fieldName);
       }
     }
@@ -1046,14 +1260,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(user, par, "BidRequest.user");
         break;
+      default:
+        readUnknownField(par, "BidRequest.user", fieldName);
     }
   }
 
   protected final Data.Builder readData(JsonParser par) throws IOException {
     Data.Builder data = Data.newBuilder();
+    Set<String> projection = projection("BidRequest.user.data");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readDataField(par, data, fieldName);
       }
     }
@@ -1077,14 +1294,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(data, par, "BidRequest.user.data");
         break;
+      default:
+        readUnknownField(par, "BidRequest.user.data", fieldName);
     }
   }
 
   protected final Segment.Builder readSegment(JsonParser par) throws IOException {
     Segment.Builder segment = Segment.newBuilder();
+    Set<String> projection = projection("BidRequest.user.data.segment");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readSegmentField(par, segment, fieldName);
       }
     }
@@ -1106,6 +1326,8 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(segment, par, "BidRequest.user.data.segment");
         break;
+      default:
+        readUnknownField(par, "BidRequest.user.data.segment", fieldName);
     }
   }
 
@@ -1116,6 +1338,33 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
     return readBidResponse(bs.newInput());
   }
 
+  /**
+   * Desserializes a {@link BidResponse} from JSON, provided as a slice of a byte array.
+   * The JSON content is parsed in-place, with no intermediate stream or character decoding.
+   */
+  public BidResponse readBidResponse(byte[] bytes, int offset, int len) throws IOException {
+    JsonParser par = factory().getJsonFactory().createParser(bytes, offset, len);
+    try {
+      return buildBidResponse(par, len);
+    } finally {
+      par.close();
+    }
+  }
+
+  /**
+   * Desserializes a {@link BidResponse} from JSON, provided as the remaining content of a
+   * {@link ByteBuffer}. The buffer's position is not modified. Array-backed buffers are
+   * parsed in-place; direct buffers are streamed with bulk copies, with no character decoding.
+   */
+  public BidResponse readBidResponse(ByteBuffer buf) throws IOException {
+    JsonParser par = createParser(buf);
+    try {
+      return buildBidResponse(par, buf.remaining());
+    } finally {
+      par.close();
+    }
+  }
+
   /**
    * Desserializes a {@link BidResponse} from a JSON string, provided as a {@link CharSequence}.
    */
@@ -1127,7 +1376,7 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
    * Desserializes a {@link BidResponse} from JSON, streamed from a {@link Reader}.
    */
   public BidResponse readBidResponse(Reader reader) throws IOException {
-    return readBidResponse(factory().getJsonFactory().createParser(reader)).build();
+    return buildBidResponse(factory().getJsonFactory().createParser(reader), -1);
   }
 
   /**
@@ -1135,21 +1384,89 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
    */
   public BidResponse readBidResponse(InputStream is) throws IOException {
     try {
-      return readBidResponse(factory().getJsonFactory().createParser(is)).build();
+      return buildBidResponse(factory().getJsonFactory().createParser(is), -1);
     } finally {
       Closeables.closeQuietly(is);
     }
   }
 
+  /**
+   * Desserializes a stream of {@link BidResponse}s from JSON, either a sequence of objects
+   * (such as NDJSON) or an array of objects. The stream is closed after all messages are read,
+   * or when the iterator is closed.
+   */
+  public OpenRtbJsonIterator<BidResponse> readBidResponses(InputStream is) throws IOException {
+    return readBidResponses(factory().getJsonFactory().createParser(is));
+  }
+
+  /**
+   * Desserializes a stream of {@link BidResponse}s from JSON, provided as the remaining content
+   * of a {@link ByteBuffer}, either a sequence of objects (such as NDJSON) or an array of
+   * objects. The buffer's position is not modified.
+   *
+   * @see OpenRtbJsonIterator#splitLines(ByteBuffer, int)
+   */
+  public OpenRtbJsonIterator<BidResponse> readBidResponses(ByteBuffer buf) throws IOException {
+    return readBidResponses(createParser(buf));
+  }
+
+  private OpenRtbJsonIterator<BidResponse> readBidResponses(JsonParser par) {
+    return new OpenRtbJsonIterator<BidResponse>(par) {
+      @Override protected BidResponse read(JsonParser par) throws IOException {
+        return buildBidResponse(par, -1);
+      }
+    };
+  }
+
+  /**
+   * Desserializes and builds a {@link BidResponse}, updating the size and missing-required
+   * metrics if enabled (the read itself is measured by {@link #readBidResponse(JsonParser)}).
+   *
+   * @param size Size of the JSON input in bytes, or -1 if unknown
+   */
+  private BidResponse buildBidResponse(JsonParser par, int size) throws IOException {
+    BidResponse.Builder resp = readBidResponse(par);
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      return resp.build();
+    }
+    if (size >= 0) {
+      metrics.readBidResponse.size(size);
+    }
+    try {
+      return resp.build();
+    } catch (UninitializedMessageException e) {
+      metrics.readBidResponse.failure(e);
+      throw e;
+    }
+  }
+
   /**
    * Desserializes a {@link BidResponse} from JSON, with a provided {@link JsonParser}
    * which allows several choices of input and encoding.
    */
   public final BidResponse.Builder readBidResponse(JsonParser par) throws IOException {
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      return readBidResponseObject(par);
+    }
+    long start = metrics.readBidResponse.start();
+    try {
+      BidResponse.Builder resp = readBidResponseObject(par);
+      metrics.readBidResponse.stop(start);
+      return resp;
+    } catch (IOException | RuntimeException e) {
+      metrics.readBidResponse.failure(e);
+      throw e;
+    }
+  }
+
+  private BidResponse.Builder readBidResponseObject(JsonParser par) throws IOException {
     BidResponse.Builder resp = BidResponse.newBuilder();
+    Set<String> projection = projection("BidResponse");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readBidResponseField(par, resp, fieldName);
       }
     }
@@ -1182,14 +1499,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(resp, par, "BidResponse");
         break;
+      default:
+        readUnknownField(par, "BidResponse", fieldName);
     }
   }
 
   protected final SeatBid.Builder readSeatBid(JsonParser par) throws IOException {
     SeatBid.Builder seatbid = SeatBid.newBuilder();
+    Set<String> projection = projection("BidResponse.seatbid");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readSeatBidField(par, seatbid, fieldName);
       }
     }
@@ -1213,14 +1533,17 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(seatbid, par, "BidResponse.seatbid");
         break;
+      default:
+        readUnknownField(par, "BidResponse.seatbid", fieldName);
     }
   }
 
   protected final Bid.Builder readBid(JsonParser par) throws IOException {
     Bid.Builder bid = Bid.newBuilder();
+    Set<String> projection = projection("BidResponse.seatbid.bid");
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
-      if (par.nextToken() != JsonToken.VALUE_NULL) {
+      if (par.nextToken() != JsonToken.VALUE_NULL && selected(par, projection, fieldName)) {
         readBidField(par, bid, fieldName);
       }
     }
@@ -1285,6 +1608,8 @@ public class OpenRtbJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(bid, par, "BidResponse.seatbid.bid");
         break;
+      default:
+        readUnknownField(par, "BidResponse.seatbid.bid", fieldName);
     }
   }
 }
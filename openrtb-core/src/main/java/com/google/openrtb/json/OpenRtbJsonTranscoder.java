@@ -0,0 +1,432 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.openrtb.json.OpenRtbJsonUtils.endArray;
+import static com.google.openrtb.json.OpenRtbJsonUtils.endObject;
+import static com.google.openrtb.json.OpenRtbJsonUtils.getCurrentName;
+import static com.google.openrtb.json.OpenRtbJsonUtils.getDoubleValue;
+import static com.google.openrtb.json.OpenRtbJsonUtils.getIntBoolValue;
+import static com.google.openrtb.json.OpenRtbJsonUtils.startArray;
+import static com.google.openrtb.json.OpenRtbJsonUtils.startObject;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Content;
+import com.google.openrtb.OpenRtb.BidRequest.Impression.Banner;
+import com.google.openrtb.OpenRtb.BidRequest.Publisher;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtbNative.NativeRequest;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.GeneratedMessage.ExtendableBuilder;
+import com.google.protobuf.GeneratedMessage.ExtendableMessage;
+import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Transcodes OpenRTB messages from JSON directly to the protobuf binary format, without
+ * creating any message objects. This is cheaper than reading a message and then serializing
+ * it (see {@code TranscoderBenchmark}), when the message is not needed for anything else
+ * (e.g. logging).
+ * <p>
+ * JSON fields are mapped to protobuf fields by name, like {@link OpenRtbJsonReader} does;
+ * unknown fields are passed to {@link OpenRtbJsonReader#readUnknownField}, and the factory's
+ * projection is honored. Overrides of the reader's {@code read...Field()} methods are not
+ * used. Extensions are read by the factory's extension readers into a temporary builder,
+ * so only messages that have extensions are materialized. Unlike the reader, required fields
+ * are not checked.
+ * <p>
+ * The message is written into an internal buffer that is reused between calls, with
+ * nested messages written in-place after their field tag (the length is patched
+ * at the end of the nested message), then copied to the output in a single bulk write.
+ * <p>
+ * Created by {@link OpenRtbJsonReader#newTranscoder()}. This class is not threadsafe.
+ */
+public final class OpenRtbJsonTranscoder {
+  private static final int INITIAL_CAPACITY = 4096;
+  // JSON names that are different from the protobuf field name
+  private static final ImmutableMap<String, String> JSON_NAMES = ImmutableMap.of(
+      "com.google.openrtb.BidRequest.Impression.Video.deprecated_protocol", "protocol");
+  // Messages that the reader always handles with the same path for extensions and unknown
+  // fields, wherever they occur. Their projection path follows where they occur instead
+  // (e.g. "BidRequest.site.content"), except for the native request that is a separate document.
+  private static final ImmutableMap<Descriptor, String> TYPE_PATHS = ImmutableMap.of(
+      Banner.getDescriptor(), "BidRequest.imp.banner",
+      Content.getDescriptor(), "BidRequest.app.content",
+      Publisher.getDescriptor(), "BidRequest.app.publisher",
+      NativeRequest.getDescriptor(), "NativeRequest");
+
+  private final OpenRtbJsonReader reader;
+  private final Node bidRequest;
+  private final Node bidResponse;
+  private byte[] buf = new byte[INITIAL_CAPACITY];
+  private int pos;
+
+  OpenRtbJsonTranscoder(OpenRtbJsonReader reader) {
+    this.reader = reader;
+    this.bidRequest = new Node(
+        reader.factory(), BidRequest.getDefaultInstance(), "BidRequest", "BidRequest");
+    this.bidResponse = new Node(
+        reader.factory(), BidResponse.getDefaultInstance(), "BidResponse", "BidResponse");
+  }
+
+  /**
+   * Transcodes a {@link BidRequest} from JSON, provided as a region of a byte array.
+   */
+  public void transcodeBidRequest(byte[] bytes, int offset, int len, CodedOutputStream out)
+      throws IOException {
+    JsonParser par = reader.factory().getJsonFactory().createParser(bytes, offset, len);
+    try {
+      transcodeBidRequest(par, out);
+    } finally {
+      par.close();
+    }
+  }
+
+  /**
+   * Transcodes a {@link BidRequest} from JSON, with a provided {@link JsonParser}.
+   * The output is written as the content of a message, without any length prefix.
+   */
+  public void transcodeBidRequest(JsonParser par, CodedOutputStream out) throws IOException {
+    transcode(bidRequest, par, out);
+  }
+
+  /**
+   * Transcodes a {@link BidResponse} from JSON, provided as a region of a byte array.
+   */
+  public void transcodeBidResponse(byte[] bytes, int offset, int len, CodedOutputStream out)
+      throws IOException {
+    JsonParser par = reader.factory().getJsonFactory().createParser(bytes, offset, len);
+    try {
+      transcodeBidResponse(par, out);
+    } finally {
+      par.close();
+    }
+  }
+
+  /**
+   * Transcodes a {@link BidResponse} from JSON, with a provided {@link JsonParser}.
+   * The output is written as the content of a message, without any length prefix.
+   */
+  public void transcodeBidResponse(JsonParser par, CodedOutputStream out) throws IOException {
+    transcode(bidResponse, par, out);
+  }
+
+  private void transcode(Node node, JsonParser par, CodedOutputStream out) throws IOException {
+    pos = 0;
+    writeFields(node, par);
+    out.writeRawBytes(buf, 0, pos);
+  }
+
+  private void writeFields(Node node, JsonParser par) throws IOException {
+    for (startObject(par); endObject(par); par.nextToken()) {
+      String fieldName = getCurrentName(par);
+      if (par.nextToken() == JsonToken.VALUE_NULL
+          || !reader.selected(par, node.projection, fieldName)) {
+        continue;
+      }
+      FieldDescriptor fd = node.fields.get(fieldName);
+      if (fd == null) {
+        if ("ext".equals(fieldName) && node.extendable) {
+          writeExtensions(node, par);
+        } else {
+          reader.readUnknownField(par, node.path, fieldName);
+        }
+      } else if (!fd.isRepeated()) {
+        writeField(node, fd, par);
+      } else if (fd.isPacked()) {
+        writeTag(fd.getNumber(), WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        int start = beginLength();
+        for (startArray(par); endArray(par); par.nextToken()) {
+          writeScalar(fd, par);
+        }
+        endLength(start);
+      } else {
+        for (startArray(par); endArray(par); par.nextToken()) {
+          writeField(node, fd, par);
+        }
+      }
+    }
+  }
+
+  private void writeField(Node node, FieldDescriptor fd, JsonParser par) throws IOException {
+    if (fd.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+      writeTag(fd.getNumber(), fd.getLiteType().getWireType());
+      writeScalar(fd, par);
+      return;
+    }
+
+    Node child = node.children.get(fd);
+    writeTag(fd.getNumber(), WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    int start = beginLength();
+    if (par.getCurrentToken() == JsonToken.VALUE_STRING) {
+      // Embedded JSON document, like the native request
+      JsonParser embeddedPar = reader.factory().createEmbeddedParser(par);
+      try {
+        writeFields(child, embeddedPar);
+      } finally {
+        embeddedPar.close();
+      }
+    } else {
+      writeFields(child, par);
+    }
+    endLength(start);
+  }
+
+  private void writeScalar(FieldDescriptor fd, JsonParser par) throws IOException {
+    switch (fd.getType()) {
+      case DOUBLE:
+        writeFixed64(Double.doubleToRawLongBits(getDoubleValue(par)));
+        break;
+      case FLOAT:
+        writeFixed32(Float.floatToRawIntBits(par.getFloatValue()));
+        break;
+      case INT32:
+      case ENUM:
+        writeVarint(par.getIntValue());
+        break;
+      case UINT32:
+        writeVarint(par.getIntValue() & 0xFFFFFFFFL);
+        break;
+      case SINT32: {
+        int value = par.getIntValue();
+        writeVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        break;
+      }
+      case INT64:
+      case UINT64:
+        writeVarint(par.getLongValue());
+        break;
+      case SINT64: {
+        long value = par.getLongValue();
+        writeVarint((value << 1) ^ (value >> 63));
+        break;
+      }
+      case FIXED32:
+      case SFIXED32:
+        writeFixed32(par.getIntValue());
+        break;
+      case FIXED64:
+      case SFIXED64:
+        writeFixed64(par.getLongValue());
+        break;
+      case BOOL:
+        writeVarint(getIntBoolValue(par) ? 1 : 0);
+        break;
+      case STRING:
+        writeString(par.getTextCharacters(), par.getTextOffset(), par.getTextLength());
+        break;
+      case BYTES: {
+        byte[] bytes = par.getBinaryValue();
+        writeVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported field: " + fd.getFullName());
+    }
+  }
+
+  private void writeExtensions(Node node, JsonParser par) throws IOException {
+    Message ext = readExtensions(node, par);
+    int size = ext.getSerializedSize();
+    ensureCapacity(size);
+    CodedOutputStream cos = CodedOutputStream.newInstance(buf, pos, size);
+    ext.writeTo(cos);
+    cos.checkNoSpaceLeft();
+    pos += size;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private Message readExtensions(Node node, JsonParser par) throws IOException {
+    ExtendableBuilder ext = (ExtendableBuilder) node.prototype.newBuilderForType();
+    reader.readExtensions(ext, par, node.path);
+    return ext.buildPartial();
+  }
+
+  /**
+   * Reserves one byte for the length of a length-delimited value that will follow,
+   * returning the position of that byte.
+   */
+  private int beginLength() {
+    ensureCapacity(1);
+    return pos++;
+  }
+
+  /**
+   * Writes the length of a value that started after {@code start}. If the length needs
+   * more than the single byte reserved by {@link #beginLength()}, the value is shifted.
+   */
+  private void endLength(int start) {
+    int len = pos - start - 1;
+    int extra = CodedOutputStream.computeRawVarint32Size(len) - 1;
+    if (extra != 0) {
+      ensureCapacity(extra);
+      System.arraycopy(buf, start + 1, buf, start + 1 + extra, len);
+      pos += extra;
+    }
+    int end = pos;
+    pos = start;
+    writeVarint(len);
+    pos = end;
+  }
+
+  private void writeTag(int fieldNumber, int wireType) {
+    writeVarint((fieldNumber << 3) | wireType);
+  }
+
+  private void writeVarint(long value) {
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buf[pos++] = (byte) value;
+  }
+
+  private void writeFixed32(int value) {
+    ensureCapacity(4);
+    buf[pos++] = (byte) value;
+    buf[pos++] = (byte) (value >> 8);
+    buf[pos++] = (byte) (value >> 16);
+    buf[pos++] = (byte) (value >> 24);
+  }
+
+  private void writeFixed64(long value) {
+    writeFixed32((int) value);
+    writeFixed32((int) (value >> 32));
+  }
+
+  /**
+   * Writes a string as UTF-8, directly from the parser's text buffer. Unpaired surrogates
+   * are replaced by '?', like {@link String#getBytes(java.nio.charset.Charset)} does.
+   */
+  private void writeString(char[] chars, int offset, int len) {
+    int end = offset + len;
+    int utf8Len = 0;
+    for (int i = offset; i < end; ++i) {
+      char c = chars[i];
+      if (c < 0x80) {
+        ++utf8Len;
+      } else if (c < 0x800) {
+        utf8Len += 2;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < end && Character.isLowSurrogate(chars[i + 1])) {
+        utf8Len += 4;
+        ++i;
+      } else {
+        utf8Len += Character.isSurrogate(c) ? 1 : 3;
+      }
+    }
+
+    writeVarint(utf8Len);
+    ensureCapacity(utf8Len);
+    for (int i = offset; i < end; ++i) {
+      char c = chars[i];
+      if (c < 0x80) {
+        buf[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buf[pos++] = (byte) (0xC0 | (c >> 6));
+        buf[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < end && Character.isLowSurrogate(chars[i + 1])) {
+        int cp = Character.toCodePoint(c, chars[++i]);
+        buf[pos++] = (byte) (0xF0 | (cp >> 18));
+        buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        buf[pos++] = '?';
+      } else {
+        buf[pos++] = (byte) (0xE0 | (c >> 12));
+        buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buf[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private void ensureCapacity(int len) {
+    if (pos + len > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + len));
+    }
+  }
+
+  /**
+   * Field mapping for one message type at some path, with nodes for all its message fields.
+   * Like {@link OpenRtbJsonReader}, the path used for extensions and unknown fields can be
+   * different from the projection path, e.g. "BidRequest.app.content" for site content
+   * that's projected as "BidRequest.site.content".
+   */
+  private static final class Node {
+    final Message prototype;
+    final String path;
+    final String projectionPath;
+    final boolean extendable;
+    final @Nullable Set<String> projection;
+    final Map<String, FieldDescriptor> fields = new HashMap<>();
+    final Map<FieldDescriptor, Node> children = new HashMap<>();
+
+    Node(OpenRtbJsonFactory factory, Message prototype, String path, String projectionPath) {
+      Descriptor descriptor = prototype.getDescriptorForType();
+      this.prototype = prototype;
+      this.path = path;
+      this.projectionPath = projectionPath;
+      this.extendable = prototype instanceof ExtendableMessage;
+      this.projection = factory.getProjection(projectionPath);
+
+      for (FieldDescriptor fd : descriptor.getFields()) {
+        String jsonName = JSON_NAMES.get(fd.getFullName());
+        if (jsonName == null) {
+          jsonName = fd.getName();
+        }
+        fields.put(jsonName, fd);
+
+        if (fd.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+          String childPath = TYPE_PATHS.get(fd.getMessageType());
+          String childProjectionPath;
+          if (childPath == null) {
+            // The reader uses singular path names for native assets
+            childPath = path + '.' + ("assets".equals(jsonName) ? "asset" : jsonName);
+            childProjectionPath = childPath;
+          } else if (fd.getMessageType() == NativeRequest.getDescriptor()) {
+            childProjectionPath = childPath;
+          } else {
+            childProjectionPath = projectionPath + '.' + jsonName;
+          }
+          Message childPrototype =
+              prototype.newBuilderForType().newBuilderForField(fd).getDefaultInstanceForType();
+          children.put(fd, new Node(factory, childPrototype, childPath, childProjectionPath));
+        }
+      }
+    }
+  }
+}
@@ -22,14 +22,24 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.List;
 
 /**
  * Utilities for writing JSON serialization code.
  */
 public class OpenRtbJsonUtils {
+  // Powers of ten that are exact doubles, for the fast path of getDoubleValue()
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+      1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final int MICROS_DIGITS = 6;
+  private static final long MICROS = 1000000L;
 
   public static String getCurrentName(JsonParser par) throws JsonParseException, IOException {
     String name = par.getCurrentName();
@@ -76,10 +86,114 @@ public class OpenRtbJsonUtils {
     return Double.parseDouble(par.getText());
   }
 
+  /**
+   * Returns the current value (a number, or a string containing a number) as a {@code double}.
+   * Plain decimals (no exponent) are converted directly from the parser's text buffer when they
+   * have up to 18 digits, their digits without the decimal point make an integer up to 2^53,
+   * and they have up to 22 fractional digits. This covers typical prices and coordinates, and
+   * any decimal with up to 15 digits. The result is exact (same as
+   * {@link Double#parseDouble(String)}) since both the digits and the power of ten are exact
+   * doubles, and a single division is correctly rounded. Other values use
+   * {@link Double#parseDouble(String)}.
+   */
   public static double getDoubleValue(JsonParser par) throws IOException, JsonParseException {
+    char[] chars = par.getTextCharacters();
+    if (chars != null) {
+      int pos = par.getTextOffset();
+      int end = pos + par.getTextLength();
+      boolean negative = pos < end && chars[pos] == '-';
+      if (negative) {
+        ++pos;
+      }
+      long mantissa = 0;
+      int digits = 0;
+      int fractionDigits = -1;
+      for (; pos < end; ++pos) {
+        char c = chars[pos];
+        if (c >= '0' && c <= '9' && digits < 18) {
+          mantissa = mantissa * 10 + (c - '0');
+          ++digits;
+          if (fractionDigits >= 0) {
+            ++fractionDigits;
+          }
+        } else if (c == '.' && fractionDigits == -1) {
+          fractionDigits = 0;
+        } else {
+          break;
+        }
+      }
+      if (pos == end && digits != 0 && fractionDigits != 0 && mantissa <= MAX_EXACT_MANTISSA
+          && fractionDigits < POW10.length) {
+        double value = fractionDigits == -1 ? mantissa : mantissa / POW10[fractionDigits];
+        return negative ? -value : value;
+      }
+    }
     return Double.parseDouble(par.getText());
   }
 
+  /**
+   * Returns the current value (a number, or a string containing a number) in fixed-point
+   * "micros", i.e. multiplied by 1,000,000 and rounded half-up to a {@code long}. This is exact
+   * for any decimal, so prices and floors can be compared without floating-point error;
+   * for example, {@code 1.15} is always {@code 1150000}.
+   *
+   * @throws JsonParseException if the value is not a number, or doesn't fit in a {@code long}
+   */
+  public static long getMicrosValue(JsonParser par) throws IOException, JsonParseException {
+    char[] chars = par.getTextCharacters();
+    if (chars != null) {
+      int pos = par.getTextOffset();
+      int end = pos + par.getTextLength();
+      boolean negative = pos < end && chars[pos] == '-';
+      if (negative) {
+        ++pos;
+      }
+      long units = 0;
+      int unitDigits = 0;
+      long micros = 0;
+      int fractionDigits = -1;
+      boolean roundUp = false;
+      for (; pos < end; ++pos) {
+        char c = chars[pos];
+        if (c >= '0' && c <= '9') {
+          if (fractionDigits == -1) {
+            if (++unitDigits > 12) {
+              break;
+            }
+            units = units * 10 + (c - '0');
+          } else {
+            if (fractionDigits < MICROS_DIGITS) {
+              micros = micros * 10 + (c - '0');
+            } else if (fractionDigits == MICROS_DIGITS) {
+              roundUp = c >= '5';
+            }
+            ++fractionDigits;
+          }
+        } else if (c == '.' && fractionDigits == -1) {
+          fractionDigits = 0;
+        } else {
+          break;
+        }
+      }
+      if (pos == end && unitDigits != 0 && fractionDigits != 0) {
+        for (int i = Math.max(fractionDigits, 0); i < MICROS_DIGITS; ++i) {
+          micros *= 10;
+        }
+        long value = units * MICROS + micros + (roundUp ? 1 : 0);
+        return negative ? -value : value;
+      }
+    }
+    try {
+      return new BigDecimal(par.getText().trim())
+          .movePointRight(MICROS_DIGITS)
+          .setScale(0, RoundingMode.HALF_UP)
+          .longValueExact();
+    } catch (NumberFormatException | ArithmeticException e) {
+      throw new JsonParseException(
+          "Expected a number in range, got: " + par.getText(), par.getCurrentLocation(), e);
+    }
+  }
+
   @Deprecated
   public static boolean nextIntBoolValue(JsonParser par) throws IOException, JsonParseException {
     return par.nextIntValue(0) != 0;
@@ -94,6 +208,83 @@ public class OpenRtbJsonUtils {
     gen.writeNumberField(fieldName, data ? 1 : 0);
   }
 
+  /**
+   * Writes a string field. Like all overloads that take the field name as a
+   * {@link SerializableString}, this avoids quoting and encoding the name for every call
+   * if the name is a precomputed {@link com.fasterxml.jackson.core.io.SerializedString}.
+   */
+  public static void writeStringField(
+      SerializableString fieldName, String data, JsonGenerator gen) throws IOException {
+    gen.writeFieldName(fieldName);
+    gen.writeString(data);
+  }
+
+  public static void writeNumberField(SerializableString fieldName, int data, JsonGenerator gen)
+      throws IOException {
+    gen.writeFieldName(fieldName);
+    gen.writeNumber(data);
+  }
+
+  public static void writeNumberField(SerializableString fieldName, long data, JsonGenerator gen)
+      throws IOException {
+    gen.writeFieldName(fieldName);
+    gen.writeNumber(data);
+  }
+
+  public static void writeNumberField(
+      SerializableString fieldName, float data, JsonGenerator gen) throws IOException {
+    gen.writeFieldName(fieldName);
+    gen.writeNumber(data);
+  }
+
+  public static void writeNumberField(
+      SerializableString fieldName, double data, JsonGenerator gen) throws IOException {
+    gen.writeFieldName(fieldName);
+    gen.writeNumber(data);
+  }
+
+  public static void writeIntBoolField(
+      SerializableString fieldName, boolean data, JsonGenerator gen) throws IOException {
+    gen.writeFieldName(fieldName);
+    gen.writeNumber(data ? 1 : 0);
+  }
+
+  public static void writeStrings(
+      SerializableString fieldName, List<String> data, JsonGenerator gen) throws IOException {
+    if (!data.isEmpty()) {
+      gen.writeFieldName(fieldName);
+      gen.writeStartArray();
+      for (String d : data) {
+        gen.writeString(d);
+      }
+      gen.writeEndArray();
+    }
+  }
+
+  public static void writeInts(
+      SerializableString fieldName, List<Integer> data, JsonGenerator gen) throws IOException {
+    if (!data.isEmpty()) {
+      gen.writeFieldName(fieldName);
+      gen.writeStartArray();
+      for (Integer d : data) {
+        gen.writeNumber(d);
+      }
+      gen.writeEndArray();
+    }
+  }
+
+  public static void writeEnums(SerializableString fieldName,
+      List<? extends ProtocolMessageEnum> enums, JsonGenerator gen) throws IOException {
+    if (!enums.isEmpty()) {
+      gen.writeFieldName(fieldName);
+      gen.writeStartArray();
+      for (ProtocolMessageEnum e : enums) {
+        gen.writeNumber(e.getNumber());
+      }
+      gen.writeEndArray();
+    }
+  }
+
   public static void writeStrings(String fieldName, List<String> data, JsonGenerator gen)
       throws IOException {
     if (!data.isEmpty()) {
@@ -18,6 +18,8 @@ package com.google.openrtb.json;
 
 import static com.google.openrtb.json.OpenRtbJsonUtils.writeEnums;
 import static com.google.openrtb.json.OpenRtbJsonUtils.writeIntBoolField;
+import static com.google.openrtb.json.OpenRtbJsonUtils.writeNumberField;
+import static com.google.openrtb.json.OpenRtbJsonUtils.writeStringField;
 import static com.google.openrtb.json.OpenRtbJsonUtils.writeStrings;
 
 import com.google.openrtb.OpenRtb.BidRequest;
@@ -41,14 +43,18 @@ import com.google.openrtb.OpenRtb.BidRequest.User;
 import com.google.openrtb.OpenRtb.BidResponse;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.OpenRtbNative.NativeRequest;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 
 /**
  * Serializes OpenRTB BidRequest/BidResponse messages to JSON.
@@ -60,6 +66,172 @@ import java.io.Writer;
  */
 public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
 
+  private static final SerializedString ADID = new SerializedString("adid");
+  private static final SerializedString ADM = new SerializedString("adm");
+  private static final SerializedString ADOMAIN = new SerializedString("adomain");
+  private static final SerializedString ALLIMPS = new SerializedString("allimps");
+  private static final SerializedString API = new SerializedString("api");
+  private static final SerializedString APP = new SerializedString("app");
+  private static final SerializedString AT = new SerializedString("at");
+  private static final SerializedString ATTR = new SerializedString("attr");
+  private static final SerializedString BADV = new SerializedString("badv");
+  private static final SerializedString BANNER = new SerializedString("banner");
+  private static final SerializedString BATTR = new SerializedString("battr");
+  private static final SerializedString BCAT = new SerializedString("bcat");
+  private static final SerializedString BID = new SerializedString("bid");
+  private static final SerializedString BIDFLOOR = new SerializedString("bidfloor");
+  private static final SerializedString BIDFLOORCUR = new SerializedString("bidfloorcur");
+  private static final SerializedString BIDID = new SerializedString("bidid");
+  private static final SerializedString BOXINGALLOWED = new SerializedString("boxingallowed");
+  private static final SerializedString BTYPE = new SerializedString("btype");
+  private static final SerializedString BUNDLE = new SerializedString("bundle");
+  private static final SerializedString BUYERUID = new SerializedString("buyeruid");
+  private static final SerializedString CARRIER = new SerializedString("carrier");
+  private static final SerializedString CAT = new SerializedString("cat");
+  private static final SerializedString CID = new SerializedString("cid");
+  private static final SerializedString CITY = new SerializedString("city");
+  private static final SerializedString COMPANIONAD = new SerializedString("companionad");
+  private static final SerializedString COMPANIONTYPE = new SerializedString("companiontype");
+  private static final SerializedString CONNECTIONTYPE = new SerializedString("connectiontype");
+  private static final SerializedString CONTENT = new SerializedString("content");
+  private static final SerializedString CONTENTRATING = new SerializedString("contentrating");
+  private static final SerializedString CONTEXT = new SerializedString("context");
+  private static final SerializedString COPPA = new SerializedString("coppa");
+  private static final SerializedString COUNTRY = new SerializedString("country");
+  private static final SerializedString CRID = new SerializedString("crid");
+  private static final SerializedString CUR = new SerializedString("cur");
+  private static final SerializedString CUSTOMDATA = new SerializedString("customdata");
+  private static final SerializedString DATA = new SerializedString("data");
+  private static final SerializedString DEALID = new SerializedString("dealid");
+  private static final SerializedString DEALS = new SerializedString("deals");
+  private static final SerializedString DELIVERY = new SerializedString("delivery");
+  private static final SerializedString DEVICE = new SerializedString("device");
+  private static final SerializedString DEVICETYPE = new SerializedString("devicetype");
+  private static final SerializedString DIDMD5 = new SerializedString("didmd5");
+  private static final SerializedString DIDSHA1 = new SerializedString("didsha1");
+  private static final SerializedString DISPLAYMANAGER = new SerializedString("displaymanager");
+  private static final SerializedString DISPLAYMANAGERVER =
+      new SerializedString("displaymanagerver");
+  private static final SerializedString DNT = new SerializedString("dnt");
+  private static final SerializedString DOMAIN = new SerializedString("domain");
+  private static final SerializedString DPIDMD5 = new SerializedString("dpidmd5");
+  private static final SerializedString DPIDSHA1 = new SerializedString("dpidsha1");
+  private static final SerializedString EMBEDDABLE = new SerializedString("embeddable");
+  private static final SerializedString EPISODE = new SerializedString("episode");
+  private static final SerializedString EXPDIR = new SerializedString("expdir");
+  private static final SerializedString FLASHVER = new SerializedString("flashver");
+  private static final SerializedString GENDER = new SerializedString("gender");
+  private static final SerializedString GEO = new SerializedString("geo");
+  private static final SerializedString GROUP = new SerializedString("group");
+  private static final SerializedString H = new SerializedString("h");
+  private static final SerializedString HMAX = new SerializedString("hmax");
+  private static final SerializedString HMIN = new SerializedString("hmin");
+  private static final SerializedString HWV = new SerializedString("hwv");
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString IFA = new SerializedString("ifa");
+  private static final SerializedString IFRAMEBUSTER = new SerializedString("iframebuster");
+  private static final SerializedString IMP = new SerializedString("imp");
+  private static final SerializedString IMPID = new SerializedString("impid");
+  private static final SerializedString INSTL = new SerializedString("instl");
+  private static final SerializedString IP = new SerializedString("ip");
+  private static final SerializedString IPV6 = new SerializedString("ipv6");
+  private static final SerializedString IURL = new SerializedString("iurl");
+  private static final SerializedString JS = new SerializedString("js");
+  private static final SerializedString KEYWORDS = new SerializedString("keywords");
+  private static final SerializedString LANGUAGE = new SerializedString("language");
+  private static final SerializedString LAT = new SerializedString("lat");
+  private static final SerializedString LEN = new SerializedString("len");
+  private static final SerializedString LINEARITY = new SerializedString("linearity");
+  private static final SerializedString LIVESTREAM = new SerializedString("livestream");
+  private static final SerializedString LMT = new SerializedString("lmt");
+  private static final SerializedString LON = new SerializedString("lon");
+  private static final SerializedString MACMD5 = new SerializedString("macmd5");
+  private static final SerializedString MACSHA1 = new SerializedString("macsha1");
+  private static final SerializedString MAKE = new SerializedString("make");
+  private static final SerializedString MAXBITRATE = new SerializedString("maxbitrate");
+  private static final SerializedString MAXDURATION = new SerializedString("maxduration");
+  private static final SerializedString MAXEXTENDED = new SerializedString("maxextended");
+  private static final SerializedString METRO = new SerializedString("metro");
+  private static final SerializedString MIMES = new SerializedString("mimes");
+  private static final SerializedString MINBITRATE = new SerializedString("minbitrate");
+  private static final SerializedString MINDURATION = new SerializedString("minduration");
+  private static final SerializedString MOBILE = new SerializedString("mobile");
+  private static final SerializedString MODEL = new SerializedString("model");
+  private static final SerializedString NAME = new SerializedString("name");
+  private static final SerializedString NATIVE = new SerializedString("native");
+  private static final SerializedString NBR = new SerializedString("nbr");
+  private static final SerializedString NURL = new SerializedString("nurl");
+  private static final SerializedString OS = new SerializedString("os");
+  private static final SerializedString OSV = new SerializedString("osv");
+  private static final SerializedString PAGE = new SerializedString("page");
+  private static final SerializedString PAGECAT = new SerializedString("pagecat");
+  private static final SerializedString PAID = new SerializedString("paid");
+  private static final SerializedString PLAYBACKMETHOD = new SerializedString("playbackmethod");
+  private static final SerializedString PMP = new SerializedString("pmp");
+  private static final SerializedString POS = new SerializedString("pos");
+  private static final SerializedString PPI = new SerializedString("ppi");
+  private static final SerializedString PRICE = new SerializedString("price");
+  private static final SerializedString PRIVACYPOLICY = new SerializedString("privacypolicy");
+  private static final SerializedString PRIVATE_AUCTION = new SerializedString("private_auction");
+  private static final SerializedString PRODUCER = new SerializedString("producer");
+  private static final SerializedString PROTOCOL = new SerializedString("protocol");
+  private static final SerializedString PROTOCOLS = new SerializedString("protocols");
+  private static final SerializedString PUBLISHER = new SerializedString("publisher");
+  private static final SerializedString PXRATIO = new SerializedString("pxratio");
+  private static final SerializedString QAGMEDIARATING = new SerializedString("qagmediarating");
+  private static final SerializedString REF = new SerializedString("ref");
+  private static final SerializedString REGION = new SerializedString("region");
+  private static final SerializedString REGIONFIPS104 = new SerializedString("regionfips104");
+  private static final SerializedString REGS = new SerializedString("regs");
+  private static final SerializedString REQUEST = new SerializedString("request");
+  private static final SerializedString SEARCH = new SerializedString("search");
+  private static final SerializedString SEASON = new SerializedString("season");
+  private static final SerializedString SEAT = new SerializedString("seat");
+  private static final SerializedString SEATBID = new SerializedString("seatbid");
+  private static final SerializedString SECTIONCAT = new SerializedString("sectioncat");
+  private static final SerializedString SECURE = new SerializedString("secure");
+  private static final SerializedString SEGMENT = new SerializedString("segment");
+  private static final SerializedString SEQUENCE = new SerializedString("sequence");
+  private static final SerializedString SERIES = new SerializedString("series");
+  private static final SerializedString SITE = new SerializedString("site");
+  private static final SerializedString SOURCERELATIONSHIP =
+      new SerializedString("sourcerelationship");
+  private static final SerializedString STARTDELAY = new SerializedString("startdelay");
+  private static final SerializedString STOREURL = new SerializedString("storeurl");
+  private static final SerializedString TAGID = new SerializedString("tagid");
+  private static final SerializedString TEST = new SerializedString("test");
+  private static final SerializedString TITLE = new SerializedString("title");
+  private static final SerializedString TMAX = new SerializedString("tmax");
+  private static final SerializedString TOPFRAME = new SerializedString("topframe");
+  private static final SerializedString TYPE = new SerializedString("type");
+  private static final SerializedString UA = new SerializedString("ua");
+  private static final SerializedString URL = new SerializedString("url");
+  private static final SerializedString USER = new SerializedString("user");
+  private static final SerializedString USERRATING = new SerializedString("userrating");
+  private static final SerializedString UTCOFFSET = new SerializedString("utcoffset");
+  private static final SerializedString VALUE = new SerializedString("value");
+  private static final SerializedString VER = new SerializedString("ver");
+  private static final SerializedString VIDEO = new SerializedString("video");
+  private static final SerializedString VIDEOQUALITY = new SerializedString("videoquality");
+  private static final SerializedString W = new SerializedString("w");
+  private static final SerializedString WADOMAIN = new SerializedString("wadomain");
+  private static final SerializedString WMAX = new SerializedString("wmax");
+  private static final SerializedString WMIN = new SerializedString("wmin");
+  private static final SerializedString WSEAT = new SerializedString("wseat");
+  private static final SerializedString YOB = new SerializedString("yob");
+  private static final SerializedString ZIP = new SerializedString("zip");
+
+  // Buffers for the output of write*Bytes(), up to 1Mb
+  private static final ByteArrayPool bytesPool = new ByteArrayPool(16);
+  private static final int INITIAL_BYTES = 4096;
+  // Larger native buffers are allocated for a single use, so idle threads don't keep them
+  private static final int MAX_BUFFER_SIZE = 1 << 16;
+  private static final ThreadLocal<NativeBuffer> nativeBuffer = new ThreadLocal<NativeBuffer>() {
+    @Override protected NativeBuffer initialValue() {
+      return new NativeBuffer();
+    }
+  };
+
   protected OpenRtbJsonWriter(OpenRtbJsonFactory factory) {
     super(factory);
   }
@@ -94,56 +266,126 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
     writeBidRequest(req, gen);
   }
 
+  /**
+   * Serializes a {@link BidRequest} to JSON, returned as UTF-8 bytes. The JSON is written into
+   * a pooled buffer, so the returned array is the only allocation for the content. The content
+   * is still copied twice, into the pooled buffer and then into the returned array; the pool
+   * only saves the allocations and copies of growing the buffer.
+   */
+  public byte[] writeBidRequestBytes(BidRequest req) throws IOException {
+    PooledByteArrayOutputStream os = new PooledByteArrayOutputStream(bytesPool, INITIAL_BYTES);
+    try {
+      JsonGenerator gen = factory().getJsonFactory().createGenerator(os);
+      try {
+        writeBidRequest(req, gen);
+      } finally {
+        gen.close();
+      }
+      byte[] json = os.toByteArray();
+      OpenRtbJsonMetrics metrics = factory().getMetrics();
+      if (metrics != null) {
+        metrics.writeBidRequest.size(json.length);
+      }
+      return json;
+    } finally {
+      os.release();
+    }
+  }
+
+  /**
+   * Serializes a {@link BidRequest} to JSON as UTF-8, written directly into a {@link ByteBuffer}
+   * starting at its position, which is advanced past the JSON content. If writing fails,
+   * the position is restored (but the buffer may contain some partial content after it).
+   *
+   * @throws java.nio.BufferOverflowException if the buffer doesn't have enough space
+   */
+  public void writeBidRequest(BidRequest req, ByteBuffer buf) throws IOException {
+    int start = buf.position();
+    try {
+      JsonGenerator gen =
+          factory().getJsonFactory().createGenerator(new ByteBufferOutputStream(buf));
+      try {
+        writeBidRequest(req, gen);
+      } finally {
+        gen.close();
+      }
+    } catch (IOException | RuntimeException e) {
+      buf.position(start);
+      throw e;
+    }
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics != null) {
+      metrics.writeBidRequest.size(buf.position() - start);
+    }
+  }
+
   /**
    * Serializes a {@link BidRequest} to JSON, with a provided {@link JsonGenerator}
    * which allows several choices of output and encoding.
    */
   public void writeBidRequest(BidRequest req, JsonGenerator gen) throws IOException {
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      writeBidRequestObject(req, gen);
+      return;
+    }
+    long start = metrics.writeBidRequest.start();
+    try {
+      writeBidRequestObject(req, gen);
+      metrics.writeBidRequest.stop(start);
+    } catch (IOException | RuntimeException e) {
+      metrics.writeBidRequest.failure(e);
+      throw e;
+    }
+  }
+
+  private void writeBidRequestObject(BidRequest req, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (checkRequired(req.hasId())) {
-      gen.writeStringField("id", req.getId());
+      writeStringField(ID, req.getId(), gen);
     }
     if (req.getImpCount() != 0) {
-      gen.writeArrayFieldStart("imp");
+      gen.writeFieldName(IMP);
+      gen.writeStartArray();
       for (Impression imp : req.getImpList()) {
         writeImpression(imp, gen);
       }
       gen.writeEndArray();
     }
     if (req.hasSite()) {
-      gen.writeFieldName("site");
+      gen.writeFieldName(SITE);
       writeSite(req.getSite(), gen);
     }
     if (req.hasApp()) {
-      gen.writeFieldName("app");
+      gen.writeFieldName(APP);
       writeApp(req.getApp(), gen);
     }
     if (req.hasDevice()) {
-      gen.writeFieldName("device");
+      gen.writeFieldName(DEVICE);
       writeDevice(req.getDevice(), gen);
     }
     if (req.hasUser()) {
-      gen.writeFieldName("user");
+      gen.writeFieldName(USER);
       writeUser(req.getUser(), gen);
     }
     if (req.hasTest()) {
-      writeIntBoolField("test", req.getTest(), gen);
+      writeIntBoolField(TEST, req.getTest(), gen);
     }
     if (req.hasAt()) {
-      gen.writeNumberField("at", req.getAt());
+      writeNumberField(AT, req.getAt(), gen);
     }
     if (req.hasTmax()) {
-      gen.writeNumberField("tmax", req.getTmax());
+      writeNumberField(TMAX, req.getTmax(), gen);
     }
-    writeStrings("wseat", req.getWseatList(), gen);
+    writeStrings(WSEAT, req.getWseatList(), gen);
     if (req.hasAllimps()) {
-      writeIntBoolField("allimps", req.getAllimps(), gen);
+      writeIntBoolField(ALLIMPS, req.getAllimps(), gen);
     }
-    writeStrings("cur", req.getCurList(), gen);
-    writeStrings("bcat", req.getBcatList(), gen);
-    writeStrings("badv", req.getBadvList(), gen);
+    writeStrings(CUR, req.getCurList(), gen);
+    writeStrings(BCAT, req.getBcatList(), gen);
+    writeStrings(BADV, req.getBadvList(), gen);
     if (req.hasRegs()) {
-      gen.writeFieldName("regs");
+      gen.writeFieldName(REGS);
       writeRegulations(req.getRegs(), gen);
     }
     writeExtensions(req, gen, "BidRequest");
@@ -154,44 +396,44 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeImpression(Impression imp, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (checkRequired(imp.hasId())) {
-      gen.writeStringField("id", imp.getId());
+      writeStringField(ID, imp.getId(), gen);
     }
     if (imp.hasBanner()) {
-      gen.writeFieldName("banner");
+      gen.writeFieldName(BANNER);
       writeBanner(imp.getBanner(), gen);
     }
     if (imp.hasVideo()) {
-      gen.writeFieldName("video");
+      gen.writeFieldName(VIDEO);
       writeVideo(imp.getVideo(), gen);
     }
     if (imp.hasNative()) {
-      gen.writeFieldName("native");
+      gen.writeFieldName(NATIVE);
       writeNative(imp.getNative(), gen);
     }
     if (imp.hasDisplaymanager()) {
-      gen.writeStringField("displaymanager", imp.getDisplaymanager());
+      writeStringField(DISPLAYMANAGER, imp.getDisplaymanager(), gen);
     }
     if (imp.hasDisplaymanagerver()) {
-      gen.writeStringField("displaymanagerver", imp.getDisplaymanagerver());
+      writeStringField(DISPLAYMANAGERVER, imp.getDisplaymanagerver(), gen);
     }
     if (imp.hasInstl()) {
-      writeIntBoolField("instl", imp.getInstl(), gen);
+      writeIntBoolField(INSTL, imp.getInstl(), gen);
     }
     if (imp.hasTagid()) {
-      gen.writeStringField("tagid", imp.getTagid());
+      writeStringField(TAGID, imp.getTagid(), gen);
     }
     if (imp.hasBidfloor()) {
-      gen.writeNumberField("bidfloor", imp.getBidfloor());
+      writeNumberField(BIDFLOOR, imp.getBidfloor(), gen);
     }
     if (imp.hasBidfloorcur()) {
-      gen.writeStringField("bidfloorcur", imp.getBidfloorcur());
+      writeStringField(BIDFLOORCUR, imp.getBidfloorcur(), gen);
     }
     if (imp.hasSecure()) {
-      writeIntBoolField("secure", imp.getSecure(), gen);
+      writeIntBoolField(SECURE, imp.getSecure(), gen);
     }
-    writeStrings("iframebuster", imp.getIframebusterList(), gen);
+    writeStrings(IFRAMEBUSTER, imp.getIframebusterList(), gen);
     if (imp.hasPmp()) {
-      gen.writeFieldName("pmp");
+      gen.writeFieldName(PMP);
       writePMP(imp.getPmp(), gen);
     }
     writeExtensions(imp, gen, "BidRequest.imp");
@@ -201,96 +443,97 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeBanner(Banner banner, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (banner.hasW()) {
-      gen.writeNumberField("w", banner.getW());
+      writeNumberField(W, banner.getW(), gen);
     }
     if (banner.hasH()) {
-      gen.writeNumberField("h", banner.getH());
+      writeNumberField(H, banner.getH(), gen);
     }
     if (banner.hasWmax()) {
-      gen.writeNumberField("wmax", banner.getWmax());
+      writeNumberField(WMAX, banner.getWmax(), gen);
     }
     if (banner.hasHmax()) {
-      gen.writeNumberField("hmax", banner.getHmax());
+      writeNumberField(HMAX, banner.getHmax(), gen);
     }
     if (banner.hasWmin()) {
-      gen.writeNumberField("wmin", banner.getWmin());
+      writeNumberField(WMIN, banner.getWmin(), gen);
     }
     if (banner.hasHmin()) {
-      gen.writeNumberField("hmin", banner.getHmin());
+      writeNumberField(HMIN, banner.getHmin(), gen);
     }
     if (banner.hasId()) {
-      gen.writeStringField("id", banner.getId());
+      writeStringField(ID, banner.getId(), gen);
     }
-    writeEnums("btype", banner.getBtypeList(), gen);
-    writeEnums("battr", banner.getBattrList(), gen);
+    writeEnums(BTYPE, banner.getBtypeList(), gen);
+    writeEnums(BATTR, banner.getBattrList(), gen);
     if (banner.hasPos()) {
-      gen.writeNumberField("pos", banner.getPos().getNumber());
+      writeNumberField(POS, banner.getPos().getNumber(), gen);
     }
-    writeStrings("mimes", banner.getMimesList(), gen);
+    writeStrings(MIMES, banner.getMimesList(), gen);
     if (banner.hasTopframe()) {
-      writeIntBoolField("topframe", banner.getTopframe(), gen);
+      writeIntBoolField(TOPFRAME, banner.getTopframe(), gen);
     }
-    writeEnums("expdir", banner.getExpdirList(), gen);
-    writeEnums("api", banner.getApiList(), gen);
+    writeEnums(EXPDIR, banner.getExpdirList(), gen);
+    writeEnums(API, banner.getApiList(), gen);
     writeExtensions(banner, gen, "BidRequest.imp.banner");
     gen.writeEndObject();
   }
 
   protected void writeVideo(Video video, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
-    writeStrings("mimes", video.getMimesList(), gen);
+    writeStrings(MIMES, video.getMimesList(), gen);
     if (checkRequired(video.hasMinduration())) {
-      gen.writeNumberField("minduration", video.getMinduration());
+      writeNumberField(MINDURATION, video.getMinduration(), gen);
     }
     if (checkRequired(video.hasMaxduration())) {
-      gen.writeNumberField("maxduration", video.getMaxduration());
+      writeNumberField(MAXDURATION, video.getMaxduration(), gen);
     }
     if (checkRequired(video.hasDeprecatedProtocol())) {
-      gen.writeNumberField("protocol", video.getDeprecatedProtocol().getNumber());
+      writeNumberField(PROTOCOL, video.getDeprecatedProtocol().getNumber(), gen);
     }
-    writeEnums("protocols", video.getProtocolsList(), gen);
+    writeEnums(PROTOCOLS, video.getProtocolsList(), gen);
     if (video.hasW()) {
-      gen.writeNumberField("w", video.getW());
+      writeNumberField(W, video.getW(), gen);
     }
     if (video.hasH()) {
-      gen.writeNumberField("h", video.getH());
+      writeNumberField(H, video.getH(), gen);
     }
     if (video.hasStartdelay()) {
-      gen.writeNumberField("startdelay", video.getStartdelay());
+      writeNumberField(STARTDELAY, video.getStartdelay(), gen);
     }
     if (checkRequired(video.hasLinearity())) {
-      gen.writeNumberField("linearity", video.getLinearity().getNumber());
+      writeNumberField(LINEARITY, video.getLinearity().getNumber(), gen);
     }
     if (video.hasSequence()) {
-      gen.writeNumberField("sequence", video.getSequence());
+      writeNumberField(SEQUENCE, video.getSequence(), gen);
     }
-    writeEnums("battr", video.getBattrList(), gen);
+    writeEnums(BATTR, video.getBattrList(), gen);
     if (video.hasMaxextended()) {
-      gen.writeNumberField("maxextended", video.getMaxextended());
+      writeNumberField(MAXEXTENDED, video.getMaxextended(), gen);
     }
     if (video.hasMinbitrate()) {
-      gen.writeNumberField("minbitrate", video.getMinbitrate());
+      writeNumberField(MINBITRATE, video.getMinbitrate(), gen);
     }
     if (video.hasMaxbitrate()) {
-      gen.writeNumberField("maxbitrate", video.getMaxbitrate());
+      writeNumberField(MAXBITRATE, video.getMaxbitrate(), gen);
     }
     if (video.hasBoxingallowed()) {
-      writeIntBoolField("boxingallowed", video.getBoxingallowed(), gen);
+      writeIntBoolField(BOXINGALLOWED, video.getBoxingallowed(), gen);
     }
-    writeEnums("playbackmethod", video.getPlaybackmethodList(), gen);
-    writeEnums("delivery", video.getDeliveryList(), gen);
+    writeEnums(PLAYBACKMETHOD, video.getPlaybackmethodList(), gen);
+    writeEnums(DELIVERY, video.getDeliveryList(), gen);
     if (video.hasPos()) {
-      gen.writeNumberField("pos", video.getPos().getNumber());
+      writeNumberField(POS, video.getPos().getNumber(), gen);
     }
     if (video.getCompanionadCount() != 0) {
-      gen.writeArrayFieldStart("companionad");
+      gen.writeFieldName(COMPANIONAD);
+      gen.writeStartArray();
       for (Banner companionad : video.getCompanionadList()) {
         writeBanner(companionad, gen);
       }
       gen.writeEndArray();
     }
-    writeEnums("api", video.getApiList(), gen);
-    writeEnums("companiontype", video.getCompaniontypeList(), gen);
+    writeEnums(API, video.getApiList(), gen);
+    writeEnums(COMPANIONTYPE, video.getCompaniontypeList(), gen);
     writeExtensions(video, gen, "BidRequest.imp.video");
     gen.writeEndObject();
   }
@@ -298,25 +541,51 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected final void writeNative(Native nativ, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (nativ.hasRequest()) {
-      OpenRtbNativeJsonWriter nativeWriter = factory().newNativeWriter();
-      gen.writeStringField("request", nativeWriter.writeNativeRequest(nativ.getRequest()));
+      writeNativeRequest(nativ.getRequest(), gen);
     }
     if (nativ.hasVer()) {
-      gen.writeStringField("ver", nativ.getVer());
+      writeStringField(VER, nativ.getVer(), gen);
     }
-    writeEnums("api", nativ.getApiList(), gen);
-    writeEnums("battr", nativ.getBattrList(), gen);
+    writeEnums(API, nativ.getApiList(), gen);
+    writeEnums(BATTR, nativ.getBattrList(), gen);
     writeExtensions(nativ, gen, "BidRequest.imp.native");
     gen.writeEndObject();
   }
 
+  /**
+   * Writes the native request as a JSON string field. The native JSON is generated into
+   * a reusable per-thread buffer, that's written directly by the enclosing generator.
+   * Buffers grown over 64Kb by a big native request are dropped after use.
+   * Binary formats write the native request as a nested object instead, since they can't
+   * generate text and embedding text JSON would defeat their purpose.
+   */
+  private void writeNativeRequest(NativeRequest req, JsonGenerator gen) throws IOException {
+    OpenRtbNativeJsonWriter nativeWriter = factory().newNativeWriter();
+    if (!factory().isTextFormat()) {
+      gen.writeFieldName(REQUEST);
+      nativeWriter.writeNativeRequestObject(req, gen);
+      return;
+    }
+    NativeBuffer buf = nativeBuffer.get();
+    buf.reset();
+    nativeWriter.writeNativeRequestObject(
+        req, nativeWriter.factory().getJsonFactory().createGenerator(buf));
+    gen.writeFieldName(REQUEST);
+    gen.writeString(buf.chars(), 0, buf.size());
+
+    if (buf.chars().length > MAX_BUFFER_SIZE) {
+      nativeBuffer.remove();
+    }
+  }
+
   protected void writePMP(PMP pmp, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (pmp.hasPrivateAuction()) {
-      writeIntBoolField("private_auction", pmp.getPrivateAuction(), gen);
+      writeIntBoolField(PRIVATE_AUCTION, pmp.getPrivateAuction(), gen);
     }
     if (pmp.getDealsCount() != 0) {
-      gen.writeArrayFieldStart("deals");
+      gen.writeFieldName(DEALS);
+      gen.writeStartArray();
       for (Deal deals : pmp.getDealsList()) {
         writeDirectDeal(deals, gen);
       }
@@ -329,18 +598,18 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeDirectDeal(Deal deal, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (checkRequired(deal.hasId())) {
-      gen.writeStringField("id", deal.getId());
+      writeStringField(ID, deal.getId(), gen);
     }
     if (deal.hasBidfloor()) {
-      gen.writeNumberField("bidfloor", deal.getBidfloor());
+      writeNumberField(BIDFLOOR, deal.getBidfloor(), gen);
     }
     if (deal.hasBidfloorcur()) {
-      gen.writeStringField("bidfloorcur", deal.getBidfloorcur());
+      writeStringField(BIDFLOORCUR, deal.getBidfloorcur(), gen);
     }
-    writeStrings("wseat", deal.getWseatList(), gen);
-    writeStrings("wadomain", deal.getWadomainList(), gen);
+    writeStrings(WSEAT, deal.getWseatList(), gen);
+    writeStrings(WADOMAIN, deal.getWadomainList(), gen);
     if (deal.hasAt()) {
-      gen.writeNumberField("at", deal.getAt());
+      writeNumberField(AT, deal.getAt(), gen);
     }
     writeExtensions(deal, gen, "BidRequest.imp.pmp.deals");
     gen.writeEndObject();
@@ -349,42 +618,42 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeSite(Site site, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (site.hasId()) {
-      gen.writeStringField("id", site.getId());
+      writeStringField(ID, site.getId(), gen);
     }
     if (site.hasName()) {
-      gen.writeStringField("name", site.getName());
+      writeStringField(NAME, site.getName(), gen);
     }
     if (site.hasDomain()) {
-      gen.writeStringField("domain", site.getDomain());
+      writeStringField(DOMAIN, site.getDomain(), gen);
     }
-    writeStrings("cat", site.getCatList(), gen);
-    writeStrings("sectioncat", site.getSectioncatList(), gen);
-    writeStrings("pagecat", site.getPagecatList(), gen);
+    writeStrings(CAT, site.getCatList(), gen);
+    writeStrings(SECTIONCAT, site.getSectioncatList(), gen);
+    writeStrings(PAGECAT, site.getPagecatList(), gen);
     if (site.hasPage()) {
-      gen.writeStringField("page", site.getPage());
+      writeStringField(PAGE, site.getPage(), gen);
     }
     if (site.hasRef()) {
-      gen.writeStringField("ref", site.getRef());
+      writeStringField(REF, site.getRef(), gen);
     }
     if (site.hasSearch()) {
-      gen.writeStringField("search", site.getSearch());
+      writeStringField(SEARCH, site.getSearch(), gen);
     }
     if (site.hasMobile()) {
-      writeIntBoolField("mobile", site.getMobile(), gen);
+      writeIntBoolField(MOBILE, site.getMobile(), gen);
     }
     if (site.hasPrivacypolicy()) {
-      writeIntBoolField("privacypolicy", site.getPrivacypolicy(), gen);
+      writeIntBoolField(PRIVACYPOLICY, site.getPrivacypolicy(), gen);
     }
     if (site.hasPublisher()) {
-      gen.writeFieldName("publisher");
+      gen.writeFieldName(PUBLISHER);
       writePublisher(site.getPublisher(), gen);
     }
     if (site.hasContent()) {
-      gen.writeFieldName("content");
+      gen.writeFieldName(CONTENT);
       writeContent(site.getContent(), gen);
     }
     if (site.hasKeywords()) {
-      gen.writeStringField("keywords", site.getKeywords());
+      writeStringField(KEYWORDS, site.getKeywords(), gen);
     }
     writeExtensions(site, gen, "BidRequest.site");
     gen.writeEndObject();
@@ -393,42 +662,42 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeApp(App app, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (app.hasId()) {
-      gen.writeStringField("id", app.getId());
+      writeStringField(ID, app.getId(), gen);
     }
     if (app.hasName()) {
-      gen.writeStringField("name", app.getName());
+      writeStringField(NAME, app.getName(), gen);
     }
     if (app.hasBundle()) {
-      gen.writeStringField("bundle", app.getBundle());
+      writeStringField(BUNDLE, app.getBundle(), gen);
     }
     if (app.hasDomain()) {
-      gen.writeStringField("domain", app.getDomain());
+      writeStringField(DOMAIN, app.getDomain(), gen);
     }
     if (app.hasStoreurl()) {
-      gen.writeStringField("storeurl", app.getStoreurl());
+      writeStringField(STOREURL, app.getStoreurl(), gen);
     }
-    writeStrings("cat", app.getCatList(), gen);
-    writeStrings("sectioncat", app.getSectioncatList(), gen);
-    writeStrings("pagecat", app.getPagecatList(), gen);
+    writeStrings(CAT, app.getCatList(), gen);
+    writeStrings(SECTIONCAT, app.getSectioncatList(), gen);
+    writeStrings(PAGECAT, app.getPagecatList(), gen);
     if (app.hasVer()) {
-      gen.writeStringField("ver", app.getVer());
+      writeStringField(VER, app.getVer(), gen);
     }
     if (app.hasPrivacypolicy()) {
-      writeIntBoolField("privacypolicy", app.getPrivacypolicy(), gen);
+      writeIntBoolField(PRIVACYPOLICY, app.getPrivacypolicy(), gen);
     }
     if (app.hasPaid()) {
-      writeIntBoolField("paid", app.getPaid(), gen);
+      writeIntBoolField(PAID, app.getPaid(), gen);
     }
     if (app.hasPublisher()) {
-      gen.writeFieldName("publisher");
+      gen.writeFieldName(PUBLISHER);
       writePublisher(app.getPublisher(), gen);
     }
     if (app.hasContent()) {
-      gen.writeFieldName("content");
+      gen.writeFieldName(CONTENT);
       writeContent(app.getContent(), gen);
     }
     if (app.hasKeywords()) {
-      gen.writeStringField("keywords", app.getKeywords());
+      writeStringField(KEYWORDS, app.getKeywords(), gen);
     }
     writeExtensions(app, gen, "BidRequest.app");
     gen.writeEndObject();
@@ -437,60 +706,60 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeContent(Content content, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (content.hasId()) {
-      gen.writeStringField("id", content.getId());
+      writeStringField(ID, content.getId(), gen);
     }
     if (content.hasEpisode()) {
-      gen.writeNumberField("episode", content.getEpisode());
+      writeNumberField(EPISODE, content.getEpisode(), gen);
     }
     if (content.hasTitle()) {
-      gen.writeStringField("title", content.getTitle());
+      writeStringField(TITLE, content.getTitle(), gen);
     }
     if (content.hasSeries()) {
-      gen.writeStringField("series", content.getSeries());
+      writeStringField(SERIES, content.getSeries(), gen);
     }
     if (content.hasSeason()) {
-      gen.writeStringField("season", content.getSeason());
+      writeStringField(SEASON, content.getSeason(), gen);
     }
     if (content.hasProducer()) {
-      gen.writeFieldName("producer");
+      gen.writeFieldName(PRODUCER);
       writeProducer(content.getProducer(), gen);
     }
     if (content.hasUrl()) {
-      gen.writeStringField("url", content.getUrl());
+      writeStringField(URL, content.getUrl(), gen);
     }
-    writeStrings("cat", content.getCatList(), gen);
+    writeStrings(CAT, content.getCatList(), gen);
     if (content.hasVideoquality()) {
-      gen.writeNumberField("videoquality", content.getVideoquality().getNumber());
+      writeNumberField(VIDEOQUALITY, content.getVideoquality().getNumber(), gen);
     }
     if (content.hasContext()) {
-      gen.writeNumberField("context", content.getContext().getNumber());
+      writeNumberField(CONTEXT, content.getContext().getNumber(), gen);
     }
     if (content.hasContentrating()) {
-      gen.writeStringField("contentrating", content.getContentrating());
+      writeStringField(CONTENTRATING, content.getContentrating(), gen);
     }
     if (content.hasUserrating()) {
-      gen.writeStringField("userrating", content.getUserrating());
+      writeStringField(USERRATING, content.getUserrating(), gen);
     }
     if (content.hasQagmediarating()) {
-      gen.writeNumberField("qagmediarating", content.getQagmediarating().getNumber());
+      writeNumberField(QAGMEDIARATING, content.getQagmediarating().getNumber(), gen);
     }
     if (content.hasKeywords()) {
-      gen.writeStringField("keywords", content.getKeywords());
+      writeStringField(KEYWORDS, content.getKeywords(), gen);
     }
     if (content.hasLivestream()) {
-      writeIntBoolField("livestream", content.getLivestream(), gen);
+      writeIntBoolField(LIVESTREAM, content.getLivestream(), gen);
     }
     if (content.hasSourcerelationship()) {
-      gen.writeNumberField("sourcerelationship", content.getSourcerelationship().getNumber());
+      writeNumberField(SOURCERELATIONSHIP, content.getSourcerelationship().getNumber(), gen);
     }
     if (content.hasLen()) {
-      gen.writeNumberField("len", content.getLen());
+      writeNumberField(LEN, content.getLen(), gen);
     }
     if (content.hasLanguage()) {
-      gen.writeStringField("language", content.getLanguage());
+      writeStringField(LANGUAGE, content.getLanguage(), gen);
     }
     if (content.hasEmbeddable()) {
-      writeIntBoolField("embeddable", content.getEmbeddable(), gen);
+      writeIntBoolField(EMBEDDABLE, content.getEmbeddable(), gen);
     }
     writeExtensions(content, gen, "BidRequest.app.content");
     gen.writeEndObject();
@@ -499,14 +768,14 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeProducer(Producer producer, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (producer.hasId()) {
-      gen.writeStringField("id", producer.getId());
+      writeStringField(ID, producer.getId(), gen);
     }
     if (producer.hasName()) {
-      gen.writeStringField("name", producer.getName());
+      writeStringField(NAME, producer.getName(), gen);
     }
-    writeStrings("cat", producer.getCatList(), gen);
+    writeStrings(CAT, producer.getCatList(), gen);
     if (producer.hasDomain()) {
-      gen.writeStringField("domain", producer.getDomain());
+      writeStringField(DOMAIN, producer.getDomain(), gen);
     }
     writeExtensions(producer, gen, "BidRequest.app.content.producer");
     gen.writeEndObject();
@@ -515,14 +784,14 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writePublisher(Publisher publisher, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (publisher.hasId()) {
-      gen.writeStringField("id", publisher.getId());
+      writeStringField(ID, publisher.getId(), gen);
     }
     if (publisher.hasName()) {
-      gen.writeStringField("name", publisher.getName());
+      writeStringField(NAME, publisher.getName(), gen);
     }
-    writeStrings("cat", publisher.getCatList(), gen);
+    writeStrings(CAT, publisher.getCatList(), gen);
     if (publisher.hasDomain()) {
-      gen.writeStringField("domain", publisher.getDomain());
+      writeStringField(DOMAIN, publisher.getDomain(), gen);
     }
     writeExtensions(publisher, gen, "BidRequest.app.publisher");
     gen.writeEndObject();
@@ -531,89 +800,89 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeDevice(Device device, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (device.hasUa()) {
-      gen.writeStringField("ua", device.getUa());
+      writeStringField(UA, device.getUa(), gen);
     }
     if (device.hasGeo()) {
-      gen.writeFieldName("geo");
+      gen.writeFieldName(GEO);
       writeGeo(device.getGeo(), "BidRequest.device.geo", gen);
     }
     if (device.hasDnt()) {
-      writeIntBoolField("dnt", device.getDnt(), gen);
+      writeIntBoolField(DNT, device.getDnt(), gen);
     }
     if (device.hasLmt()) {
-      writeIntBoolField("lmt", device.getLmt(), gen);
+      writeIntBoolField(LMT, device.getLmt(), gen);
     }
     if (device.hasIp()) {
-      gen.writeStringField("ip", device.getIp());
+      writeStringField(IP, device.getIp(), gen);
     }
     if (device.hasIpv6()) {
-      gen.writeStringField("ipv6", device.getIpv6());
+      writeStringField(IPV6, device.getIpv6(), gen);
     }
     if (device.hasDevicetype()) {
-      gen.writeNumberField("devicetype", device.getDevicetype().getNumber());
+      writeNumberField(DEVICETYPE, device.getDevicetype().getNumber(), gen);
     }
     if (device.hasMake()) {
-      gen.writeStringField("make", device.getMake());
+      writeStringField(MAKE, device.getMake(), gen);
     }
     if (device.hasModel()) {
-      gen.writeStringField("model", device.getModel());
+      writeStringField(MODEL, device.getModel(), gen);
     }
     if (device.hasOs()) {
-      gen.writeStringField("os", device.getOs());
+      writeStringField(OS, device.getOs(), gen);
     }
     if (device.hasOsv()) {
-      gen.writeStringField("osv", device.getOsv());
+      writeStringField(OSV, device.getOsv(), gen);
     }
     if (device.hasHwv()) {
-      gen.writeStringField("hwv", device.getHwv());
+      writeStringField(HWV, device.getHwv(), gen);
     }
     if (device.hasW()) {
-      gen.writeNumberField("w", device.getW());
+      writeNumberField(W, device.getW(), gen);
     }
     if (device.hasH()) {
-      gen.writeNumberField("h", device.getH());
+      writeNumberField(H, device.getH(), gen);
     }
     if (device.hasPpi()) {
-      gen.writeNumberField("ppi", device.getPpi());
+      writeNumberField(PPI, device.getPpi(), gen);
     }
     if (device.hasPxratio()) {
-      gen.writeNumberField("pxratio", device.getPxratio());
+      writeNumberField(PXRATIO, device.getPxratio(), gen);
     }
     if (device.hasJs()) {
-      writeIntBoolField("js", device.getJs(), gen);
+      writeIntBoolField(JS, device.getJs(), gen);
     }
     if (device.hasFlashver()) {
-      gen.writeStringField("flashver", device.getFlashver());
+      writeStringField(FLASHVER, device.getFlashver(), gen);
     }
     if (device.hasLanguage()) {
-      gen.writeStringField("language", device.getLanguage());
+      writeStringField(LANGUAGE, device.getLanguage(), gen);
     }
     if (device.hasCarrier()) {
-      gen.writeStringField("carrier", device.getCarrier());
+      writeStringField(CARRIER, device.getCarrier(), gen);
     }
     if (device.hasConnectiontype()) {
-      gen.writeNumberField("connectiontype", device.getConnectiontype().getNumber());
+      writeNumberField(CONNECTIONTYPE, device.getConnectiontype().getNumber(), gen);
     }
     if (device.hasIfa()) {
-      gen.writeStringField("ifa", device.getIfa());
+      writeStringField(IFA, device.getIfa(), gen);
     }
     if (device.hasDidsha1()) {
-      gen.writeStringField("didsha1", device.getDidsha1());
+      writeStringField(DIDSHA1, device.getDidsha1(), gen);
     }
     if (device.hasDidmd5()) {
-      gen.writeStringField("didmd5", device.getDidmd5());
+      writeStringField(DIDMD5, device.getDidmd5(), gen);
     }
     if (device.hasDpidsha1()) {
-      gen.writeStringField("dpidsha1", device.getDpidsha1());
+      writeStringField(DPIDSHA1, device.getDpidsha1(), gen);
     }
     if (device.hasDpidmd5()) {
-      gen.writeStringField("dpidmd5", device.getDpidmd5());
+      writeStringField(DPIDMD5, device.getDpidmd5(), gen);
     }
     if (device.hasMacsha1()) {
-      gen.writeStringField("macsha1", device.getMacsha1());
+      writeStringField(MACSHA1, device.getMacsha1(), gen);
     }
     if (device.hasMacmd5()) {
-      gen.writeStringField("macmd5", device.getMacmd5());
+      writeStringField(MACMD5, device.getMacmd5(), gen);
     }
     writeExtensions(device, gen, "BidRequest.device");
     gen.writeEndObject();
@@ -622,34 +891,34 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeGeo(Geo geo, String path, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (geo.hasLat()) {
-      gen.writeNumberField("lat", geo.getLat());
+      writeNumberField(LAT, geo.getLat(), gen);
     }
     if (geo.hasLon()) {
-      gen.writeNumberField("lon", geo.getLon());
+      writeNumberField(LON, geo.getLon(), gen);
     }
     if (geo.hasType()) {
-      gen.writeNumberField("type", geo.getType().getNumber());
+      writeNumberField(TYPE, geo.getType().getNumber(), gen);
     }
     if (geo.hasCountry()) {
-      gen.writeStringField("country", geo.getCountry());
+      writeStringField(COUNTRY, geo.getCountry(), gen);
     }
     if (geo.hasRegion()) {
-      gen.writeStringField("region", geo.getRegion());
+      writeStringField(REGION, geo.getRegion(), gen);
     }
     if (geo.hasRegionfips104()) {
-      gen.writeStringField("regionfips104", geo.getRegionfips104());
+      writeStringField(REGIONFIPS104, geo.getRegionfips104(), gen);
     }
     if (geo.hasMetro()) {
-      gen.writeStringField("metro", geo.getMetro());
+      writeStringField(METRO, geo.getMetro(), gen);
     }
     if (geo.hasCity()) {
-      gen.writeStringField("city", geo.getCity());
+      writeStringField(CITY, geo.getCity(), gen);
     }
     if (geo.hasZip()) {
-      gen.writeStringField("zip", geo.getZip());
+      writeStringField(ZIP, geo.getZip(), gen);
     }
     if (geo.hasUtcoffset()) {
-      gen.writeNumberField("utcoffset", geo.getUtcoffset());
+      writeNumberField(UTCOFFSET, geo.getUtcoffset(), gen);
     }
     writeExtensions(geo, gen, path);
     gen.writeEndObject();
@@ -658,29 +927,30 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeUser(User user, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (user.hasId()) {
-      gen.writeStringField("id", user.getId());
+      writeStringField(ID, user.getId(), gen);
     }
     if (user.hasBuyeruid()) {
-      gen.writeStringField("buyeruid", user.getBuyeruid());
+      writeStringField(BUYERUID, user.getBuyeruid(), gen);
     }
     if (user.hasYob()) {
-      gen.writeNumberField("yob", user.getYob());
+      writeNumberField(YOB, user.getYob(), gen);
     }
     if (user.hasGender()) {
-      gen.writeStringField("gender", user.getGender());
+      writeStringField(GENDER, user.getGender(), gen);
     }
     if (user.hasKeywords()) {
-      gen.writeStringField("keywords", user.getKeywords());
+      writeStringField(KEYWORDS, user.getKeywords(), gen);
     }
     if (user.hasCustomdata()) {
-      gen.writeStringField("customdata", user.getCustomdata());
+      writeStringField(CUSTOMDATA, user.getCustomdata(), gen);
     }
     if (user.hasGeo()) {
-      gen.writeFieldName("geo");
+      gen.writeFieldName(GEO);
       writeGeo(user.getGeo(), "BidRequest.user.geo", gen);
     }
     if (user.getDataCount() != 0) {
-      gen.writeArrayFieldStart("data");
+      gen.writeFieldName(DATA);
+      gen.writeStartArray();
       for (Data data : user.getDataList()) {
         writeData(data, gen);
       }
@@ -693,13 +963,14 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeData(Data data, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (data.hasId()) {
-      gen.writeStringField("id", data.getId());
+      writeStringField(ID, data.getId(), gen);
     }
     if (data.hasName()) {
-      gen.writeStringField("name", data.getName());
+      writeStringField(NAME, data.getName(), gen);
     }
     if (data.getSegmentCount() != 0) {
-      gen.writeArrayFieldStart("segment");
+      gen.writeFieldName(SEGMENT);
+      gen.writeStartArray();
       for (Segment segment : data.getSegmentList()) {
         writeSegment(segment, gen);
       }
@@ -712,13 +983,13 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeSegment(Segment segment, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (segment.hasId()) {
-      gen.writeStringField("id", segment.getId());
+      writeStringField(ID, segment.getId(), gen);
     }
     if (segment.hasName()) {
-      gen.writeStringField("name", segment.getName());
+      writeStringField(NAME, segment.getName(), gen);
     }
     if (segment.hasValue()) {
-      gen.writeStringField("value", segment.getValue());
+      writeStringField(VALUE, segment.getValue(), gen);
     }
     writeExtensions(segment, gen, "BidRequest.user.data.segment");
     gen.writeEndObject();
@@ -727,7 +998,7 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeRegulations(Regulations regs, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (regs.hasCoppa()) {
-      writeIntBoolField("coppa", regs.getCoppa(), gen);
+      writeIntBoolField(COPPA, regs.getCoppa(), gen);
     }
     writeExtensions(regs, gen, "BidRequest.regs");
     gen.writeEndObject();
@@ -753,6 +1024,59 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
     writeBidResponse(resp, gen);
   }
 
+  /**
+   * Serializes a {@link BidResponse} to JSON, returned as UTF-8 bytes. The JSON is written into
+   * a pooled buffer, so the returned array is the only allocation for the content. The content
+   * is still copied twice, into the pooled buffer and then into the returned array; the pool
+   * only saves the allocations and copies of growing the buffer.
+   */
+  public byte[] writeBidResponseBytes(BidResponse resp) throws IOException {
+    PooledByteArrayOutputStream os = new PooledByteArrayOutputStream(bytesPool, INITIAL_BYTES);
+    try {
+      JsonGenerator gen = factory().getJsonFactory().createGenerator(os);
+      try {
+        writeBidResponse(resp, gen);
+      } finally {
+        gen.close();
+      }
+      byte[] json = os.toByteArray();
+      OpenRtbJsonMetrics metrics = factory().getMetrics();
+      if (metrics != null) {
+        metrics.writeBidResponse.size(json.length);
+      }
+      return json;
+    } finally {
+      os.release();
+    }
+  }
+
+  /**
+   * Serializes a {@link BidResponse} to JSON as UTF-8, written directly into a {@link ByteBuffer}
+   * starting at its position, which is advanced past the JSON content. If writing fails,
+   * the position is restored (but the buffer may contain some partial content after it).
+   *
+   * @throws java.nio.BufferOverflowException if the buffer doesn't have enough space
+   */
+  public void writeBidResponse(BidResponse resp, ByteBuffer buf) throws IOException {
+    int start = buf.position();
+    try {
+      JsonGenerator gen =
+          factory().getJsonFactory().createGenerator(new ByteBufferOutputStream(buf));
+      try {
+        writeBidResponse(resp, gen);
+      } finally {
+        gen.close();
+      }
+    } catch (IOException | RuntimeException e) {
+      buf.position(start);
+      throw e;
+    }
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics != null) {
+      metrics.writeBidResponse.size(buf.position() - start);
+    }
+  }
+
   /**
    * Serializes a {@link BidResponse} to JSON, streamed to a {@link Writer}.
    *
@@ -768,28 +1092,45 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
    * which allows several choices of output and encoding.
    */
   public void writeBidResponse(BidResponse resp, JsonGenerator gen) throws IOException {
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      writeBidResponseObject(resp, gen);
+      return;
+    }
+    long start = metrics.writeBidResponse.start();
+    try {
+      writeBidResponseObject(resp, gen);
+      metrics.writeBidResponse.stop(start);
+    } catch (IOException | RuntimeException e) {
+      metrics.writeBidResponse.failure(e);
+      throw e;
+    }
+  }
+
+  private void writeBidResponseObject(BidResponse resp, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (resp.hasId()) {
-      gen.writeStringField("id", resp.getId());
+      writeStringField(ID, resp.getId(), gen);
     }
     if (resp.getSeatbidCount() != 0) {
-      gen.writeArrayFieldStart("seatbid");
+      gen.writeFieldName(SEATBID);
+      gen.writeStartArray();
       for (SeatBid seatbid : resp.getSeatbidList()) {
         writeSeatBid(seatbid, gen);
       }
       gen.writeEndArray();
     }
     if (resp.hasBidid()) {
-      gen.writeStringField("bidid", resp.getBidid());
+      writeStringField(BIDID, resp.getBidid(), gen);
     }
     if (resp.hasCur()) {
-      gen.writeStringField("cur", resp.getCur());
+      writeStringField(CUR, resp.getCur(), gen);
     }
     if (resp.hasCustomdata()) {
-      gen.writeStringField("customdata", resp.getCustomdata());
+      writeStringField(CUSTOMDATA, resp.getCustomdata(), gen);
     }
     if (resp.hasNbr()) {
-      gen.writeNumberField("nbr", resp.getNbr().getNumber());
+      writeNumberField(NBR, resp.getNbr().getNumber(), gen);
     }
     writeExtensions(resp, gen, "BidResponse");
     gen.writeEndObject();
@@ -799,17 +1140,18 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeSeatBid(SeatBid seatbid, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (seatbid.getBidCount() != 0) {
-      gen.writeArrayFieldStart("bid");
+      gen.writeFieldName(BID);
+      gen.writeStartArray();
       for (Bid bid : seatbid.getBidList()) {
         writeBid(bid, gen);
       }
       gen.writeEndArray();
     }
     if (seatbid.hasSeat()) {
-      gen.writeStringField("seat", seatbid.getSeat());
+      writeStringField(SEAT, seatbid.getSeat(), gen);
     }
     if (seatbid.hasGroup()) {
-      writeIntBoolField("group", seatbid.getGroup(), gen);
+      writeIntBoolField(GROUP, seatbid.getGroup(), gen);
     }
     writeExtensions(seatbid, gen, "BidResponse.seatbid");
     gen.writeEndObject();
@@ -818,50 +1160,69 @@ public class OpenRtbJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeBid(Bid bid, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
     if (checkRequired(bid.hasId())) {
-      gen.writeStringField("id", bid.getId());
+      writeSnippetField(ID, bid.getId(), bid, gen);
     }
     if (checkRequired(bid.hasImpid())) {
-      gen.writeStringField("impid", bid.getImpid());
+      writeSnippetField(IMPID, bid.getImpid(), bid, gen);
     }
     if (checkRequired(bid.hasPrice())) {
-      gen.writeNumberField("price", bid.getPrice());
+      writeNumberField(PRICE, bid.getPrice(), gen);
     }
     if (bid.hasAdid()) {
-      gen.writeStringField("adid", bid.getAdid());
+      writeSnippetField(ADID, bid.getAdid(), bid, gen);
     }
     if (bid.hasNurl()) {
-      gen.writeStringField("nurl", bid.getNurl());
+      writeSnippetField(NURL, bid.getNurl(), bid, gen);
     }
     if (bid.hasAdm()) {
-      gen.writeStringField("adm", bid.getAdm());
+      writeSnippetField(ADM, bid.getAdm(), bid, gen);
     }
-    writeStrings("adomain", bid.getAdomainList(), gen);
+    writeStrings(ADOMAIN, bid.getAdomainList(), gen);
     if (bid.hasBundle()) {
-      gen.writeStringField("bundle", bid.getBundle());
+      writeStringField(BUNDLE, bid.getBundle(), gen);
     }
     if (bid.hasIurl()) {
-      gen.writeStringField("iurl", bid.getIurl());
+      writeSnippetField(IURL, bid.getIurl(), bid, gen);
     }
     if (bid.hasCid()) {
-      gen.writeStringField("cid", bid.getCid());
+      writeSnippetField(CID, bid.getCid(), bid, gen);
     }
     if (bid.hasCrid()) {
-      gen.writeStringField("crid", bid.getCrid());
+      writeSnippetField(CRID, bid.getCrid(), bid, gen);
     }
     if (bid.hasCat()) {
-      gen.writeStringField("cat", bid.getCat());
+      writeStringField(CAT, bid.getCat(), gen);
     }
-    writeEnums("attr", bid.getAttrList(), gen);
+    writeEnums(ATTR, bid.getAttrList(), gen);
     if (bid.hasDealid()) {
-      gen.writeStringField("dealid", bid.getDealid());
+      writeSnippetField(DEALID, bid.getDealid(), bid, gen);
     }
     if (bid.hasW()) {
-      gen.writeNumberField("w", bid.getW());
+      writeNumberField(W, bid.getW(), gen);
     }
     if (bid.hasH()) {
-      gen.writeNumberField("h", bid.getH());
+      writeNumberField(H, bid.getH(), gen);
     }
     writeExtensions(bid, gen, "BidResponse.seatbid.bid");
     gen.writeEndObject();
   }
+
+  /**
+   * Writes one of the {@link Bid} fields that can contain snippet macros: id, impid, adid,
+   * nurl, adm, iurl, cid, crid and dealid. Subclasses can override this to process snippets
+   * while they are written.
+   */
+  protected void writeSnippetField(SerializedString fieldName, String snippet, Bid bid,
+      JsonGenerator gen) throws IOException {
+    writeStringField(fieldName, snippet, gen);
+  }
+
+  /**
+   * A {@link CharArrayWriter} that allows access to its buffer, without copies.
+   */
+  private static final class NativeBuffer extends CharArrayWriter {
+    char[] chars() {
+      return buf;
+    }
+  }
 }
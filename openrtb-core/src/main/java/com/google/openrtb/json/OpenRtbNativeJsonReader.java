@@ -27,6 +27,7 @@ import com.google.common.io.Closeables;
 import com.google.openrtb.OpenRtbNative.NativeRequest;
 import com.google.openrtb.OpenRtbNative.NativeResponse;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UninitializedMessageException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
@@ -34,6 +35,7 @@ import com.fasterxml.jackson.core.JsonToken;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 
 /**
  * Desserializes OpenRTB NativeRequest/NativeResponse messages from JSON.
@@ -53,6 +55,33 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
     return readNativeRequest(bs.newInput());
   }
 
+  /**
+   * Desserializes a {@link NativeRequest} from JSON, provided as a slice of a byte array.
+   * The JSON content is parsed in-place, with no intermediate stream or character decoding.
+   */
+  public NativeRequest readNativeRequest(byte[] bytes, int offset, int len) throws IOException {
+    JsonParser par = factory().getJsonFactory().createParser(bytes, offset, len);
+    try {
+      return buildNativeRequest(par, len);
+    } finally {
+      par.close();
+    }
+  }
+
+  /**
+   * Desserializes a {@link NativeRequest} from JSON, provided as the remaining content of a
+   * {@link ByteBuffer}. The buffer's position is not modified. Array-backed buffers are
+   * parsed in-place; direct buffers are streamed with bulk copies, with no character decoding.
+   */
+  public NativeRequest readNativeRequest(ByteBuffer buf) throws IOException {
+    JsonParser par = createParser(buf);
+    try {
+      return buildNativeRequest(par, buf.remaining());
+    } finally {
+      par.close();
+    }
+  }
+
   /**
    * Desserializes a {@link NativeRequest} from a JSON string, provided as a {@link CharSequence}.
    */
@@ -64,7 +93,7 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
    * Desserializes a {@link NativeRequest} from JSON, streamed from a {@link Reader}.
    */
   public NativeRequest readNativeRequest(Reader reader) throws IOException {
-    return readNativeRequest(factory().getJsonFactory().createParser(reader)).build();
+    return buildNativeRequest(factory().getJsonFactory().createParser(reader), -1);
   }
 
   /**
@@ -72,17 +101,60 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
    */
   public NativeRequest readNativeRequest(InputStream is) throws IOException {
     try {
-      return readNativeRequest(factory().getJsonFactory().createParser(is)).build();
+      return buildNativeRequest(factory().getJsonFactory().createParser(is), -1);
     } finally {
       Closeables.closeQuietly(is);
     }
   }
 
+  /**
+   * Desserializes and builds a {@link NativeRequest}, updating the size and missing-required
+   * metrics if enabled (the read itself is measured by {@link #readNativeRequest(JsonParser)}).
+   *
+   * @param size Size of the JSON input in bytes, or -1 if unknown
+   */
+  private NativeRequest buildNativeRequest(JsonParser par, int size) throws IOException {
+    NativeRequest.Builder req = readNativeRequest(par);
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      return req.build();
+    }
+    if (size >= 0) {
+      metrics.readNativeRequest.size(size);
+    }
+    try {
+      return req.build();
+    } catch (UninitializedMessageException e) {
+      metrics.readNativeRequest.failure(e);
+      throw e;
+    }
+  }
+
   /**
    * Desserializes a {@link NativeRequest} from JSON, with a provided {@link JsonParser}
    * which allows several choices of input and encoding.
    */
   public final NativeRequest.Builder readNativeRequest(JsonParser par) throws IOException {
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      return readNativeRequestObject(par);
+    }
+    long start = metrics.readNativeRequest.start();
+    try {
+      NativeRequest.Builder req = readNativeRequestObject(par);
+      metrics.readNativeRequest.stop(start);
+      return req;
+    } catch (IOException | RuntimeException e) {
+      metrics.readNativeRequest.failure(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Like {@link #readNativeRequest(JsonParser)}, but without updating the metrics;
+   * used for native requests nested in a {@code BidRequest}.
+   */
+  NativeRequest.Builder readNativeRequestObject(JsonParser par) throws IOException {
     NativeRequest.Builder req = NativeRequest.newBuilder();
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
@@ -119,6 +191,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(req, par, "NativeRequest");
         break;
+      default:
+        readUnknownField(par, "NativeRequest", fieldName);
     }
   }
 
@@ -157,6 +231,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(asset, par, "NativeRequest.asset");
         break;
+      default:
+        readUnknownField(par, "NativeRequest.asset", fieldName);
     }
   }
 
@@ -182,6 +258,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(title, par, "NativeRequest.asset.title");
         break;
+      default:
+        readUnknownField(par, "NativeRequest.asset.title", fieldName);
     }
   }
 
@@ -224,6 +302,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(image, par, "NativeRequest.asset.img");
         break;
+      default:
+        readUnknownField(par, "NativeRequest.asset.img", fieldName);
     }
   }
 
@@ -262,6 +342,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(video, par, "NativeRequest.asset.video");
         break;
+      default:
+        readUnknownField(par, "NativeRequest.asset.video", fieldName);
     }
   }
 
@@ -288,6 +370,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(data, par, "NativeRequest.asset.data");
         break;
+      default:
+        readUnknownField(par, "NativeRequest.asset.data", fieldName);
     }
   }
 
@@ -298,6 +382,33 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
     return readNativeResponse(bs.newInput());
   }
 
+  /**
+   * Desserializes a {@link NativeResponse} from JSON, provided as a slice of a byte array.
+   * The JSON content is parsed in-place, with no intermediate stream or character decoding.
+   */
+  public NativeResponse readNativeResponse(byte[] bytes, int offset, int len) throws IOException {
+    JsonParser par = factory().getJsonFactory().createParser(bytes, offset, len);
+    try {
+      return buildNativeResponse(par, len);
+    } finally {
+      par.close();
+    }
+  }
+
+  /**
+   * Desserializes a {@link NativeResponse} from JSON, provided as the remaining content of a
+   * {@link ByteBuffer}. The buffer's position is not modified. Array-backed buffers are
+   * parsed in-place; direct buffers are streamed with bulk copies, with no character decoding.
+   */
+  public NativeResponse readNativeResponse(ByteBuffer buf) throws IOException {
+    JsonParser par = createParser(buf);
+    try {
+      return buildNativeResponse(par, buf.remaining());
+    } finally {
+      par.close();
+    }
+  }
+
   /**
    * Desserializes a {@link NativeResponse} from a JSON string, provided as a {@link CharSequence}.
    */
@@ -309,7 +420,7 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
    * Desserializes a {@link NativeResponse} from JSON, streamed from a {@link Reader}.
    */
   public NativeResponse readNativeResponse(Reader reader) throws IOException {
-    return readNativeResponse(factory().getJsonFactory().createParser(reader)).build();
+    return buildNativeResponse(factory().getJsonFactory().createParser(reader), -1);
   }
 
   /**
@@ -317,17 +428,56 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
    */
   public NativeResponse readNativeResponse(InputStream is) throws IOException {
     try {
-      return readNativeResponse(factory().getJsonFactory().createParser(is)).build();
+      return buildNativeResponse(factory().getJsonFactory().createParser(is), -1);
     } finally {
       Closeables.closeQuietly(is);
     }
   }
 
+  /**
+   * Desserializes and builds a {@link NativeResponse}, updating the size and missing-required
+   * metrics if enabled (the read itself is measured by {@link #readNativeResponse(JsonParser)}).
+   *
+   * @param size Size of the JSON input in bytes, or -1 if unknown
+   */
+  private NativeResponse buildNativeResponse(JsonParser par, int size) throws IOException {
+    NativeResponse.Builder resp = readNativeResponse(par);
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      return resp.build();
+    }
+    if (size >= 0) {
+      metrics.readNativeResponse.size(size);
+    }
+    try {
+      return resp.build();
+    } catch (UninitializedMessageException e) {
+      metrics.readNativeResponse.failure(e);
+      throw e;
+    }
+  }
+
   /**
    * Desserializes a {@link NativeResponse} from JSON, with a provided {@link JsonParser}
    * which allows several choices of input and encoding.
    */
   public final NativeResponse.Builder readNativeResponse(JsonParser par) throws IOException {
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      return readNativeResponseObject(par);
+    }
+    long start = metrics.readNativeResponse.start();
+    try {
+      NativeResponse.Builder resp = readNativeResponseObject(par);
+      metrics.readNativeResponse.stop(start);
+      return resp;
+    } catch (IOException | RuntimeException e) {
+      metrics.readNativeResponse.failure(e);
+      throw e;
+    }
+  }
+
+  private NativeResponse.Builder readNativeResponseObject(JsonParser par) throws IOException {
     NativeResponse.Builder resp = NativeResponse.newBuilder();
     for (startObject(par); endObject(par); par.nextToken()) {
       String fieldName = getCurrentName(par);
@@ -363,6 +513,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(resp, par, "NativeResponse");
         break;
+      default:
+        readUnknownField(par, "NativeResponse", fieldName);
     }
   }
 
@@ -404,6 +556,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(asset, par, "NativeResponse.asset");
         break;
+      default:
+        readUnknownField(par, "NativeResponse.asset", fieldName);
     }
   }
 
@@ -429,6 +583,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(title, par, "NativeResponse.asset.title");
         break;
+      default:
+        readUnknownField(par, "NativeResponse.asset.title", fieldName);
     }
   }
 
@@ -460,6 +616,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(image, par, "NativeResponse.asset.img");
         break;
+      default:
+        readUnknownField(par, "NativeResponse.asset.img", fieldName);
     }
   }
 
@@ -487,6 +645,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(video, par, "NativeResponse.asset.video");
         break;
+      default:
+        readUnknownField(par, "NativeResponse.asset.video", fieldName);
     }
   }
 
@@ -513,6 +673,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(data, par, "NativeResponse.asset.data");
         break;
+      default:
+        readUnknownField(par, "NativeResponse.asset.data", fieldName);
     }
   }
 
@@ -544,6 +706,8 @@ public class OpenRtbNativeJsonReader extends AbstractOpenRtbJsonReader {
       case "ext":
         readExtensions(link, par, path);
         break;
+      default:
+        readUnknownField(par, path, fieldName);
     }
   }
 }
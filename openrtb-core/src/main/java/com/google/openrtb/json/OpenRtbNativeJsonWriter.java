@@ -18,6 +18,8 @@ package com.google.openrtb.json;
 
 import static com.google.openrtb.json.OpenRtbJsonUtils.writeIntBoolField;
 import static com.google.openrtb.json.OpenRtbJsonUtils.writeInts;
+import static com.google.openrtb.json.OpenRtbJsonUtils.writeNumberField;
+import static com.google.openrtb.json.OpenRtbJsonUtils.writeStringField;
 import static com.google.openrtb.json.OpenRtbJsonUtils.writeStrings;
 
 import com.google.openrtb.OpenRtbNative.NativeRequest;
@@ -25,6 +27,7 @@ import com.google.openrtb.OpenRtbNative.NativeResponse;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -41,6 +44,40 @@ import java.io.Writer;
  */
 public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
 
+  private static final SerializedString ADUNIT = new SerializedString("adunit");
+  private static final SerializedString ASSETS = new SerializedString("assets");
+  private static final SerializedString CLKTRCK = new SerializedString("clktrck");
+  private static final SerializedString DATA = new SerializedString("data");
+  private static final SerializedString FALLBACK = new SerializedString("fallback");
+  private static final SerializedString H = new SerializedString("h");
+  private static final SerializedString HMIN = new SerializedString("hmin");
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString IMG = new SerializedString("img");
+  private static final SerializedString IMPTRACKER = new SerializedString("imptracker");
+  private static final SerializedString JSTRACKER = new SerializedString("jstracker");
+  private static final SerializedString LABEL = new SerializedString("label");
+  private static final SerializedString LAYOUT = new SerializedString("layout");
+  private static final SerializedString LEN = new SerializedString("len");
+  private static final SerializedString LINK = new SerializedString("link");
+  private static final SerializedString MAXDURATION = new SerializedString("maxduration");
+  private static final SerializedString MIME = new SerializedString("mime");
+  private static final SerializedString MIMES = new SerializedString("mimes");
+  private static final SerializedString MINDURATION = new SerializedString("minduration");
+  private static final SerializedString PLCMTCNT = new SerializedString("plcmtcnt");
+  private static final SerializedString PROTOCOLS = new SerializedString("protocols");
+  private static final SerializedString REQ = new SerializedString("req");
+  private static final SerializedString SEQ = new SerializedString("seq");
+  private static final SerializedString TEXT = new SerializedString("text");
+  private static final SerializedString TITLE = new SerializedString("title");
+  private static final SerializedString TYPE = new SerializedString("type");
+  private static final SerializedString URL = new SerializedString("url");
+  private static final SerializedString VALUE = new SerializedString("value");
+  private static final SerializedString VASTTAG = new SerializedString("vasttag");
+  private static final SerializedString VER = new SerializedString("ver");
+  private static final SerializedString VIDEO = new SerializedString("video");
+  private static final SerializedString W = new SerializedString("w");
+  private static final SerializedString WMIN = new SerializedString("wmin");
+
   protected OpenRtbNativeJsonWriter(OpenRtbJsonFactory factory) {
     super(factory);
   }
@@ -80,22 +117,43 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
    * which allows several choices of output and encoding.
    */
   public void writeNativeRequest(NativeRequest req, JsonGenerator gen) throws IOException {
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      writeNativeRequestObject(req, gen);
+      return;
+    }
+    long start = metrics.writeNativeRequest.start();
+    try {
+      writeNativeRequestObject(req, gen);
+      metrics.writeNativeRequest.stop(start);
+    } catch (IOException | RuntimeException e) {
+      metrics.writeNativeRequest.failure(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Like {@link #writeNativeRequest(NativeRequest, JsonGenerator)}, but without updating the
+   * metrics; used for native requests nested in a {@code BidRequest}.
+   */
+  void writeNativeRequestObject(NativeRequest req, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
-    gen.writeStringField("ver", req.getVer());
+    writeStringField(VER, req.getVer(), gen);
     if (req.hasLayout()) {
-      gen.writeNumberField("layout", req.getLayout());
+      writeNumberField(LAYOUT, req.getLayout(), gen);
     }
     if (req.hasAdunit()) {
-      gen.writeNumberField("adunit", req.getAdunit());
+      writeNumberField(ADUNIT, req.getAdunit(), gen);
     }
     if (req.hasPlcmtcnt()) {
-      gen.writeNumberField("plcmtcnt", req.getPlcmtcnt());
+      writeNumberField(PLCMTCNT, req.getPlcmtcnt(), gen);
     }
     if (req.hasSeq()) {
-      gen.writeNumberField("seq", req.getSeq());
+      writeNumberField(SEQ, req.getSeq(), gen);
     }
     if (req.getAssetsCount() != 0) {
-      gen.writeArrayFieldStart("assets");
+      gen.writeFieldName(ASSETS);
+      gen.writeStartArray();
       for (NativeRequest.Asset asset : req.getAssetsList()) {
         writeReqAsset(asset, gen);
       }
@@ -108,24 +166,24 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
 
   protected void writeReqAsset(NativeRequest.Asset asset, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
-    gen.writeNumberField("id", asset.getId());
+    writeNumberField(ID, asset.getId(), gen);
     if (asset.hasReq()) {
-      writeIntBoolField("req", asset.getReq(), gen);
+      writeIntBoolField(REQ, asset.getReq(), gen);
     }
     if (asset.hasTitle()) {
-      gen.writeFieldName("title");
+      gen.writeFieldName(TITLE);
       writeReqTitle(asset.getTitle(), gen);
     }
     if (asset.hasImg()) {
-      gen.writeFieldName("img");
+      gen.writeFieldName(IMG);
       writeReqImage(asset.getImg(), gen);
     }
     if (asset.hasVideo()) {
-      gen.writeFieldName("video");
+      gen.writeFieldName(VIDEO);
       writeReqVideo(asset.getVideo(), gen);
     }
     if (asset.hasData()) {
-      gen.writeFieldName("data");
+      gen.writeFieldName(DATA);
       writeReqData(asset.getData(), gen);
     }
     writeExtensions(asset, gen, "NativeRequest.asset");
@@ -135,7 +193,7 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeReqTitle(NativeRequest.Asset.Title title, JsonGenerator gen)
       throws IOException {
     gen.writeStartObject();
-    gen.writeNumberField("len", title.getLen());
+    writeNumberField(LEN, title.getLen(), gen);
     writeExtensions(title, gen, "NativeRequest.asset.title");
     gen.writeEndObject();
   }
@@ -144,21 +202,21 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
       throws IOException {
     gen.writeStartObject();
     if (image.hasType()) {
-      gen.writeNumberField("type", image.getType());
+      writeNumberField(TYPE, image.getType(), gen);
     }
     if (image.hasW()) {
-      gen.writeNumberField("w", image.getW());
+      writeNumberField(W, image.getW(), gen);
     }
     if (image.hasH()) {
-      gen.writeNumberField("h", image.getH());
+      writeNumberField(H, image.getH(), gen);
     }
     if (image.hasWmin()) {
-      gen.writeNumberField("wmin", image.getWmin());
+      writeNumberField(WMIN, image.getWmin(), gen);
     }
     if (image.hasHmin()) {
-      gen.writeNumberField("hmin", image.getHmin());
+      writeNumberField(HMIN, image.getHmin(), gen);
     }
-    writeStrings("mime", image.getMimeList(), gen);
+    writeStrings(MIME, image.getMimeList(), gen);
     writeExtensions(image, gen, "NativeRequest.asset.img");
     gen.writeEndObject();
   }
@@ -166,10 +224,10 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeReqVideo(NativeRequest.Asset.Video video, JsonGenerator gen)
       throws IOException {
     gen.writeStartObject();
-    writeStrings("mimes", video.getMimesList(), gen);
-    gen.writeNumberField("minduration", video.getMinduration());
-    gen.writeNumberField("maxduration", video.getMaxduration());
-    writeInts("protocols", video.getProtocolsList(), gen);
+    writeStrings(MIMES, video.getMimesList(), gen);
+    writeNumberField(MINDURATION, video.getMinduration(), gen);
+    writeNumberField(MAXDURATION, video.getMaxduration(), gen);
+    writeInts(PROTOCOLS, video.getProtocolsList(), gen);
     writeExtensions(video, gen, "NativeRequest.asset.video");
     gen.writeEndObject();
   }
@@ -177,9 +235,9 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeReqData(NativeRequest.Asset.Data data, JsonGenerator gen)
       throws IOException {
     gen.writeStartObject();
-    gen.writeNumberField("type", data.getType());
+    writeNumberField(TYPE, data.getType(), gen);
     if (data.hasLen()) {
-      gen.writeNumberField("len", data.getLen());
+      writeNumberField(LEN, data.getLen(), gen);
     }
     writeExtensions(data, gen, "NativeRequest.asset.data");
     gen.writeEndObject();
@@ -220,24 +278,42 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
    * which allows several choices of output and encoding.
    */
   public void writeNativeResponse(NativeResponse resp, JsonGenerator gen) throws IOException {
+    OpenRtbJsonMetrics metrics = factory().getMetrics();
+    if (metrics == null) {
+      writeNativeResponseObject(resp, gen);
+      return;
+    }
+    long start = metrics.writeNativeResponse.start();
+    try {
+      writeNativeResponseObject(resp, gen);
+      metrics.writeNativeResponse.stop(start);
+    } catch (IOException | RuntimeException e) {
+      metrics.writeNativeResponse.failure(e);
+      throw e;
+    }
+  }
+
+  private void writeNativeResponseObject(NativeResponse resp, JsonGenerator gen)
+      throws IOException {
     gen.writeStartObject();
     if (resp.hasVer()) {
-      gen.writeStringField("ver", resp.getVer());
+      writeStringField(VER, resp.getVer(), gen);
     }
     if (resp.getAssetsCount() != 0) {
-      gen.writeArrayFieldStart("assets");
+      gen.writeFieldName(ASSETS);
+      gen.writeStartArray();
       for (NativeResponse.Asset asset : resp.getAssetsList()) {
         writeRespAsset(asset, gen);
       }
       gen.writeEndArray();
     }
     if (resp.hasLink()) {
-      gen.writeFieldName("link");
+      gen.writeFieldName(LINK);
       writeRespLink(resp.getLink(), "NativeResponse.link", gen);
     }
-    writeStrings("imptracker", resp.getImptrackerList(), gen);
+    writeStrings(IMPTRACKER, resp.getImptrackerList(), gen);
     if (resp.hasJstracker()) {
-      gen.writeStringField("jstracker", resp.getJstracker());
+      writeStringField(JSTRACKER, resp.getJstracker(), gen);
     }
     writeExtensions(resp, gen, "NativeResponse");
     gen.writeEndObject();
@@ -246,28 +322,28 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
 
   protected void writeRespAsset(NativeResponse.Asset asset, JsonGenerator gen) throws IOException {
     gen.writeStartObject();
-    gen.writeNumberField("id", asset.getId());
+    writeNumberField(ID, asset.getId(), gen);
     if (asset.hasReq()) {
-      writeIntBoolField("req", asset.getReq(), gen);
+      writeIntBoolField(REQ, asset.getReq(), gen);
     }
     if (asset.hasTitle()) {
-      gen.writeFieldName("title");
+      gen.writeFieldName(TITLE);
       writeRespTitle(asset.getTitle(), gen);
     }
     if (asset.hasImg()) {
-      gen.writeFieldName("img");
+      gen.writeFieldName(IMG);
       writeRespImage(asset.getImg(), gen);
     }
     if (asset.hasVideo()) {
-      gen.writeFieldName("video");
+      gen.writeFieldName(VIDEO);
       writeRespVideo(asset.getVideo(), gen);
     }
     if (asset.hasData()) {
-      gen.writeFieldName("data");
+      gen.writeFieldName(DATA);
       writeRespData(asset.getData(), gen);
     }
     if (asset.hasLink()) {
-      gen.writeFieldName("link");
+      gen.writeFieldName(LINK);
       writeRespLink(asset.getLink(), "NativeResponse.asset.link", gen);
     }
     writeExtensions(asset, gen, "NativeRequest.asset");
@@ -277,7 +353,7 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeRespTitle(NativeResponse.Asset.Title title, JsonGenerator gen)
       throws IOException {
     gen.writeStartObject();
-    gen.writeStringField("text", title.getText());
+    writeStringField(TEXT, title.getText(), gen);
     writeExtensions(title, gen, "NativeResponse.asset.title");
     gen.writeEndObject();
   }
@@ -286,13 +362,13 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
       throws IOException {
     gen.writeStartObject();
     if (image.hasUrl()) {
-      gen.writeStringField("url", image.getUrl());
+      writeStringField(URL, image.getUrl(), gen);
     }
     if (image.hasW()) {
-      gen.writeNumberField("w", image.getW());
+      writeNumberField(W, image.getW(), gen);
     }
     if (image.hasH()) {
-      gen.writeNumberField("h", image.getH());
+      writeNumberField(H, image.getH(), gen);
     }
     writeExtensions(image, gen, "NativeResponse.asset.img");
     gen.writeEndObject();
@@ -301,7 +377,7 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
   protected void writeRespVideo(NativeResponse.Asset.Video video, JsonGenerator gen)
       throws IOException {
     gen.writeStartObject();
-    writeStrings("vasttag", video.getVasttagList(), gen);
+    writeStrings(VASTTAG, video.getVasttagList(), gen);
     writeExtensions(video, gen, "NativeResponse.asset.video");
     gen.writeEndObject();
   }
@@ -310,9 +386,9 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
       throws IOException {
     gen.writeStartObject();
     if (data.hasLabel()) {
-      gen.writeStringField("label", data.getLabel());
+      writeStringField(LABEL, data.getLabel(), gen);
     }
-    gen.writeStringField("value", data.getValue());
+    writeStringField(VALUE, data.getValue(), gen);
     writeExtensions(data, gen, "NativeResponse.asset.data");
     gen.writeEndObject();
   }
@@ -321,11 +397,11 @@ public class OpenRtbNativeJsonWriter extends AbstractOpenRtbJsonWriter {
       throws IOException {
     gen.writeStartObject();
     if (link.hasUrl()) {
-      gen.writeStringField("url", link.getUrl());
+      writeStringField(URL, link.getUrl(), gen);
     }
-    writeStrings("clktrck", link.getClktrckList(), gen);
+    writeStrings(CLKTRCK, link.getClktrckList(), gen);
     if (link.hasFallback()) {
-      gen.writeStringField("fallback", link.getFallback());
+      writeStringField(FALLBACK, link.getFallback(), gen);
     }
     writeExtensions(link, gen, path);
     gen.writeEndObject();
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.openrtb.snippet.OpenRtbSnippetProcessor;
+import com.google.openrtb.snippet.SnippetProcessorContext;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serializes OpenRTB BidResponse messages to JSON, processing the snippets of each
+ * {@link Bid} while they are written. This produces the same JSON as
+ * {@link OpenRtbSnippetProcessor#process(BidRequest, BidResponse.Builder)} followed by
+ * {@link OpenRtbJsonWriter}, but without building a processed copy of the response: each
+ * snippet is expanded into a reusable buffer that's copied to the {@link JsonGenerator}.
+ * <p>
+ * The bid's id, adid and impid are the only fields used by macros of other fields, so if
+ * they contain macros or %{...}% encoding themselves, that response is processed and written
+ * the old way. Snippets are processed by the {@code StringBuilder} variant of the
+ * processor's {@code process()}, so all responses are also processed the old way if the
+ * processor overrides {@code process(BidRequest, BidResponse.Builder)}, or overrides
+ * {@code process(SnippetProcessorContext, String)} without also overriding the
+ * {@code StringBuilder} variant in the same class. If a macro cannot be expanded, the
+ * {@code UndefinedMacroException} is thrown after part of the response was already written.
+ * <p>
+ * This class is threadsafe.
+ */
+public class OpenRtbSnippetJsonWriter {
+  // Larger buffers are allocated for a single use, so idle threads don't keep them
+  private static final int MAX_BUFFER_SIZE = 1 << 16;
+  private static final ThreadLocal<SnippetBuffer> snippetBuffer =
+      new ThreadLocal<SnippetBuffer>() {
+        @Override protected SnippetBuffer initialValue() {
+          return new SnippetBuffer();
+        }
+      };
+
+  private final OpenRtbJsonFactory factory;
+  private final OpenRtbJsonWriter writer;
+  private final OpenRtbSnippetProcessor processor;
+  private final boolean processWhileWriting;
+
+  OpenRtbSnippetJsonWriter(OpenRtbJsonFactory factory, OpenRtbSnippetProcessor processor) {
+    this.factory = factory;
+    this.writer = new OpenRtbJsonWriter(factory);
+    this.processor = checkNotNull(processor);
+    this.processWhileWriting = canProcessWhileWriting(processor.getClass());
+  }
+
+  public final OpenRtbJsonFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Serializes a {@link BidResponse} to JSON with processed snippets, returned as a
+   * {@code String}.
+   */
+  public String writeBidResponse(BidRequest request, BidResponse resp) throws IOException {
+    return needsProcessedCopy(resp)
+        ? writer.writeBidResponse(processedCopy(request, resp))
+        : new ProcessingWriter(request, resp).writeBidResponse(resp);
+  }
+
+  /**
+   * Serializes a {@link BidResponse} to JSON with processed snippets, streamed to
+   * a {@link OutputStream}.
+   */
+  public void writeBidResponse(BidRequest request, BidResponse resp, OutputStream os)
+      throws IOException {
+    if (needsProcessedCopy(resp)) {
+      writer.writeBidResponse(processedCopy(request, resp), os);
+    } else {
+      new ProcessingWriter(request, resp).writeBidResponse(resp, os);
+    }
+  }
+
+  /**
+   * Serializes a {@link BidResponse} to JSON with processed snippets, returned as UTF-8 bytes.
+   */
+  public byte[] writeBidResponseBytes(BidRequest request, BidResponse resp)
+      throws IOException {
+    return needsProcessedCopy(resp)
+        ? writer.writeBidResponseBytes(processedCopy(request, resp))
+        : new ProcessingWriter(request, resp).writeBidResponseBytes(resp);
+  }
+
+  /**
+   * Serializes a {@link BidResponse} to JSON with processed snippets, with a provided
+   * {@link JsonGenerator} which allows several choices of output and encoding.
+   */
+  public void writeBidResponse(BidRequest request, BidResponse resp, JsonGenerator gen)
+      throws IOException {
+    if (needsProcessedCopy(resp)) {
+      writer.writeBidResponse(processedCopy(request, resp), gen);
+    } else {
+      new ProcessingWriter(request, resp).writeBidResponse(resp, gen);
+    }
+  }
+
+  private BidResponse processedCopy(BidRequest request, BidResponse resp) {
+    BidResponse.Builder copy = resp.toBuilder();
+    processor.process(request, copy);
+    return copy.build();
+  }
+
+  /**
+   * Checks if the processor's snippets can't be processed while writing: if the processor
+   * customizes processing in methods that the {@link ProcessingWriter} doesn't call, or if any
+   * bid has fields that are used by other fields' macros and would be modified by processing,
+   * which must happen before the other fields are processed.
+   */
+  private boolean needsProcessedCopy(BidResponse resp) {
+    if (!processWhileWriting) {
+      return true;
+    }
+    for (SeatBid seatbid : resp.getSeatbidList()) {
+      for (Bid bid : seatbid.getBidList()) {
+        if (isSnippet(bid.getId()) || isSnippet(bid.getAdid()) || isSnippet(bid.getImpid())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSnippet(String value) {
+    return value.indexOf("${") != -1 || value.indexOf("%{") != -1;
+  }
+
+  /**
+   * Checks that a processor class doesn't override the processing of whole responses, and
+   * overrides both or none of the methods that process a single snippet.
+   */
+  private static boolean canProcessWhileWriting(Class<?> processorClass) {
+    try {
+      Class<?> responseMethodClass = processorClass.getMethod(
+          "process", BidRequest.class, BidResponse.Builder.class).getDeclaringClass();
+      Class<?> stringMethodClass = processorClass.getMethod(
+          "process", SnippetProcessorContext.class, String.class).getDeclaringClass();
+      Class<?> appendMethodClass = processorClass.getMethod(
+          "process", SnippetProcessorContext.class, String.class, StringBuilder.class)
+          .getDeclaringClass();
+      return responseMethodClass == OpenRtbSnippetProcessor.class
+          && stringMethodClass == appendMethodClass;
+    } catch (NoSuchMethodException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Writer for a single response, processing snippets in the context of its request.
+   */
+  private final class ProcessingWriter extends OpenRtbJsonWriter {
+    private final BidRequest request;
+    private final BidResponse response;
+    private SnippetProcessorContext ctx;
+
+    ProcessingWriter(BidRequest request, BidResponse response) {
+      super(OpenRtbSnippetJsonWriter.this.factory);
+      this.request = checkNotNull(request);
+      this.response = response;
+    }
+
+    @Override protected void writeSnippetField(SerializedString fieldName, String snippet,
+        Bid bid, JsonGenerator gen) throws IOException {
+      if (ctx == null) {
+        ctx = new SnippetProcessorContext(request, response, bid);
+      } else if (ctx.bid() != bid) {
+        ctx = ctx.forBid(bid);
+      }
+
+      SnippetBuffer buf = snippetBuffer.get();
+      buf.sb.setLength(0);
+      processor.process(ctx, snippet, buf.sb);
+      int len = buf.sb.length();
+      if (buf.chars.length < len) {
+        buf.chars = new char[Math.max(len, buf.chars.length * 2)];
+      }
+      buf.sb.getChars(0, len, buf.chars, 0);
+      gen.writeFieldName(fieldName);
+      gen.writeString(buf.chars, 0, len);
+
+      if (len > MAX_BUFFER_SIZE) {
+        snippetBuffer.remove();
+      }
+    }
+  }
+
+  private static final class SnippetBuffer {
+    final StringBuilder sb = new StringBuilder(256);
+    char[] chars = new char[256];
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable {@link OutputStream} that keeps its content in arrays from a {@link ByteArrayPool}.
+ * When the content outgrows the current array, the next size class is acquired and the smaller
+ * array is released. The last array must be returned to the pool by {@link #release()}.
+ * <p>
+ * This class is not threadsafe.
+ */
+final class PooledByteArrayOutputStream extends OutputStream {
+  private final ByteArrayPool pool;
+  private byte[] buf;
+  private int size;
+
+  PooledByteArrayOutputStream(ByteArrayPool pool, int initialSize) {
+    this.pool = pool;
+    this.buf = pool.acquire(initialSize);
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(1);
+    buf[size++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] bytes, int off, int len) {
+    checkPositionIndexes(off, off + len, bytes.length);
+    ensureCapacity(len);
+    System.arraycopy(bytes, off, buf, size, len);
+    size += len;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns a copy of the content, with its exact size.
+   */
+  byte[] toByteArray() {
+    return Arrays.copyOf(buf, size);
+  }
+
+  /**
+   * Releases the buffer to the pool. This stream cannot be used anymore.
+   */
+  void release() {
+    if (buf != null) {
+      pool.release(buf);
+      buf = null;
+    }
+  }
+
+  private void ensureCapacity(int len) {
+    if (len > buf.length - size) {
+      byte[] newBuf = pool.acquire(Math.max(size + len, buf.length * 2));
+      System.arraycopy(buf, 0, newBuf, 0, size);
+      pool.release(buf);
+      buf = newBuf;
+    }
+  }
+}
@@ -18,12 +18,10 @@ package com.google.openrtb.snippet;
 
 import com.google.common.collect.ImmutableList;
 import com.google.openrtb.OpenRtb.BidRequest;
-import com.google.openrtb.OpenRtb.BidRequest.Impression;
 import com.google.openrtb.OpenRtb.BidRequest.ImpressionOrBuilder;
 import com.google.openrtb.OpenRtb.BidResponse;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
-import com.google.openrtb.OpenRtb.BidResponse.SeatBid.BidOrBuilder;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
 
 import java.util.List;
@@ -35,10 +33,14 @@ import javax.inject.Singleton;
  */
 @Singleton
 public class OpenRtbSnippetProcessor extends SnippetProcessor {
-  public static final OpenRtbSnippetProcessor ORTB_NULL = new OpenRtbSnippetProcessor() {
+  public static final OpenRtbSnippetProcessor ORTB_NULL = new OpenRtbSnippetProcessor(0) {
     @Override public String process(SnippetProcessorContext ctx, String snippet) {
       return SnippetProcessor.NULL.process(ctx, snippet);
     }
+    @Override public void process(
+        SnippetProcessorContext ctx, String snippet, StringBuilder out) {
+      SnippetProcessor.NULL.process(ctx, snippet, out);
+    }
   };
 
   /**
@@ -47,6 +49,15 @@ public class OpenRtbSnippetProcessor extends SnippetProcessor {
   public OpenRtbSnippetProcessor() {
   }
 
+  /**
+   * Creates a processor with a specific memory size for the cache of compiled snippets.
+   *
+   * @see SnippetProcessor#SnippetProcessor(int)
+   */
+  public OpenRtbSnippetProcessor(int templateCacheBytes) {
+    super(templateCacheBytes);
+  }
+
   @Override protected List<SnippetMacroType> registerMacros() {
     return ImmutableList.<SnippetMacroType>copyOf(OpenRtbMacros.values());
   }
@@ -105,11 +116,23 @@ public class OpenRtbSnippetProcessor extends SnippetProcessor {
 
   /**
    * Processes the context's response in-place, modifying properties that may contain macros.
+   * If a subclass overrides this method, {@code OpenRtbSnippetJsonWriter} calls it to process
+   * a copy of each response, instead of processing the snippets while writing.
    */
   public void process(BidRequest request, BidResponse.Builder response) {
+    // Creates all bid builders before the context indexes the bids, since they replace
+    // the bid objects; creating them seat by seat would make each seat miss the index.
+    for (SeatBid.Builder seat : response.getSeatbidBuilderList()) {
+      for (int i = 0; i < seat.getBidCount(); ++i) {
+        seat.getBidBuilder(i);
+      }
+    }
+    SnippetProcessorContext respCtx = null;
     for (SeatBid.Builder seat : response.getSeatbidBuilderList()) {
       for (Bid.Builder bid : seat.getBidBuilderList()) {
-        SnippetProcessorContext bidCtx = new SnippetProcessorContext(request, response, bid);
+        SnippetProcessorContext bidCtx = respCtx == null
+            ? (respCtx = new SnippetProcessorContext(request, response, bid))
+            : respCtx.forBid(bid);
 
         // Properties that can also be in the RHS of macros used by other properties.
 
@@ -144,12 +167,9 @@ public class OpenRtbSnippetProcessor extends SnippetProcessor {
   }
 
   private SeatBidOrBuilder findSeat(SnippetProcessorContext ctx, SnippetMacroType macro) {
-    for (SeatBidOrBuilder seatBid : ctx.response().getSeatbidOrBuilderList()) {
-      for (BidOrBuilder lookupBid : seatBid.getBidOrBuilderList()) {
-        if (lookupBid == ctx.bid()) {
-          return seatBid;
-        }
-      }
+    SeatBidOrBuilder seatBid = ctx.seatOf(ctx.bid());
+    if (seatBid != null) {
+      return seatBid;
     }
 
     throw new UndefinedMacroException(
@@ -157,10 +177,9 @@ public class OpenRtbSnippetProcessor extends SnippetProcessor {
   }
 
   protected ImpressionOrBuilder findImp(SnippetProcessorContext ctx, SnippetMacroType macro) {
-    for (Impression imp : ctx.request().getImpList()) {
-      if (imp.getId().equals(ctx.bid().getImpid())) {
-        return imp;
-      }
+    ImpressionOrBuilder imp = ctx.impWithId(ctx.bid().getImpid());
+    if (imp != null) {
+      return imp;
     }
 
     throw new UndefinedMacroException(macro,
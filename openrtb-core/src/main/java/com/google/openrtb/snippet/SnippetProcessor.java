@@ -16,10 +16,15 @@
 
 package com.google.openrtb.snippet;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.MoreObjects.ToStringHelper;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableList;
 import com.google.common.escape.Escaper;
 import com.google.common.net.PercentEscaper;
@@ -28,7 +33,13 @@ import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
 
 /**
  * Supports preprocessing for "snippets" of textual information, in particular for
@@ -37,22 +48,96 @@ import java.util.List;
  * %{A%{B}%}% will encode A and doubly-encode B. This nesting is typically necessary when URLs
  * have parameter that contain other URLs, so each server decodes and redirects to the next URL.
  * <p>
+ * Snippets are compiled into templates of literal text and macros, kept in a cache keyed by
+ * the snippet, so the same snippets (typically from a limited set of creatives) are expanded
+ * in a single pass without scanning for macros again. The cache is bounded by its approximate
+ * memory, see {@link #SnippetProcessor(int)}.
+ * <p>
  * This class is threadsafe, and all concrete subclasses have to be too.
  */
 public abstract class SnippetProcessor {
   private static final Logger logger = LoggerFactory.getLogger(SnippetProcessor.class);
   private static final Escaper escaper = new PercentEscaper("-_.*", true);
-  public static final SnippetProcessor NULL = new SnippetProcessor() {
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+  // Larger buffers are allocated for a single use, so idle threads don't keep them
+  private static final int MAX_SCRATCH_SIZE = 1 << 16;
+  private static final ThreadLocal<StringBuilder> scratch = new ThreadLocal<StringBuilder>() {
+    @Override protected StringBuilder initialValue() {
+      return new StringBuilder(256);
+    }
+  };
+  /**
+   * Default maximum memory of the cache of compiled snippets, in bytes (16Mb).
+   */
+  public static final int DEFAULT_TEMPLATE_CACHE_BYTES = 16 << 20;
+  /**
+   * Snippets longer than this (in chars) are never cached, so a few huge snippets
+   * can't evict all others.
+   */
+  public static final int MAX_CACHED_SNIPPET_LENGTH = 1 << 14;
+  // Approximate memory of a cached template besides its chars: the cache entry, key, template
+  // and arrays; and for each macro, one more literal string and two array slots
+  private static final int TEMPLATE_BYTES = 200;
+  private static final int TEMPLATE_MACRO_BYTES = 64;
+  private static final Weigher<String, Template> TEMPLATE_WEIGHER =
+      new Weigher<String, Template>() {
+        @Override public int weigh(String snippet, Template template) {
+          // Two bytes per char for the snippet, and up to two more for the template's literals
+          return TEMPLATE_BYTES + snippet.length() * 4
+              + template.macros.length * TEMPLATE_MACRO_BYTES;
+        }
+      };
+  public static final SnippetProcessor NULL = new SnippetProcessor(0) {
     @Override public String process(SnippetProcessorContext ctx, String snippet) {
       checkNotNull(ctx);
       return checkNotNull(snippet);
     }
+    @Override public void process(
+        SnippetProcessorContext ctx, String snippet, StringBuilder out) {
+      checkNotNull(ctx);
+      out.append(checkNotNull(snippet));
+    }
     @Override protected void processMacroAt(
         SnippetProcessorContext ctx, StringBuilder sb, SnippetMacroType macroDef) {
     }
   };
 
   private final ImmutableList<SnippetMacroType> SCAN_MACROS = ImmutableList.copyOf(registerMacros());
+  private final MacroTrie macroTrie = MacroTrie.build(SCAN_MACROS);
+  private final @Nullable LoadingCache<String, Template> templates;
+
+  /**
+   * Creates a processor with a cache of compiled snippets of up to
+   * {@link #DEFAULT_TEMPLATE_CACHE_BYTES}.
+   */
+  protected SnippetProcessor() {
+    this(DEFAULT_TEMPLATE_CACHE_BYTES);
+  }
+
+  /**
+   * Creates a processor with a cache of compiled snippets, bounded by its approximate memory.
+   * Each snippet is weighed as four bytes per char (for the snippet and its template's literal
+   * text), plus a fixed overhead per snippet and per macro. Snippets longer than
+   * {@link #MAX_CACHED_SNIPPET_LENGTH} are never cached. The cache evicts the least recently
+   * used snippets when it's full, so its size should allow for all snippets that are reused
+   * frequently; snippets that are unique to each bid only waste space in the cache.
+   *
+   * @param templateCacheBytes Approximate maximum memory of the cache in bytes, or zero to
+   *     disable the cache, so all snippets are scanned for macros every time
+   */
+  protected SnippetProcessor(int templateCacheBytes) {
+    checkArgument(templateCacheBytes >= 0, "Negative cache size: %s", templateCacheBytes);
+    this.templates = templateCacheBytes == 0
+        ? null
+        : CacheBuilder.newBuilder()
+            .maximumWeight(templateCacheBytes)
+            .weigher(TEMPLATE_WEIGHER)
+            .build(new CacheLoader<String, Template>() {
+              @Override public Template load(String snippet) {
+                return compile(snippet);
+              }
+            });
+  }
 
   protected List<SnippetMacroType> registerMacros() {
     return ImmutableList.of();
@@ -64,10 +149,98 @@ public abstract class SnippetProcessor {
 
   /**
    * Processes the raw snippet that was set by the bid, making any transformations necessary.
+   * <p>
+   * This method and {@link #process(SnippetProcessorContext, String, StringBuilder)} must
+   * produce the same result; subclasses should customize macros in
+   * {@link #processMacroAt}. A subclass that overrides one of these methods should override
+   * both in the same class, otherwise {@code OpenRtbSnippetJsonWriter} can't use the
+   * {@code StringBuilder} variant and processes a copy of each response instead.
    */
   public String process(SnippetProcessorContext ctx, String snippet) {
     checkNotNull(ctx);
+    if (snippet.indexOf("${") == -1) {
+      return urlEncode(snippet, new StringBuilder(snippet.length() * 2));
+    }
     StringBuilder sb = new StringBuilder(snippet.length() * 2);
+
+    if (templates == null || snippet.length() > MAX_CACHED_SNIPPET_LENGTH) {
+      return urlEncode(expandMacros(ctx, snippet, sb), sb);
+    }
+
+    Template template = templates.getUnchecked(snippet);
+    if (template.macros.length == 0) {
+      return urlEncode(snippet, sb);
+    }
+    sb.append(template.literals[0]);
+    for (int i = 0; i < template.macros.length; ++i) {
+      processMacroAt(ctx, sb, template.macros[i]);
+      sb.append(template.literals[i + 1]);
+    }
+    String expanded = sb.toString();
+    sb.setLength(0);
+
+    // Macros that expanded into other macros: continue with the iterative expansion
+    if (containsMacro(expanded, 0)) {
+      expanded = expandMacros(ctx, expanded, sb);
+    }
+    return urlEncode(expanded, sb);
+  }
+
+  /**
+   * Processes the raw snippet like {@link #process(SnippetProcessorContext, String)}, but
+   * appends the result to {@code out}. Macros are expanded straight into {@code out}, so a
+   * caller that reuses its buffer (like a JSON writer copying it to the output) doesn't
+   * create any intermediate strings, unless some macro expands into other macros.
+   * See {@link #process(SnippetProcessorContext, String)} for overriding.
+   */
+  public void process(SnippetProcessorContext ctx, String snippet, StringBuilder out) {
+    checkNotNull(ctx);
+    if (snippet.indexOf("${") == -1) {
+      appendUrlEncoded(snippet, out);
+      return;
+    }
+
+    if (templates == null || snippet.length() > MAX_CACHED_SNIPPET_LENGTH) {
+      appendUrlEncoded(
+          expandMacros(ctx, snippet, new StringBuilder(snippet.length() * 2)), out);
+      return;
+    }
+
+    Template template = templates.getUnchecked(snippet);
+    if (template.macros.length == 0) {
+      appendUrlEncoded(snippet, out);
+      return;
+    }
+    int start = out.length();
+    out.append(template.literals[0]);
+    for (int i = 0; i < template.macros.length; ++i) {
+      processMacroAt(ctx, out, template.macros[i]);
+      out.append(template.literals[i + 1]);
+    }
+
+    if (containsMacro(out, start)) {
+      // Macros that expanded into other macros: continue with the iterative expansion
+      String expanded = out.substring(start);
+      out.setLength(start);
+      appendUrlEncoded(
+          expandMacros(ctx, expanded, new StringBuilder(expanded.length() * 2)), out);
+    } else if (indexOf(out, '%', '{', start) != -1) {
+      StringBuilder expanded = scratch.get();
+      expanded.setLength(0);
+      expanded.append(out, start, out.length());
+      out.setLength(start);
+      appendUrlEncoded(expanded, out);
+      if (expanded.capacity() > MAX_SCRATCH_SIZE) {
+        scratch.remove();
+      }
+    }
+  }
+
+  /**
+   * Expands macros in a snippet, repeating until no more macros are found, so macros can
+   * expand into other macros.
+   */
+  private String expandMacros(SnippetProcessorContext ctx, String snippet, StringBuilder sb) {
     String currSnippet = snippet;
 
     while (true) {
@@ -100,30 +273,90 @@ public abstract class SnippetProcessor {
       }
     }
 
-    return urlEncode(currSnippet, sb);
+    return currSnippet;
   }
 
   private int processMacroAt(SnippetProcessorContext ctx,
       String snippet, int macroStart, StringBuilder sb) {
-    for (SnippetMacroType macroDef : SCAN_MACROS) {
-      if (macroDef.key().regionMatches(0, snippet, macroStart, macroDef.key().length())) {
-        processMacroAt(ctx, sb, macroDef);
-        return macroStart + macroDef.key().length();
+    SnippetMacroType macroDef = macroAt(snippet, macroStart);
+    if (macroDef == null) {
+      return -1;
+    }
+    processMacroAt(ctx, sb, macroDef);
+    return macroStart + macroDef.key().length();
+  }
+
+  private @Nullable SnippetMacroType macroAt(CharSequence snippet, int macroStart) {
+    return macroTrie.match(snippet, macroStart);
+  }
+
+  private boolean containsMacro(CharSequence snippet, int start) {
+    for (int pos = indexOf(snippet, '$', '{', start); pos != -1;
+        pos = indexOf(snippet, '$', '{', pos + 2)) {
+      if (macroAt(snippet, pos) != null) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static int indexOf(CharSequence chars, char c1, char c2, int start) {
+    for (int pos = start, last = chars.length() - 1; pos < last; ++pos) {
+      if (chars.charAt(pos) == c1 && chars.charAt(pos + 1) == c2) {
+        return pos;
       }
     }
 
     return -1;
   }
 
+  /**
+   * Compiles a snippet into its literal text and macros, found with the same scan as
+   * the first iteration of {@link #expandMacros}.
+   */
+  private Template compile(String snippet) {
+    List<String> literals = new ArrayList<>();
+    List<SnippetMacroType> macros = new ArrayList<>();
+    int literalStart = 0;
+
+    for (int pos = snippet.indexOf("${"); pos != -1; ) {
+      SnippetMacroType macroDef = macroAt(snippet, pos);
+      if (macroDef == null) {
+        pos = snippet.indexOf("${", pos + 2);
+      } else {
+        literals.add(snippet.substring(literalStart, pos));
+        macros.add(macroDef);
+        literalStart = pos + macroDef.key().length();
+        pos = snippet.indexOf("${", literalStart);
+      }
+    }
+
+    literals.add(snippet.substring(literalStart));
+    return new Template(
+        literals.toArray(new String[literals.size()]),
+        macros.toArray(new SnippetMacroType[macros.size()]));
+  }
+
   protected abstract void processMacroAt(SnippetProcessorContext ctx,
       StringBuilder sb, SnippetMacroType macroDef);
 
   protected static String urlEncode(String snippet, StringBuilder sb) {
-    int snippetPos = snippet.indexOf("%{");
-    if (snippetPos == -1) {
+    if (snippet.indexOf("%{") == -1) {
       return snippet;
     }
 
+    appendUrlEncoded(snippet, sb);
+    return sb.toString();
+  }
+
+  private static void appendUrlEncoded(CharSequence snippet, StringBuilder sb) {
+    int snippetPos = indexOf(snippet, '%', '{', 0);
+    if (snippetPos == -1) {
+      sb.append(snippet);
+      return;
+    }
+
     int encodeLevel = 0;
     int encodeStart = 0;
     int lastPos = snippet.length() - 1;
@@ -132,11 +365,11 @@ public abstract class SnippetProcessor {
       char c = snippet.charAt(snippetPos);
 
       if (c == '%' && snippetPos < lastPos && snippet.charAt(snippetPos + 1) == '{') {
-        sb.append(flushEncoding(snippet, encodeStart, snippetPos, encodeLevel++));
+        escape(snippet, encodeStart, snippetPos, encodeLevel++, sb);
         encodeStart = (snippetPos += 2);
       } else if (c == '}' && snippetPos < lastPos && snippet.charAt(snippetPos + 1) == '%'
           && encodeLevel > 0) {
-        sb.append(flushEncoding(snippet, encodeStart, snippetPos, encodeLevel--));
+        escape(snippet, encodeStart, snippetPos, encodeLevel--, sb);
         encodeStart = (snippetPos += 2);
       } else {
         ++snippetPos;
@@ -147,18 +380,74 @@ public abstract class SnippetProcessor {
       logger.warn("Unbalanced '%{': {}, snippet:\n{}", encodeLevel, snippet);
     }
 
-    return sb.append(flushEncoding(snippet, encodeStart, snippet.length(), 0)).toString();
+    sb.append(snippet, encodeStart, snippet.length());
   }
 
-  private static String flushEncoding(
-      String snippet, int encodeStart, int encodeEnd, int encodeLevel) {
-    String substr = snippet.substring(encodeStart, encodeEnd);
+  /**
+   * Appends a range of characters, escaped {@code level} times by {@link #getEscaper()}.
+   * The output is identical to repeated escaping, but computed in a single pass without
+   * intermediate strings: alphanumerics and "-_.*" are never escaped; a space is escaped
+   * to "+" then "%2B"; other characters are escaped to "%" and the hex digits of each UTF-8
+   * byte, and each further level only escapes the "%" again (to "%25").
+   *
+   * @throws IllegalArgumentException if the characters contain an unpaired surrogate
+   */
+  protected static void escape(
+      CharSequence chars, int start, int end, int level, StringBuilder sb) {
+    if (level == 0) {
+      sb.append(chars, start, end);
+      return;
+    }
+
+    for (int pos = start; pos < end; ++pos) {
+      char c = chars.charAt(pos);
 
-    for (int i = 0; i < encodeLevel; ++i) {
-      substr = getEscaper().escape(substr);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '-' || c == '_' || c == '.' || c == '*') {
+        sb.append(c);
+      } else if (c == ' ') {
+        if (level == 1) {
+          sb.append('+');
+        } else {
+          appendPercent(level - 2, sb);
+          sb.append("2B");
+        }
+      } else if (c < 0x80) {
+        appendByte(c, level, sb);
+      } else if (c < 0x800) {
+        appendByte(0xC0 | (c >> 6), level, sb);
+        appendByte(0x80 | (c & 0x3F), level, sb);
+      } else if (!Character.isSurrogate(c)) {
+        appendByte(0xE0 | (c >> 12), level, sb);
+        appendByte(0x80 | ((c >> 6) & 0x3F), level, sb);
+        appendByte(0x80 | (c & 0x3F), level, sb);
+      } else {
+        if (!Character.isHighSurrogate(c) || pos + 1 == end
+            || !Character.isLowSurrogate(chars.charAt(pos + 1))) {
+          throw new IllegalArgumentException("Unpaired surrogate at index " + (pos - start));
+        }
+        int cp = Character.toCodePoint(c, chars.charAt(++pos));
+        appendByte(0xF0 | (cp >> 18), level, sb);
+        appendByte(0x80 | ((cp >> 12) & 0x3F), level, sb);
+        appendByte(0x80 | ((cp >> 6) & 0x3F), level, sb);
+        appendByte(0x80 | (cp & 0x3F), level, sb);
+      }
     }
+  }
 
-    return substr;
+  private static void appendByte(int b, int level, StringBuilder sb) {
+    appendPercent(level - 1, sb);
+    sb.append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+  }
+
+  /**
+   * Appends a "%" that will be escaped {@code level} more times.
+   */
+  private static void appendPercent(int level, StringBuilder sb) {
+    sb.append('%');
+    for (int i = 0; i < level; ++i) {
+      sb.append("25");
+    }
   }
 
   @Override
@@ -169,4 +458,90 @@ public abstract class SnippetProcessor {
   protected ToStringHelper toStringHelper() {
     return MoreObjects.toStringHelper(this).omitNullValues();
   }
+
+  /**
+   * Character trie of the macro keys, so finding the macro at some position of a snippet
+   * takes time proportional to the key length, independent of the number of macros.
+   * If several keys match (one is a prefix of the other), the first registered macro wins,
+   * like a linear scan of the macros would do.
+   */
+  private static final class MacroTrie {
+    private final char[] labels;
+    private final MacroTrie[] children;
+    private final @Nullable SnippetMacroType macro;
+    private final int order;
+
+    private MacroTrie(Node node) {
+      this.labels = new char[node.children.size()];
+      this.children = new MacroTrie[labels.length];
+      int i = 0;
+      for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+        labels[i] = entry.getKey();
+        children[i++] = new MacroTrie(entry.getValue());
+      }
+      this.macro = node.macro;
+      this.order = node.order;
+    }
+
+    static MacroTrie build(List<SnippetMacroType> macros) {
+      Node root = new Node();
+      for (int i = 0; i < macros.size(); ++i) {
+        String key = macros.get(i).key();
+        Node node = root;
+        for (int pos = 0; pos < key.length(); ++pos) {
+          Node child = node.children.get(key.charAt(pos));
+          if (child == null) {
+            node.children.put(key.charAt(pos), child = new Node());
+          }
+          node = child;
+        }
+        if (node.macro == null) {
+          node.macro = macros.get(i);
+          node.order = i;
+        }
+      }
+      return new MacroTrie(root);
+    }
+
+    @Nullable SnippetMacroType match(CharSequence snippet, int start) {
+      SnippetMacroType found = null;
+      int foundOrder = Integer.MAX_VALUE;
+      MacroTrie node = this;
+
+      for (int pos = start; ; ++pos) {
+        if (node.macro != null && node.order < foundOrder) {
+          found = node.macro;
+          foundOrder = node.order;
+        }
+        if (pos == snippet.length()) {
+          return found;
+        }
+        int child = Arrays.binarySearch(node.labels, snippet.charAt(pos));
+        if (child < 0) {
+          return found;
+        }
+        node = node.children[child];
+      }
+    }
+
+    private static final class Node {
+      final Map<Character, Node> children = new TreeMap<>();
+      SnippetMacroType macro;
+      int order;
+    }
+  }
+
+  /**
+   * A compiled snippet: literal text interleaved with macros, so {@code literals} has one
+   * more element than {@code macros}.
+   */
+  private static final class Template {
+    final String[] literals;
+    final SnippetMacroType[] macros;
+
+    Template(String[] literals, SnippetMacroType[] macros) {
+      this.literals = literals;
+      this.macros = macros;
+    }
+  }
 }
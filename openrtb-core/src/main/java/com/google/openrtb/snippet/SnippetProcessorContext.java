@@ -17,25 +17,61 @@
 package com.google.openrtb.snippet;
 
 import com.google.common.base.MoreObjects;
+import com.google.openrtb.OpenRtb.BidRequest.ImpressionOrBuilder;
 import com.google.openrtb.OpenRtb.BidRequestOrBuilder;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.BidOrBuilder;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBidOrBuilder;
 import com.google.openrtb.OpenRtb.BidResponseOrBuilder;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
 /**
  * Context for {@link SnippetProcessor}.
  * <p>
+ * The context can find the bid's impression and seat, with indexes of the request's
+ * impressions and the response's bids that are built on first use, and shared by all
+ * contexts created with {@link #forBid(BidOrBuilder)}. So processing all bids of a response
+ * takes linear time, instead of scanning the request and response for every bid.
+ * The indexes reflect the request and response when they are built, so they should not
+ * be modified (except for the bids' fields) while using the context. For a response builder,
+ * this includes creating builders for its bids (e.g. by {@code getBidBuilderList()}), since
+ * they replace the bid objects that {@link #seatOf} looks for; so all bid builders should be
+ * created before the context, like {@link OpenRtbSnippetProcessor} does.
+ * <p>
  * This class is threadsafe.
  */
 public class SnippetProcessorContext {
+  // Below this size, a linear scan is faster than building an index
+  private static final int MAX_SCAN = 8;
+
   private final BidRequestOrBuilder request;
   private final BidResponseOrBuilder response;
   private final BidOrBuilder bid;
+  private final Index index;
 
   public SnippetProcessorContext(
       BidRequestOrBuilder request, BidResponseOrBuilder response, BidOrBuilder bid) {
+    this(request, response, bid, new Index());
+  }
+
+  private SnippetProcessorContext(
+      BidRequestOrBuilder request, BidResponseOrBuilder response, BidOrBuilder bid,
+      Index index) {
     this.request = request;
     this.response = response;
     this.bid = bid;
+    this.index = index;
+  }
+
+  /**
+   * Creates a context for another bid of the same response, sharing the indexes.
+   */
+  public SnippetProcessorContext forBid(BidOrBuilder bid) {
+    return new SnippetProcessorContext(request, response, bid, index);
   }
 
   public final BidRequestOrBuilder request() {
@@ -50,6 +86,64 @@ public class SnippetProcessorContext {
     return bid;
   }
 
+  /**
+   * Returns the request's impression with some id, or {@code null} if not found.
+   */
+  public final @Nullable ImpressionOrBuilder impWithId(String impId) {
+    if (request.getImpCount() <= MAX_SCAN) {
+      for (ImpressionOrBuilder imp : request.getImpOrBuilderList()) {
+        if (imp.getId().equals(impId)) {
+          return imp;
+        }
+      }
+      return null;
+    }
+
+    Map<String, ImpressionOrBuilder> imps = index.imps;
+    if (imps == null) {
+      imps = new HashMap<>();
+      for (ImpressionOrBuilder imp : request.getImpOrBuilderList()) {
+        if (!imps.containsKey(imp.getId())) {
+          imps.put(imp.getId(), imp);
+        }
+      }
+      index.imps = imps;
+    }
+    return imps.get(impId);
+  }
+
+  /**
+   * Returns the response's seat that contains some bid, or {@code null} if not found.
+   * Bids are compared by identity.
+   */
+  public final @Nullable SeatBidOrBuilder seatOf(BidOrBuilder bid) {
+    if (response.getSeatbidCount() == 1) {
+      SeatBidOrBuilder seatBid = response.getSeatbidOrBuilder(0);
+      if (seatBid.getBidCount() <= MAX_SCAN) {
+        for (BidOrBuilder lookupBid : seatBid.getBidOrBuilderList()) {
+          if (lookupBid == bid) {
+            return seatBid;
+          }
+        }
+        return null;
+      }
+    }
+
+    Map<BidOrBuilder, SeatBidOrBuilder> seats = index.seats;
+    if (seats == null) {
+      seats = new IdentityHashMap<>();
+      for (SeatBidOrBuilder lookupSeat : response.getSeatbidOrBuilderList()) {
+        for (BidOrBuilder lookupBid : lookupSeat.getBidOrBuilderList()) {
+          if (!seats.containsKey(lookupBid)) {
+            seats.put(lookupBid, lookupSeat);
+          }
+        }
+      }
+      index.seats = seats;
+    }
+    return seats.get(bid);
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).omitNullValues()
@@ -58,4 +152,13 @@ public class SnippetProcessorContext {
         .add("bid", bid)
         .toString();
   }
+
+  /**
+   * Indexes shared by the contexts of a single response. Benign races: each index is
+   * immutable once published, so concurrent threads at worst build it twice.
+   */
+  private static final class Index {
+    volatile Map<String, ImpressionOrBuilder> imps;
+    volatile Map<BidOrBuilder, SeatBidOrBuilder> seats;
+  }
 }
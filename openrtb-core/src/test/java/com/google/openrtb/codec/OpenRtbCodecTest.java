@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.codec;
+
+import static com.google.openrtb.json.OpenRtbJsonTest.newBidRequest;
+import static com.google.openrtb.json.OpenRtbJsonTest.newBidResponse;
+import static com.google.openrtb.json.OpenRtbJsonTest.newJsonFactory;
+import static com.google.openrtb.json.OpenRtbJsonTest.newSite;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.openrtb.TestExt;
+import com.google.openrtb.json.OpenRtbJsonFormats;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link OpenRtbCodec} implementations and {@link OpenRtbCodecs}.
+ */
+public class OpenRtbCodecTest {
+  private static final BidRequest req = newBidRequest().setSite(newSite()).build();
+  private static final BidResponse resp = newBidResponse().build();
+
+  @Test
+  public void testJson() throws IOException {
+    OpenRtbCodec codec = new OpenRtbJsonCodec(newJsonFactory());
+    assertEquals("application/json", codec.getContentType());
+    testCodec(codec);
+  }
+
+  @Test
+  public void testJson_binaryFormats() throws IOException {
+    OpenRtbCodec smile = new OpenRtbJsonCodec(
+        newJsonFactory().setJsonFactory(OpenRtbJsonFormats.newSmileFactory()));
+    assertEquals("application/x-jackson-smile", smile.getContentType());
+    testCodec(smile);
+    OpenRtbCodec cbor = new OpenRtbJsonCodec(
+        newJsonFactory().setJsonFactory(OpenRtbJsonFormats.newCborFactory()));
+    assertEquals("application/cbor", cbor.getContentType());
+    testCodec(cbor);
+    OpenRtbCodecs codecs = OpenRtbCodecs.create().register(smile).register(cbor);
+    assertSame(smile, codecs.get("application/x-jackson-smile"));
+    assertSame(cbor, codecs.get("application/cbor"));
+  }
+
+  @Test
+  public void testProtobuf() throws IOException {
+    ExtensionRegistry registry = ExtensionRegistry.newInstance();
+    TestExt.registerAllExtensions(registry);
+    testCodec(new OpenRtbProtobufCodec(registry));
+  }
+
+  @Test
+  public void testProtobuf_largeMessage() throws IOException {
+    OpenRtbCodec codec = new OpenRtbProtobufCodec();
+    // Bigger than the initial scratch buffer, then bigger than the buffers kept per thread,
+    // then small again after the oversized buffer was dropped
+    for (int admSize : new int[] { 10000, 100000, 10 }) {
+      BidResponse bigResp = newBigResponse(admSize);
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      codec.writeBidResponse(bigResp, os);
+      ExtensionRegistry registry = ExtensionRegistry.newInstance();
+      TestExt.registerAllExtensions(registry);
+      assertEquals(bigResp, BidResponse.parseFrom(os.toByteArray(), registry));
+      BidResponse resp2 = codec.readBidResponse(new ByteArrayInputStream(os.toByteArray()));
+      // Without the registry, extensions are kept as unknown fields
+      assertEquals(bigResp.toByteString(), resp2.toByteString());
+    }
+  }
+
+  @Test
+  public void testProtobuf_maxMessageSize() throws IOException {
+    byte[] bytes = newBigResponse(10000).toByteArray();
+    OpenRtbCodec codec = new OpenRtbProtobufCodec(
+        ExtensionRegistryLite.getEmptyRegistry(), bytes.length);
+    assertEquals(ByteString.copyFrom(bytes),
+        codec.readBidResponse(new ByteArrayInputStream(bytes)).toByteString());
+    codec = new OpenRtbProtobufCodec(ExtensionRegistryLite.getEmptyRegistry(), bytes.length - 1);
+    try {
+      codec.readBidResponse(new ByteArrayInputStream(bytes));
+      fail();
+    } catch (InvalidProtocolBufferException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testCodecs() {
+    OpenRtbCodec json = new OpenRtbJsonCodec(newJsonFactory());
+    OpenRtbCodec protobuf = new OpenRtbProtobufCodec();
+    OpenRtbCodecs codecs = OpenRtbCodecs.create()
+        .register(json)
+        .register(protobuf)
+        .register(protobuf, "application/octet-stream");
+    assertSame(json, codecs.get("application/json"));
+    assertSame(json, codecs.get("Application/JSON; charset=utf-8"));
+    assertSame(protobuf, codecs.get("application/x-protobuf"));
+    assertSame(protobuf, codecs.get("application/octet-stream"));
+    assertNull(codecs.get("text/plain"));
+    assertNull(codecs.get("not a content type"));
+  }
+
+  private static BidResponse newBigResponse(int admSize) {
+    char[] adm = new char[admSize];
+    Arrays.fill(adm, 'x');
+    return resp.toBuilder()
+        .setSeatbid(0, resp.getSeatbid(0).toBuilder()
+            .setBid(0, resp.getSeatbid(0).getBid(0).toBuilder().setAdm(new String(adm))))
+        .build();
+  }
+
+  static void testCodec(OpenRtbCodec codec) throws IOException {
+    byte[] reqBytes = codec.writeBidRequest(req);
+    assertEquals(req, codec.readBidRequest(reqBytes, 0, reqBytes.length));
+    assertEquals(req, codec.readBidRequest(new ByteArrayInputStream(reqBytes)));
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    codec.writeBidRequest(req, os);
+    assertEquals(req, codec.readBidRequest(os.toByteArray(), 0, os.size()));
+
+    byte[] respBytes = codec.writeBidResponse(resp);
+    assertEquals(resp, codec.readBidResponse(respBytes, 0, respBytes.length));
+    assertEquals(resp, codec.readBidResponse(new ByteArrayInputStream(respBytes)));
+    os.reset();
+    codec.writeBidResponse(resp, os);
+    assertEquals(resp, codec.readBidResponse(os.toByteArray(), 0, os.size()));
+  }
+}
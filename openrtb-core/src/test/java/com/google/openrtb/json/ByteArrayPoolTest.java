@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ByteArrayPool} and {@link PooledByteArrayOutputStream}.
+ */
+public class ByteArrayPoolTest {
+
+  @Test
+  public void testBucketIndex() {
+    assertEquals(0, ByteArrayPool.bucketIndex(0));
+    assertEquals(0, ByteArrayPool.bucketIndex(1024));
+    assertEquals(1, ByteArrayPool.bucketIndex(1025));
+    assertEquals(1, ByteArrayPool.bucketIndex(2048));
+    assertEquals(10, ByteArrayPool.bucketIndex(1024 * 1024));
+    assertEquals(11, ByteArrayPool.bucketIndex(1024 * 1024 + 1));
+  }
+
+  @Test
+  public void testAcquireRelease() {
+    ByteArrayPool pool = new ByteArrayPool(1);
+    byte[] array1 = pool.acquire(1500);
+    byte[] array2 = pool.acquire(2000);
+    assertEquals(2048, array1.length);
+    assertNotSame(array1, array2);
+    pool.release(array1);
+    pool.release(array2); // Bucket is full
+    assertSame(array1, pool.acquire(1025));
+    assertNotSame(array2, pool.acquire(1025));
+
+    byte[] huge = pool.acquire(2 * 1024 * 1024 + 1);
+    assertEquals(2 * 1024 * 1024 + 1, huge.length);
+    pool.release(huge); // Not pooled
+    assertNotSame(huge, pool.acquire(2 * 1024 * 1024 + 1));
+  }
+
+  @Test
+  public void testOutputStream() {
+    ByteArrayPool pool = new ByteArrayPool(4);
+    PooledByteArrayOutputStream os = new PooledByteArrayOutputStream(pool, 10);
+    byte[] expected = new byte[5000];
+    for (int i = 0; i < expected.length; ++i) {
+      expected[i] = (byte) i;
+    }
+    os.write(expected[0]);
+    os.write(expected, 1, 999);
+    os.write(expected, 1000, 4000);
+    assertEquals(5000, os.size());
+    assertArrayEquals(expected, os.toByteArray());
+    os.release();
+    assertEquals(8192, pool.acquire(5000).length);
+  }
+}
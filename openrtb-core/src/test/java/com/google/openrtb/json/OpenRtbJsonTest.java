@@ -17,8 +17,17 @@
 package com.google.openrtb.json;
 
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.openrtb.OpenRtb;
 import com.google.openrtb.OpenRtb.BidRequest;
 import com.google.openrtb.OpenRtb.BidRequest.App;
@@ -64,16 +73,32 @@ import com.google.openrtb.OpenRtbNative.NativeRequest;
 import com.google.openrtb.Test.Test1;
 import com.google.openrtb.Test.Test2;
 import com.google.openrtb.TestExt;
+import com.google.openrtb.codec.OpenRtbJsonCodec;
+import com.google.openrtb.snippet.OpenRtbMacros;
+import com.google.openrtb.snippet.OpenRtbSnippetProcessor;
+import com.google.openrtb.snippet.SnippetProcessorContext;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.UninitializedMessageException;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Tests for {@link OpenRtbJsonWriter}.
@@ -82,6 +107,7 @@ public class OpenRtbJsonTest {
   private static final Logger logger = LoggerFactory.getLogger(OpenRtbJsonTest.class);
   private static final Test1 test1 = Test1.newBuilder().setTest1("test1").build();
   private static final Test2 test2 = Test2.newBuilder().setTest2("test2").build();
+  static final int PAD = 7;
 
   @Test
   public void testRequest_site() throws IOException {
@@ -106,6 +132,20 @@ public class OpenRtbJsonTest {
         newBidRequest().build());
   }
 
+  @Test(expected = IOException.class)
+  public void testRequest_unknownFieldNamedReader() throws IOException {
+    testRequest(OpenRtbJsonFactory.create()
+        .setJsonFactory(new JsonFactory())
+        .register(new Test2Reader<BidRequest.Builder>(TestExt.testRequest2), "BidRequest")
+        .register(new OpenRtbJsonExtWriter<Test2>() {
+          @Override public void write(Test2 ext, JsonGenerator gen) throws IOException {
+            gen.writeStringField("test2", "test2");
+            gen.writeStringField("unknownField", "junk");
+          }
+        }, Test2.class, "BidRequest"),
+        newBidRequest().build());
+  }
+
   @Test
   public void testRequest_AlternateFields() throws IOException {
     testRequest(newJsonFactory()
@@ -120,6 +160,58 @@ public class OpenRtbJsonTest {
         newBidRequest().build());
   }
 
+  @Test
+  public void testRequest_extensionWriters() throws IOException {
+    OpenRtbJsonFactory jsonFactory = OpenRtbJsonFactory.create()
+        .setJsonFactory(new JsonFactory())
+        .register(new Test1Reader<BidRequest.Builder>(TestExt.testRequest1), "BidRequest")
+        .register(new Test2Reader<BidRequest.Builder>(TestExt.testRequest2), "BidRequest")
+        .register(new Test1Reader<Impression.Builder>(TestExt.testImp), "BidRequest.imp")
+        .register(new Test1Writer(), TestExt.testRequest1, "BidRequest")
+        .register(new Test1Writer(), TestExt.testImp, "BidRequest.imp")
+        .register(new Test2Writer(), Test2.class, "BidRequest");
+    BidRequest req = BidRequest.newBuilder()
+        .setId("0")
+        .addImp(Impression.newBuilder().setId("0")
+            .setExtension(TestExt.testImp, Test1.newBuilder().setTest1("imp").build()))
+        .setExtension(TestExt.testRequest1, Test1.newBuilder().setTest1("req").build())
+        .setExtension(TestExt.testRequest2, Test2.newBuilder().setTest2("req").build())
+        .build();
+    testRequest(jsonFactory, req);
+    assertEquals(
+        "{\"id\":\"0\",\"imp\":[{\"id\":\"0\",\"ext\":{\"test1\":\"imp\"}}],"
+            + "\"ext\":{\"test1\":\"req\",\"test2\":\"req\"}}",
+        jsonFactory.newWriter().writeBidRequest(req));
+    // Extensions without a writer for their path are ignored
+    assertEquals(
+        "{\"id\":\"0\",\"imp\":[{\"id\":\"0\",\"ext\":{\"test1\":\"imp\"}}],"
+            + "\"device\":{}}",
+        jsonFactory.newWriter().writeBidRequest(
+            req.toBuilder()
+                .clearExtension(TestExt.testRequest1)
+                .clearExtension(TestExt.testRequest2)
+                .setDevice(Device.newBuilder().setExtension(
+                    TestExt.testDevice, Test1.newBuilder().setTest1("dev").build()))
+                .build()));
+  }
+
+  @Test
+  public void testRequest_subclassWriterRegistration() throws IOException {
+    OpenRtbJsonFactory jsonFactory = OpenRtbJsonFactory.create()
+        .setJsonFactory(new JsonFactory());
+    OpenRtbJsonWriter writer = new OpenRtbJsonWriter(jsonFactory) {};
+    BidRequest req = BidRequest.newBuilder().setId("0")
+        .setExtension(TestExt.testRequest1, Test1.newBuilder().setTest1("req").build())
+        .build();
+    assertEquals("{\"id\":\"0\"}", writer.writeBidRequest(req));
+    // The writer's factory is not a snapshot, so it sees writers registered afterwards
+    jsonFactory.register(new Test1Writer(), TestExt.testRequest1, "BidRequest");
+    assertEquals("{\"id\":\"0\",\"ext\":{\"test1\":\"req\"}}",
+        writer.writeBidRequest(req));
+    assertEquals("{\"id\":\"0\",\"ext\":{\"test1\":\"req\"}}",
+        writer.writeBidRequest(req));
+  }
+
   @Test
   public void testRequest_emptyMessages() throws IOException {
     OpenRtbJsonFactory jsonFactory = newJsonFactory();
@@ -170,6 +262,514 @@ public class OpenRtbJsonTest {
         .addBid(Bid.newBuilder().setId("0").setImpid("0").setPrice(0))).build());
   }
 
+  @Test
+  public void testRequest_bytes() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    BidRequest req = newBidRequest().setSite(newSite()).build();
+    byte[] jsonReq = jsonFactory.newWriter().writeBidRequest(req).getBytes(Charsets.UTF_8);
+    byte[] padded = pad(jsonReq);
+    OpenRtbJsonReader reader = jsonFactory.newReader();
+
+    assertEquals(req, reader.readBidRequest(padded, PAD, jsonReq.length));
+    ByteBuffer heapBuf = ByteBuffer.wrap(padded, PAD, jsonReq.length);
+    assertEquals(req, reader.readBidRequest(heapBuf));
+    assertEquals(PAD, heapBuf.position());
+    ByteBuffer directBuf = ByteBuffer.allocateDirect(jsonReq.length);
+    directBuf.put(jsonReq).flip();
+    assertEquals(req, reader.readBidRequest(directBuf));
+    assertEquals(0, directBuf.position());
+  }
+
+  @Test
+  public void testResponse_bytes() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    BidResponse resp = newBidResponse().build();
+    byte[] jsonResp = jsonFactory.newWriter().writeBidResponse(resp).getBytes(Charsets.UTF_8);
+    byte[] padded = pad(jsonResp);
+    OpenRtbJsonReader reader = jsonFactory.newReader();
+
+    assertEquals(resp, reader.readBidResponse(padded, PAD, jsonResp.length));
+    assertEquals(resp, reader.readBidResponse(ByteBuffer.wrap(padded, PAD, jsonResp.length)));
+    ByteBuffer directBuf = ByteBuffer.allocateDirect(jsonResp.length);
+    directBuf.put(jsonResp).flip();
+    assertEquals(resp, reader.readBidResponse(directBuf));
+  }
+
+  @Test
+  public void testRequest_stream() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    OpenRtbJsonWriter writer = jsonFactory.newWriter();
+    OpenRtbJsonReader reader = jsonFactory.newReader();
+    List<BidRequest> reqs = new ArrayList<>();
+    StringBuilder ndjson = new StringBuilder();
+    for (int i = 0; i < 10; ++i) {
+      BidRequest req = newBidRequest().setId("req" + i).build();
+      reqs.add(req);
+      ndjson.append(writer.writeBidRequest(req)).append('\n');
+    }
+    byte[] ndjsonBytes = ndjson.toString().getBytes(Charsets.UTF_8);
+    String array = "[" + ndjson.toString().replace('\n', ',') + "]";
+    array = array.replace(",]", "]");
+
+    assertEquals(reqs, ImmutableList.copyOf(
+        reader.readBidRequests(new ByteArrayInputStream(ndjsonBytes))));
+    assertEquals(reqs, ImmutableList.copyOf(
+        reader.readBidRequests(ByteBuffer.wrap(array.getBytes(Charsets.UTF_8)))));
+    OpenRtbJsonIterator<BidRequest> iter = reader.readBidRequests(ByteBuffer.wrap(ndjsonBytes));
+    assertEquals(reqs.get(0), iter.readNext());
+    iter.close();
+    assertNull(iter.readNext());
+
+    List<BidRequest> splitReqs = new ArrayList<>();
+    List<ByteBuffer> slices = OpenRtbJsonIterator.splitLines(ByteBuffer.wrap(ndjsonBytes), 3);
+    assertEquals(3, slices.size());
+    for (ByteBuffer slice : slices) {
+      Iterators.addAll(splitReqs, reader.readBidRequests(slice));
+    }
+    assertEquals(reqs, splitReqs);
+    assertEquals(reqs.size(),
+        OpenRtbJsonIterator.splitLines(ByteBuffer.wrap(ndjsonBytes), 100).size());
+  }
+
+  @Test
+  public void testResponse_stream() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    BidResponse resp = newBidResponse().build();
+    String json = jsonFactory.newWriter().writeBidResponse(resp);
+    assertEquals(ImmutableList.of(resp, resp), ImmutableList.copyOf(jsonFactory.newReader()
+        .readBidResponses(new ByteArrayInputStream((json + json).getBytes(Charsets.UTF_8)))));
+  }
+
+  @Test(expected = OpenRtbJsonIterator.ReadException.class)
+  public void testRequest_streamNotObject() throws IOException {
+    Iterators.size(newJsonFactory().newReader().readBidRequests(
+        new ByteArrayInputStream("[1, 2]".getBytes(Charsets.UTF_8))));
+  }
+
+  @Test
+  public void testRequest_incremental() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    BidRequest req = newBidRequest().setSite(newSite()).build();
+    byte[] jsonReq = (" " + jsonFactory.newWriter().writeBidRequest(req) + "\n")
+        .getBytes(Charsets.UTF_8);
+    IncrementalBidRequestReader reader = jsonFactory.newReader().newIncrementalReader(64 * 1024);
+
+    for (int i = 0; i < 2; ++i) {
+      BidRequest.Builder req2 = null;
+      for (int pos = 0; pos < jsonReq.length; pos += 7) {
+        int len = Math.min(7, jsonReq.length - pos);
+        BidRequest.Builder fed = (pos / 7) % 2 == 0
+            ? reader.feed(jsonReq, pos, len)
+            : reader.feed(ByteBuffer.wrap(jsonReq, pos, len));
+        if (fed != null) {
+          assertNull(req2);
+          req2 = fed;
+        }
+        assertEquals(req2 != null, reader.isComplete());
+      }
+      assertEquals(req, req2.build());
+      reader.reset();
+    }
+
+    assertEquals(req, reader.feed(jsonReq, 0, jsonReq.length).build());
+  }
+
+  @Test
+  public void testRequest_incrementalTrailingContent() throws IOException {
+    IncrementalBidRequestReader reader = newJsonFactory().newReader().newIncrementalReader(100);
+    byte[] jsonReq = "{\"id\":\"0}\"}".getBytes(Charsets.UTF_8);
+    assertEquals("0}", reader.feed(jsonReq, 0, jsonReq.length).getId());
+    assertTrue(reader.isComplete());
+    try {
+      reader.feed("{}".getBytes(Charsets.UTF_8), 0, 2);
+      fail();
+    } catch (JsonParseException e) {
+    }
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void testRequest_incrementalMaxSize() throws IOException {
+    newJsonFactory().newReader().newIncrementalReader(10).feed(new byte[11], 0, 11);
+  }
+
+  @Test
+  public void testTranscoder() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    OpenRtbJsonTranscoder transcoder = jsonFactory.newReader().newTranscoder();
+    ExtensionRegistry registry = ExtensionRegistry.newInstance();
+    TestExt.registerAllExtensions(registry);
+
+    BidRequest req = newBidRequest().setSite(newSite()).build();
+    byte[] jsonReq = jsonFactory.newWriter().writeBidRequestBytes(req);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    CodedOutputStream out = CodedOutputStream.newInstance(os);
+    transcoder.transcodeBidRequest(jsonReq, 0, jsonReq.length, out);
+    out.flush();
+    assertEquals(req, BidRequest.parseFrom(os.toByteArray(), registry));
+
+    BidResponse resp = newBidResponse().build();
+    byte[] jsonResp = jsonFactory.newWriter().writeBidResponseBytes(resp);
+    os.reset();
+    transcoder.transcodeBidResponse(jsonResp, 0, jsonResp.length, out);
+    out.flush();
+    assertEquals(resp, BidResponse.parseFrom(os.toByteArray(), registry));
+  }
+
+  @Test
+  public void testTranscoder_projection() throws IOException {
+    ExtensionRegistry registry = ExtensionRegistry.newInstance();
+    TestExt.registerAllExtensions(registry);
+    BidRequest req = newBidRequest().setSite(newSite()).build();
+    byte[] jsonReq = newJsonFactory().newWriter().writeBidRequestBytes(req);
+
+    // Site content is projected as "BidRequest.site.content", not as "BidRequest.app.content"
+    String[] paths = { "BidRequest.site.content", "BidRequest.site.content.title" };
+    for (String path : paths) {
+      OpenRtbJsonReader reader = newJsonFactory().setProjection(path).newReader();
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      CodedOutputStream out = CodedOutputStream.newInstance(os);
+      reader.newTranscoder().transcodeBidRequest(jsonReq, 0, jsonReq.length, out);
+      out.flush();
+      BidRequest projected = BidRequest.parseFrom(os.toByteArray(), registry);
+      assertEquals(reader.readBidRequest(jsonReq, 0, jsonReq.length), projected);
+      assertTrue(projected.getSite().hasContent());
+      assertFalse(projected.getSite().hasPublisher());
+    }
+  }
+
+  @Test
+  public void testTranscoder_nativeString() throws IOException {
+    BidRequest req = BidRequest.newBuilder().setId("0")
+        .addImp(Impression.newBuilder().setId("1")
+            .setNative(Native.newBuilder()
+                .setRequest(NativeRequest.newBuilder().setVer("1\u00e9\ud83d\ude00"))
+                .setVer("1")))
+        .build();
+    byte[] json = ("{\"id\":\"0\",\"imp\":[{\"id\":\"1\",\"unknown\":[1,{}],"
+        + "\"native\":{\"request\":\"{\\\"ver\\\":\\\"1\u00e9\ud83d\ude00\\\"}\",\"ver\":\"1\"}}]}")
+        .getBytes(Charsets.UTF_8);
+    byte[] proto = new byte[req.getSerializedSize()];
+    CodedOutputStream out = CodedOutputStream.newInstance(proto);
+    newJsonFactory().newReader().newTranscoder().transcodeBidRequest(json, 0, json.length, out);
+    out.checkNoSpaceLeft();
+    assertEquals(req, BidRequest.parseFrom(proto));
+  }
+
+  @Test
+  public void testBinaryFormats() throws IOException {
+    BidRequest req = newBidRequest().setSite(newSite()).build();
+    BidResponse resp = newBidResponse().build();
+    byte[] text = newJsonFactory().newWriter().writeBidRequestBytes(req);
+
+    for (JsonFactory jf : asList(
+        OpenRtbJsonFormats.newSmileFactory(), OpenRtbJsonFormats.newCborFactory())) {
+      OpenRtbJsonFactory jsonFactory = newJsonFactory().setJsonFactory(jf);
+      OpenRtbJsonReader reader = jsonFactory.newReader();
+      OpenRtbJsonWriter writer = jsonFactory.newWriter();
+
+      byte[] binary = writer.writeBidRequestBytes(req);
+      assertTrue(binary.length < text.length);
+      assertEquals(req, reader.readBidRequest(binary, 0, binary.length));
+      assertEquals(req, reader.readBidRequest(new ByteArrayInputStream(binary)));
+      byte[] respBinary = writer.writeBidResponseBytes(resp);
+      assertEquals(resp, reader.readBidResponse(respBinary, 0, respBinary.length));
+
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      CodedOutputStream out = CodedOutputStream.newInstance(os);
+      reader.newTranscoder().transcodeBidRequest(binary, 0, binary.length, out);
+      out.flush();
+      ExtensionRegistry registry = ExtensionRegistry.newInstance();
+      TestExt.registerAllExtensions(registry);
+      assertEquals(req, BidRequest.parseFrom(os.toByteArray(), registry));
+    }
+  }
+
+  @Test
+  public void testBinaryFormats_nativeString() throws IOException {
+    // Native requests embedded as text JSON are still accepted
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    JsonGenerator gen = OpenRtbJsonFormats.newSmileFactory().createGenerator(os);
+    gen.writeStartObject();
+    gen.writeStringField("id", "0");
+    gen.writeArrayFieldStart("imp");
+    gen.writeStartObject();
+    gen.writeStringField("id", "1");
+    gen.writeObjectFieldStart("native");
+    gen.writeStringField("request", "{\"ver\":\"1\"}");
+    gen.writeStringField("ver", "1");
+    gen.writeEndObject();
+    gen.writeEndObject();
+    gen.writeEndArray();
+    gen.writeEndObject();
+    gen.close();
+
+    OpenRtbJsonFactory jsonFactory =
+        OpenRtbJsonFactory.create().setJsonFactory(OpenRtbJsonFormats.newSmileFactory());
+    assertEquals(
+        BidRequest.newBuilder().setId("0")
+            .addImp(Impression.newBuilder().setId("1")
+                .setNative(Native.newBuilder()
+                    .setRequest(NativeRequest.newBuilder().setVer("1"))
+                    .setVer("1")))
+            .build(),
+        jsonFactory.newReader().readBidRequest(os.toByteArray(), 0, os.size()));
+  }
+
+  @Test
+  public void testWriteBytes() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    OpenRtbJsonWriter writer = jsonFactory.newWriter();
+    BidRequest req = newBidRequest().setSite(newSite()).build();
+    BidResponse resp = newBidResponse().build();
+    byte[] jsonReq = writer.writeBidRequest(req).getBytes(Charsets.UTF_8);
+    byte[] jsonResp = writer.writeBidResponse(resp).getBytes(Charsets.UTF_8);
+
+    assertArrayEquals(jsonReq, writer.writeBidRequestBytes(req));
+    assertArrayEquals(jsonResp, writer.writeBidResponseBytes(resp));
+
+    for (ByteBuffer buf : asList(ByteBuffer.allocate(PAD + jsonReq.length + jsonResp.length),
+        ByteBuffer.allocateDirect(PAD + jsonReq.length + jsonResp.length))) {
+      buf.position(PAD);
+      writer.writeBidRequest(req, buf);
+      writer.writeBidResponse(resp, buf);
+      assertFalse(buf.hasRemaining());
+      buf.position(PAD);
+      byte[] written = new byte[jsonReq.length];
+      buf.get(written);
+      assertArrayEquals(jsonReq, written);
+      written = new byte[jsonResp.length];
+      buf.get(written);
+      assertArrayEquals(jsonResp, written);
+    }
+  }
+
+  @Test
+  public void testWriteBytes_overflow() throws IOException {
+    OpenRtbJsonWriter writer = newJsonFactory().newWriter();
+    ByteBuffer buf = ByteBuffer.allocate(PAD + 10);
+    buf.position(PAD);
+    try {
+      writer.writeBidResponse(newBidResponse().build(), buf);
+      fail();
+    } catch (BufferOverflowException e) {
+      assertEquals(PAD, buf.position());
+    }
+    try {
+      writer.writeBidRequest(newBidRequest().setSite(newSite()).build(), buf);
+      fail();
+    } catch (BufferOverflowException e) {
+      assertEquals(PAD, buf.position());
+    }
+  }
+
+  @Test
+  public void testRequest_internedFieldNames() throws IOException {
+    JsonFactory jf = new JsonFactory().disable(JsonFactory.Feature.INTERN_FIELD_NAMES);
+    OpenRtbJsonFactory jsonFactory = newJsonFactory().setJsonFactory(jf);
+    JsonFactory readerJf = jsonFactory.newReader().factory().getJsonFactory();
+
+    assertTrue(readerJf.isEnabled(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES));
+    assertTrue(readerJf.isEnabled(JsonFactory.Feature.INTERN_FIELD_NAMES));
+    assertFalse(jf.isEnabled(JsonFactory.Feature.INTERN_FIELD_NAMES));
+    assertSame(jf, jsonFactory.newWriter().factory().getJsonFactory());
+    testRequest(jsonFactory, newBidRequest().setSite(newSite()).build());
+  }
+
+  @Test
+  public void testRequest_unknownFields() throws IOException {
+    String test = "{\"id\":\"0\",\"x1\":{\"id\":\"1\",\"imp\":[{\"id\":\"2\"}]},"
+        + "\"imp\":[{\"id\":\"1\",\"x2\":[[1,{}],{\"id\":\"3\"}],"
+        + "\"banner\":{\"x3\":{\"w\":5,\"h\":[]},\"w\":300,\"x4\":\"junk\"}}],"
+        + "\"x5\":[],\"at\":1}";
+    BidRequest req = BidRequest.newBuilder()
+        .setId("0")
+        .addImp(Impression.newBuilder()
+            .setId("1")
+            .setBanner(Banner.newBuilder().setW(300)))
+        .setAt(1)
+        .build();
+    assertEquals(req, newJsonFactory().newReader().readBidRequest(test));
+  }
+
+  @Test
+  public void testRequest_unknownFieldsOverride() throws IOException {
+    final List<String> unknown = new ArrayList<>();
+    OpenRtbJsonReader reader = new OpenRtbJsonReader(newJsonFactory()) {
+      @Override protected void readUnknownField(JsonParser par, String path, String fieldName)
+          throws IOException {
+        unknown.add(path + '.' + fieldName);
+        super.readUnknownField(par, path, fieldName);
+      }
+    };
+    reader.readBidRequest("{\"id\":\"0\",\"x1\":{\"a\":1},"
+        + "\"device\":{\"geo\":{\"x2\":[]}},\"user\":{\"geo\":{\"x3\":1}}}");
+    assertEquals(asList("BidRequest.x1", "BidRequest.device.geo.x2", "BidRequest.user.geo.x3"),
+        unknown);
+  }
+
+  @Test
+  public void testFrozenFactory() {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    for (OpenRtbJsonFactory frozen : new OpenRtbJsonFactory[] {
+        jsonFactory.newReader().factory(), jsonFactory.newWriter().factory(),
+        jsonFactory.newNativeReader().factory(), jsonFactory.newNativeWriter().factory() }) {
+      try {
+        frozen.setJsonFactory(new JsonFactory());
+        fail();
+      } catch (IllegalStateException e) {
+      }
+      try {
+        frozen.setProjection("BidRequest.imp");
+        fail();
+      } catch (IllegalStateException e) {
+      }
+      try {
+        frozen.setMetricRegistry(new MetricRegistry());
+        fail();
+      } catch (IllegalStateException e) {
+      }
+      try {
+        frozen.register(new Test1Reader<BidRequest.Builder>(TestExt.testRequest1), "BidRequest");
+        fail();
+      } catch (IllegalStateException e) {
+      }
+      try {
+        frozen.register(new Test1Writer(), Test1.class, "BidRequest");
+        fail();
+      } catch (IllegalStateException e) {
+      }
+      try {
+        frozen.register(new Test1Writer(), TestExt.testRequest1, "BidRequest");
+        fail();
+      } catch (IllegalStateException e) {
+      }
+    }
+    // The original factory can still be modified
+    jsonFactory.setProjection("BidRequest.imp");
+  }
+
+  @Test
+  public void testRequest_nativeObject() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    OpenRtbJsonReader reader = jsonFactory.newReader();
+    assertSame(reader.factory().newNativeReader(), reader.factory().newNativeReader());
+    OpenRtbJsonWriter writer = jsonFactory.newWriter();
+    assertSame(writer.factory().newNativeWriter(), writer.factory().newNativeWriter());
+
+    String jsonString = "{\"id\":\"0\",\"imp\":[{\"id\":\"1\",\"native\":"
+        + "{\"request\":\"{\\\"ver\\\":\\\"1\\\",\\\"plcmtcnt\\\":2}\",\"ver\":\"1.0\"}}]}";
+    String jsonObject = "{\"id\":\"0\",\"imp\":[{\"id\":\"1\",\"native\":"
+        + "{\"request\":{\"ver\":\"1\",\"plcmtcnt\":2},\"ver\":\"1.0\"}}]}";
+    BidRequest req = BidRequest.newBuilder()
+        .setId("0")
+        .addImp(Impression.newBuilder()
+            .setId("1")
+            .setNative(Native.newBuilder()
+                .setRequest(NativeRequest.newBuilder().setVer("1").setPlcmtcnt(2))
+                .setVer("1.0")))
+        .build();
+    assertEquals(req, reader.readBidRequest(jsonString));
+    assertEquals(req, reader.readBidRequest(jsonObject));
+    assertEquals(jsonString, writer.writeBidRequest(req));
+  }
+
+  @Test
+  public void testRequest_bigNativeRequest() throws IOException {
+    // Bigger than the per-thread native buffer keeps, so it's dropped after each use
+    char[] ver = new char[100000];
+    Arrays.fill(ver, '1');
+    BidRequest req = BidRequest.newBuilder()
+        .setId("0")
+        .addImp(Impression.newBuilder()
+            .setId("1")
+            .setNative(Native.newBuilder()
+                .setRequest(NativeRequest.newBuilder().setVer(new String(ver)))
+                .setVer("1.0")))
+        .build();
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    String json = jsonFactory.newWriter().writeBidRequest(req);
+    assertEquals(json, jsonFactory.newWriter().writeBidRequest(req));
+    assertEquals(req, jsonFactory.newReader().readBidRequest(json));
+  }
+
+  @Test
+  public void testRequest_lazy() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    OpenRtbJsonReader reader = jsonFactory.newReader();
+    BidRequest req = newBidRequest().setSite(newSite()).build();
+    byte[] jsonReq = (" \n" + jsonFactory.newWriter().writeBidRequest(req))
+        .getBytes(Charsets.UTF_8);
+    byte[] padded = pad(jsonReq);
+
+    LazyBidRequest lazy = reader.readLazyBidRequest(padded, PAD, jsonReq.length);
+    assertFalse(lazy.getRequest().hasUser());
+    assertFalse(lazy.getRequest().getSite().hasContent());
+    assertFalse(lazy.getRequest().getImp(2).getNative().hasRequest());
+    assertEquals(req.getDevice(), lazy.getRequest().getDevice());
+    assertTrue(lazy.hasUser());
+    assertEquals(req.getUser(), lazy.getUser());
+    assertSame(lazy.getUser(), lazy.getUser());
+    assertTrue(lazy.hasSiteContent());
+    assertEquals(req.getSite().getContent(), lazy.getSiteContent());
+    assertFalse(lazy.hasAppContent());
+    assertFalse(lazy.hasNativeRequest(0));
+    assertTrue(lazy.hasNativeRequest(2));
+    assertEquals(req.getImp(2).getNative().getRequest(), lazy.getNativeRequest(2));
+    assertEquals(req, lazy.build());
+
+    req = newBidRequest().setApp(newApp()).build();
+    jsonReq = jsonFactory.newWriter().writeBidRequest(req).getBytes(Charsets.UTF_8);
+    lazy = reader.readLazyBidRequest(jsonReq, 0, jsonReq.length);
+    assertEquals(req, lazy.build());
+    assertEquals(req.getApp().getContent(), lazy.getAppContent());
+  }
+
+  @Test
+  public void testRequest_projection() throws IOException {
+    BidRequest req = newBidRequest().setSite(newSite()).build();
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    String jsonReq = jsonFactory.newWriter().writeBidRequest(req);
+    OpenRtbJsonReader reader = jsonFactory
+        .setProjection("BidRequest.imp.banner", "BidRequest.imp.bidfloor",
+            "BidRequest.device.geo", "BidRequest.tmax", "BidRequest.site.content.title")
+        .newReader();
+
+    BidRequest.Builder expected = BidRequest.newBuilder()
+        .setId(req.getId())
+        .setTmax(req.getTmax())
+        .setDevice(Device.newBuilder().setGeo(req.getDevice().getGeo()))
+        .setSite(Site.newBuilder().setContent(Content.newBuilder()
+            .setTitle(req.getSite().getContent().getTitle())));
+    for (Impression imp : req.getImpList()) {
+      Impression.Builder expectedImp = expected.addImpBuilder().setId(imp.getId());
+      if (imp.hasBanner()) {
+        expectedImp.setBanner(imp.getBanner());
+      }
+      if (imp.hasBidfloor()) {
+        expectedImp.setBidfloor(imp.getBidfloor());
+      }
+    }
+    assertEquals(expected.build(), reader.readBidRequest(jsonReq));
+
+    // Responses are not restricted by a projection that only contains request paths
+    BidResponse resp = newBidResponse().build();
+    assertEquals(resp, reader.readBidResponse(jsonFactory.newWriter().writeBidResponse(resp)));
+
+    // Removing the projection doesn't affect readers already created
+    assertEquals(req, jsonFactory.setProjection().newReader().readBidRequest(jsonReq));
+    assertEquals(expected.build(), reader.readBidRequest(jsonReq));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequest_badProjection() {
+    OpenRtbJsonFactory.create().setProjection("BidRequest.imp.banner.wx");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequest_nativeProjection() {
+    OpenRtbJsonFactory.create().setProjection("BidRequest.imp.native.request.assets");
+  }
+
   @Test(expected = JsonParseException.class)
   public void testBadArrayField() throws IOException, JsonParseException {
     String test = // based on Issue #10; sample message from SpotXchange with non-array "cat"
@@ -193,6 +793,158 @@ public class OpenRtbJsonTest {
     newJsonFactory().newReader().readBidRequest(test);
   }
 
+  @Test
+  public void testMetrics() throws IOException {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    OpenRtbJsonFactory jsonFactory = newJsonFactory().setMetricRegistry(metricRegistry, 1);
+    String reader = OpenRtbJsonReader.class.getName();
+    String writer = OpenRtbJsonWriter.class.getName();
+    BidRequest req = newBidRequest().build();
+    byte[] jsonReq = jsonFactory.newWriter().writeBidRequestBytes(req);
+    assertEquals(req, jsonFactory.newReader().readBidRequest(jsonReq, 0, jsonReq.length));
+    assertEquals(1, metricRegistry.timer(writer + ".bid-request.time").getCount());
+    assertEquals(jsonReq.length,
+        metricRegistry.histogram(writer + ".bid-request.size").getSnapshot().getMax());
+    assertEquals(1, metricRegistry.timer(reader + ".bid-request.time").getCount());
+    assertEquals(jsonReq.length,
+        metricRegistry.histogram(reader + ".bid-request.size").getSnapshot().getMax());
+
+    // Reads from a JsonParser are measured like writes to a JsonGenerator,
+    // including the codec's streams
+    OpenRtbJsonCodec codec = new OpenRtbJsonCodec(jsonFactory);
+    assertEquals(req, codec.readBidRequest(new ByteArrayInputStream(jsonReq)));
+    assertEquals(2, metricRegistry.timer(reader + ".bid-request.time").getCount());
+    codec.writeBidRequest(req, new ByteArrayOutputStream());
+    assertEquals(2, metricRegistry.timer(writer + ".bid-request.time").getCount());
+
+    // Native requests nested in a bid request are not top-level operations
+    BidRequest nativeReq = req.toBuilder()
+        .setImp(0, req.getImp(0).toBuilder().setNative(Native.newBuilder()
+            .setRequest(NativeRequest.newBuilder().setVer("1"))
+            .setVer("1.0")))
+        .build();
+    byte[] jsonNativeReq = codec.writeBidRequest(nativeReq);
+    assertEquals(nativeReq, codec.readBidRequest(jsonNativeReq, 0, jsonNativeReq.length));
+    String nativeName = OpenRtbNativeJsonReader.class.getName() + ".native-request.time";
+    assertEquals(0, metricRegistry.timer(nativeName).getCount());
+    nativeName = OpenRtbNativeJsonWriter.class.getName() + ".native-request.time";
+    assertEquals(0, metricRegistry.timer(nativeName).getCount());
+    assertEquals(3, metricRegistry.timer(reader + ".bid-request.time").getCount());
+    assertEquals(3, metricRegistry.timer(writer + ".bid-request.time").getCount());
+
+    // Unknown fields and failures, without extension readers
+    OpenRtbJsonReader plainReader =
+        OpenRtbJsonFactory.create().setMetricRegistry(metricRegistry, 1).newReader();
+    plainReader.readBidRequest("{\"id\":\"1\",\"x\":1,\"imp\":[{\"id\":\"1\",\"y\":[2]}]}");
+    String unknown = AbstractOpenRtbJsonReader.class.getName() + ".unknown-field.";
+    assertEquals(1, metricRegistry.counter(unknown + "BidRequest").getCount());
+    assertEquals(1, metricRegistry.counter(unknown + "BidRequest.imp").getCount());
+    try {
+      plainReader.readBidRequest("{\"id\":");
+      fail();
+    } catch (JsonParseException e) {
+    }
+    try {
+      plainReader.readBidRequest("{}");
+      fail();
+    } catch (UninitializedMessageException e) {
+    }
+    try {
+      plainReader.readBidRequest("{\"id\":\"1\",\"ext\":{\"x\":1}}");
+      fail();
+    } catch (IOException e) {
+    }
+    String failure = reader + ".bid-request.failure.";
+    assertEquals(1, metricRegistry.counter(failure + "syntax").getCount());
+    assertEquals(1, metricRegistry.counter(failure + "missing-required").getCount());
+    assertEquals(1, metricRegistry.counter(failure + "io").getCount());
+    assertEquals(1, metricRegistry.counter(AbstractOpenRtbJsonReader.class.getName()
+        + ".unhandled-extension.BidRequest").getCount());
+    // "{}" is read successfully, but then can't be built
+    assertEquals(5, metricRegistry.timer(reader + ".bid-request.time").getCount());
+  }
+
+  @Test
+  public void testSnippetWriter() throws IOException {
+    BidRequest req = BidRequest.newBuilder()
+        .setId("req1")
+        .addCur("USD")
+        .addImp(Impression.newBuilder().setId("imp1"))
+        .addImp(Impression.newBuilder().setId("imp2"))
+        .build();
+    BidResponse.Builder resp = BidResponse.newBuilder()
+        .addSeatbid(SeatBid.newBuilder()
+            .setSeat("seat1")
+            .addBid(Bid.newBuilder()
+                .setId("bid1")
+                .setImpid("imp1")
+                .setPrice(10000)
+                .setAdid("ad1")
+                .setAdm("<a href='%{http://click?p=" + OpenRtbMacros.AUCTION_PRICE.key()
+                    + "&id=" + OpenRtbMacros.AUCTION_BID_ID.key() + "}%'>ad</a>")
+                .setCid("c-" + OpenRtbMacros.AUCTION_SEAT_ID.key())
+                .setCrid("cr-" + OpenRtbMacros.AUCTION_ID.key())
+                .setDealid("deal-" + OpenRtbMacros.AUCTION_CURRENCY.key())
+                .setIurl("http://iurl?ad=" + OpenRtbMacros.AUCTION_AD_ID.key())
+                .setNurl("http://nurl?imp=" + OpenRtbMacros.AUCTION_IMP_ID.key())))
+        .addSeatbid(SeatBid.newBuilder()
+            .setSeat("seat2")
+            .addBid(Bid.newBuilder()
+                .setId("bid2")
+                .setImpid("imp2")
+                .setPrice(20000)
+                .setNurl("http://nurl?seat=" + OpenRtbMacros.AUCTION_SEAT_ID.key()
+                    + "&imp=" + OpenRtbMacros.AUCTION_IMP_ID.key())));
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    OpenRtbSnippetProcessor processor = new OpenRtbSnippetProcessor();
+    OpenRtbSnippetJsonWriter snippetWriter = jsonFactory.newSnippetWriter(processor);
+    testSnippetWriter(jsonFactory, snippetWriter, processor, req, resp);
+
+    // Processors that override other methods than the StringBuilder variant are still used
+    OpenRtbSnippetProcessor stringProcessor = new OpenRtbSnippetProcessor() {
+      @Override public String process(SnippetProcessorContext ctx, String snippet) {
+        return super.process(ctx, snippet).replace("http:", "https:");
+      }
+    };
+    testSnippetWriter(jsonFactory, jsonFactory.newSnippetWriter(stringProcessor),
+        stringProcessor, req, resp);
+    OpenRtbSnippetProcessor responseProcessor = new OpenRtbSnippetProcessor() {
+      @Override public void process(BidRequest request, BidResponse.Builder response) {
+        super.process(request, response);
+        response.setBidid("processed");
+      }
+    };
+    testSnippetWriter(jsonFactory, jsonFactory.newSnippetWriter(responseProcessor),
+        responseProcessor, req, resp);
+
+    // Bid ids with macros are processed before the fields that use them
+    resp.getSeatbidBuilder(1).getBidBuilder(0)
+        .setId("bid-" + OpenRtbMacros.AUCTION_ID.key())
+        .setIurl("http://iurl?bid=" + OpenRtbMacros.AUCTION_BID_ID.key());
+    testSnippetWriter(jsonFactory, snippetWriter, processor, req, resp);
+  }
+
+  static void testSnippetWriter(OpenRtbJsonFactory jsonFactory,
+      OpenRtbSnippetJsonWriter snippetWriter, OpenRtbSnippetProcessor processor,
+      BidRequest req, BidResponse.Builder resp) throws IOException {
+    BidResponse.Builder processed = resp.clone();
+    processor.process(req, processed);
+    String expected = jsonFactory.newWriter().writeBidResponse(processed.build());
+    assertEquals(expected, snippetWriter.writeBidResponse(req, resp.build()));
+    assertArrayEquals(expected.getBytes(Charsets.UTF_8),
+        snippetWriter.writeBidResponseBytes(req, resp.build()));
+  }
+
+  /**
+   * Copies some bytes in the middle of a larger array, surrounded by junk.
+   */
+  static byte[] pad(byte[] bytes) {
+    byte[] padded = new byte[PAD + bytes.length + PAD];
+    Arrays.fill(padded, (byte) '}');
+    System.arraycopy(bytes, 0, padded, PAD, bytes.length);
+    return padded;
+  }
+
   static void testRequest(OpenRtbJsonFactory jsonFactory, BidRequest req) throws IOException {
     String jsonReq = jsonFactory.newWriter().writeBidRequest(req);
     logger.info(jsonReq);
@@ -207,7 +959,7 @@ public class OpenRtbJsonTest {
     assertEquals(resp, resp2);
   }
 
-  static OpenRtbJsonFactory newJsonFactory() {
+  public static OpenRtbJsonFactory newJsonFactory() {
     return OpenRtbJsonFactory.create()
         .setJsonFactory(new JsonFactory())
         // BidRequest Readers
@@ -253,7 +1005,7 @@ public class OpenRtbJsonTest {
         .register(new Test2Writer(), Test2.class, "BidRequest", "BidResponse");
   }
 
-  static BidRequest.Builder newBidRequest() {
+  public static BidRequest.Builder newBidRequest() {
     return BidRequest.newBuilder()
         .setId("3031323334353637")
         .addImp(Impression.newBuilder()
@@ -403,7 +1155,7 @@ public class OpenRtbJsonTest {
         .setExtension(TestExt.testRequest1, test1);
   }
 
-  static Site.Builder newSite() {
+  public static Site.Builder newSite() {
     return Site.newBuilder()
         .setId("88")
         .setName("CNN")
@@ -471,7 +1223,7 @@ public class OpenRtbJsonTest {
         .setExtension(TestExt.testApp, test1);
   }
 
-  static BidResponse.Builder newBidResponse() {
+  public static BidResponse.Builder newBidResponse() {
     return BidResponse.newBuilder()
         .setId("resp1")
         .addSeatbid(SeatBid.newBuilder()
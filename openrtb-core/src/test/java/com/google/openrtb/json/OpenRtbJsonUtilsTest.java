@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openrtb.json;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link OpenRtbJsonUtils}.
+ */
+public class OpenRtbJsonUtilsTest {
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  @Test
+  public void testDoubleValue() throws IOException {
+    String[] values = {
+        "0", "-0", "1", "1.5", "0.01", "-12.345", "0.1", "0.3", "1.15", "2.675", "99999.99",
+        "123456789012345", "1234567890.12345", "9007199254740993", "0.000000000000000000001",
+        "1e3", "1.5E-2", "-2.5e+10", "1234567890123456789", "4.9e-324", "1.7976931348623157e308" };
+    for (String value : values) {
+      assertEquals(value, Double.parseDouble(value), getDoubleValue(value), 0.0);
+      assertEquals(value, Double.parseDouble(value), getDoubleValue('"' + value + '"'), 0.0);
+    }
+    assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(getDoubleValue("-0.0")));
+  }
+
+  @Test
+  public void testDoubleValue_exactMantissaLimit() throws IOException {
+    // 16-18 digits, with the digits up to 2^53 (converted directly) or just above it
+    String[] values = {
+        "9007199254740992", "9007199254740993", "-9007199254740993", "9007199254740.992",
+        "9007199254740.993", "0.9007199254740992", "0.9007199254740993", "0.09007199254740992",
+        "0.09007199254740993", "9.007199254740991", "12345678901234567", "1234567890123456.7",
+        "0.00000000000000001", "0.000000000000000001", "0.1234567890123456" };
+    for (String value : values) {
+      assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+          Double.doubleToLongBits(getDoubleValue(value)));
+    }
+  }
+
+  @Test
+  public void testMicrosValue() throws IOException {
+    assertEquals(0L, getMicrosValue("0"));
+    assertEquals(1000000L, getMicrosValue("1"));
+    assertEquals(1150000L, getMicrosValue("1.15"));
+    assertEquals(1150000L, getMicrosValue("\"1.15\""));
+    assertEquals(-2675000L, getMicrosValue("-2.675"));
+    assertEquals(10L, getMicrosValue("0.00001"));
+    assertEquals(1L, getMicrosValue("0.0000005"));
+    assertEquals(0L, getMicrosValue("0.0000004999"));
+    assertEquals(-1L, getMicrosValue("-0.0000005"));
+    assertEquals(1234567L, getMicrosValue("1.2345665"));
+    assertEquals(1500L, getMicrosValue("1.5e-3"));
+    assertEquals(1000000000000000000L, getMicrosValue("1000000000000"));
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void testMicrosValue_overflow() throws IOException {
+    getMicrosValue("10000000000000");
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void testMicrosValue_notNumber() throws IOException {
+    getMicrosValue("\"junk\"");
+  }
+
+  static double getDoubleValue(String json) throws IOException {
+    return OpenRtbJsonUtils.getDoubleValue(parser(json));
+  }
+
+  static long getMicrosValue(String json) throws IOException {
+    return OpenRtbJsonUtils.getMicrosValue(parser(json));
+  }
+
+  static JsonParser parser(String json) throws IOException {
+    JsonParser par = jsonFactory.createParser("[" + json + "]");
+    par.nextToken();
+    par.nextToken();
+    return par;
+  }
+}
@@ -19,6 +19,7 @@ package com.google.openrtb.json;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 
+import com.google.common.base.Charsets;
 import com.google.openrtb.OpenRtbNative.NativeRequest;
 import com.google.openrtb.OpenRtbNative.NativeResponse;
 import com.google.openrtb.Test.Test1;
@@ -32,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Tests for {@link OpenRtbJsonWriter}.
@@ -51,6 +53,49 @@ public class OpenRtbNativeJsonTest {
     testResponse(newJsonFactory(), newNativeResponse().build());
   }
 
+  @Test
+  public void testRequest_bytes() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    NativeRequest req = newNativeRequest().build();
+    byte[] jsonReq = jsonFactory.newNativeWriter().writeNativeRequest(req).getBytes(Charsets.UTF_8);
+    byte[] padded = OpenRtbJsonTest.pad(jsonReq);
+    OpenRtbNativeJsonReader reader = jsonFactory.newNativeReader();
+
+    assertEquals(req, reader.readNativeRequest(padded, OpenRtbJsonTest.PAD, jsonReq.length));
+    assertEquals(req, reader.readNativeRequest(
+        ByteBuffer.wrap(padded, OpenRtbJsonTest.PAD, jsonReq.length)));
+    ByteBuffer directBuf = ByteBuffer.allocateDirect(jsonReq.length);
+    directBuf.put(jsonReq).flip();
+    assertEquals(req, reader.readNativeRequest(directBuf));
+  }
+
+  @Test
+  public void testResponse_bytes() throws IOException {
+    OpenRtbJsonFactory jsonFactory = newJsonFactory();
+    NativeResponse resp = newNativeResponse().build();
+    byte[] jsonResp = jsonFactory.newNativeWriter().writeNativeResponse(resp)
+        .getBytes(Charsets.UTF_8);
+    byte[] padded = OpenRtbJsonTest.pad(jsonResp);
+    OpenRtbNativeJsonReader reader = jsonFactory.newNativeReader();
+
+    assertEquals(resp, reader.readNativeResponse(padded, OpenRtbJsonTest.PAD, jsonResp.length));
+    assertEquals(resp, reader.readNativeResponse(
+        ByteBuffer.wrap(padded, OpenRtbJsonTest.PAD, jsonResp.length)));
+  }
+
+  @Test
+  public void testRequest_unknownFields() throws IOException {
+    String test = "{\"ver\":\"1\",\"x1\":{\"assets\":[{\"id\":2}]},\"assets\":[{\"id\":1,"
+        + "\"x2\":[[1],{\"id\":3}],\"title\":{\"x3\":{\"len\":5},\"len\":10}}],\"x4\":[]}";
+    NativeRequest req = NativeRequest.newBuilder()
+        .setVer("1")
+        .addAssets(NativeRequest.Asset.newBuilder()
+            .setId(1)
+            .setTitle(NativeRequest.Asset.Title.newBuilder().setLen(10)))
+        .build();
+    assertEquals(req, newJsonFactory().newNativeReader().readNativeRequest(test));
+  }
+
   static void testRequest(OpenRtbJsonFactory jsonFactory, NativeRequest req) throws IOException {
     String jsonReq = jsonFactory.newNativeWriter().writeNativeRequest(req);
     logger.info(jsonReq);
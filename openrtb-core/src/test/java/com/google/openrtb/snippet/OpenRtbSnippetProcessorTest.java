@@ -93,6 +93,31 @@ public class OpenRtbSnippetProcessorTest {
     assertEquals("http://nurl?id=imp1", bid.getNurl());
   }
 
+  @Test
+  public void testProcess_manySeats() {
+    BidRequest req = BidRequest.newBuilder()
+        .setId("req1")
+        .addImp(Impression.newBuilder().setId("imp1"))
+        .build();
+    BidResponse.Builder resp = BidResponse.newBuilder();
+    for (int i = 0; i < 4000; ++i) {
+      resp.addSeatbid(SeatBid.newBuilder()
+          .setSeat("seat" + i)
+          .addBid(Bid.newBuilder()
+              .setId("bid" + i)
+              .setImpid("imp1")
+              .setCid("c-" + OpenRtbMacros.AUCTION_SEAT_ID.key())
+              .setNurl("http://nurl?id=" + OpenRtbMacros.AUCTION_IMP_ID.key())
+              .setPrice(10000)));
+    }
+    new OpenRtbSnippetProcessor().process(req, resp);
+    for (int i = 0; i < 4000; ++i) {
+      Bid bid = resp.getSeatbid(i).getBid(0);
+      assertEquals("c-seat" + i, bid.getCid());
+      assertEquals("http://nurl?id=imp1", bid.getNurl());
+    }
+  }
+
   @Test
   public void testNoData() {
     BidRequest request = BidRequest.newBuilder()
@@ -18,8 +18,10 @@ package com.google.openrtb.snippet;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
+import com.google.common.collect.ImmutableList;
 import com.google.openrtb.OpenRtb.BidRequest;
 import com.google.openrtb.OpenRtb.BidRequest.Impression;
 import com.google.openrtb.OpenRtb.BidResponse;
@@ -28,6 +30,9 @@ import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Tests for {@link SnippetProcessor}.
  */
@@ -58,6 +63,53 @@ public class SnippetProcessorTest {
     assertSame(bid, ctx.bid());
   }
 
+  @Test
+  public void testContextLookups() {
+    // Small and large enough to use the indexes
+    for (int count : new int[] { 1, 20 }) {
+      BidRequest.Builder request = BidRequest.newBuilder().setId("1");
+      BidResponse.Builder response = BidResponse.newBuilder();
+      for (int i = 0; i < count; ++i) {
+        request.addImp(Impression.newBuilder().setId("imp" + i));
+        response.addSeatbid(SeatBid.newBuilder().setSeat("seat" + i)
+            .addBid(Bid.newBuilder().setId("bid" + i).setImpid("imp" + i).setPrice(1)));
+      }
+      Bid.Builder firstBid = response.getSeatbidBuilder(0).getBidBuilder(0);
+      Bid.Builder lastBid = response.getSeatbidBuilder(count - 1).getBidBuilder(0);
+      SnippetProcessorContext ctx = new SnippetProcessorContext(request, response, firstBid);
+      SnippetProcessorContext lastCtx = ctx.forBid(lastBid);
+      assertSame(lastBid, lastCtx.bid());
+      assertSame(response, lastCtx.response());
+      assertEquals("imp0", ctx.impWithId("imp0").getId());
+      assertEquals("imp" + (count - 1), lastCtx.impWithId(lastBid.getImpid()).getId());
+      assertNull(ctx.impWithId("none"));
+      assertEquals("seat0", ctx.seatOf(firstBid).getSeat());
+      assertEquals("seat" + (count - 1), lastCtx.seatOf(lastBid).getSeat());
+      assertNull(ctx.seatOf(Bid.newBuilder()));
+    }
+  }
+
+  @Test
+  public void testContextLookups_bidBuilders() {
+    BidResponse.Builder response = BidResponse.newBuilder();
+    for (int i = 0; i < 20; ++i) {
+      response.addSeatbid(SeatBid.newBuilder().setSeat("seat" + i)
+          .addBid(Bid.newBuilder().setId("bid" + i).setImpid("1").setPrice(1)));
+    }
+    // Bid builders replace the bid objects, so they're all created before the context
+    for (SeatBid.Builder seat : response.getSeatbidBuilderList()) {
+      for (int i = 0; i < seat.getBidCount(); ++i) {
+        seat.getBidBuilder(i);
+      }
+    }
+    SnippetProcessorContext ctx = new SnippetProcessorContext(
+        req, response, response.getSeatbidBuilder(0).getBidBuilder(0));
+    for (int i = 0; i < 20; ++i) {
+      Bid.Builder bid = response.getSeatbidBuilder(i).getBidBuilder(0);
+      assertEquals("seat" + i, ctx.forBid(bid).seatOf(bid).getSeat());
+    }
+  }
+
   @Test
   public void testNullProcessor() {
     SnippetProcessorContext ctx = new SnippetProcessorContext(req, resp, bid);
@@ -91,6 +143,15 @@ public class SnippetProcessorTest {
         process("%{%{%{%{%{%{%{%{%{%{!}%}%}%}%}%}%}%}%}%}%"));
   }
 
+  @Test
+  public void testUrlEncodingSpecialChars() {
+    String special = "a b+c%d/\u00e9\u20ac\ud83d\ude00";
+    assertEquals(esc(special), process("%{" + special + "}%"));
+    assertEquals(esc2(special), process("%{%{" + special + "}%}%"));
+    assertEquals(esc(esc2(special)) + "-" + esc(special),
+        process("%{%{%{" + special + "}%}%-" + special + "}%"));
+  }
+
   @Test
   public void testUrlEncodingBad() {
     assertEquals("bad!}%", process("bad!}%"));
@@ -107,6 +168,65 @@ public class SnippetProcessorTest {
     assertEquals("${UNKNOWN_MACRO}", process("${UNKNOWN_MACRO}"));
   }
 
+  @Test
+  public void testTemplates() {
+    SnippetProcessorContext ctx = new SnippetProcessorContext(req, resp, bid);
+    for (SnippetProcessor processor : new SnippetProcessor[] {
+        new TestProcessor(0), new TestProcessor(4096) }) {
+      // Twice, for the uncached and cached templates
+      for (int i = 0; i < 2; ++i) {
+        assertEquals("a-test-b", processor.process(ctx, "a-${TEST}-b"));
+        assertEquals("testtest-${X}", processor.process(ctx, "${TEST}${TEST}-${X}"));
+        assertEquals("${UNKNOWN}test", processor.process(ctx, "${UNKNOWN}${TEST}"));
+        assertEquals(esc("test/") + "$", processor.process(ctx, "%{${TEST}/}%$"));
+        // Macros that expand into other macros
+        assertEquals("(test)", processor.process(ctx, "${NESTED}"));
+        assertEquals("test", processor.process(ctx, "${TE${PART}"));
+      }
+    }
+  }
+
+  @Test
+  public void testTemplates_longSnippet() {
+    // Too long to be cached, processed without a template
+    SnippetProcessorContext ctx = new SnippetProcessorContext(req, resp, bid);
+    SnippetProcessor processor = new TestProcessor(SnippetProcessor.DEFAULT_TEMPLATE_CACHE_BYTES);
+    char[] filler = new char[SnippetProcessor.MAX_CACHED_SNIPPET_LENGTH];
+    Arrays.fill(filler, 'x');
+    String snippet = new String(filler) + "${TEST}";
+    for (int i = 0; i < 2; ++i) {
+      assertEquals(new String(filler) + "test", processor.process(ctx, snippet));
+      StringBuilder out = new StringBuilder();
+      processor.process(ctx, snippet, out);
+      assertEquals(new String(filler) + "test", out.toString());
+    }
+  }
+
+  @Test
+  public void testTemplates_overlappingMacros() {
+    SnippetProcessorContext ctx = new SnippetProcessorContext(req, resp, bid);
+    for (final int templateCacheBytes : new int[] { 0, 4096 }) {
+      SnippetProcessor processor = new SnippetProcessor(templateCacheBytes) {
+        @Override protected List<SnippetMacroType> registerMacros() {
+          return ImmutableList.<SnippetMacroType>copyOf(OverlappingMacros.values());
+        }
+
+        @Override protected void processMacroAt(
+            SnippetProcessorContext ctx, StringBuilder sb, SnippetMacroType macroDef) {
+          sb.append('[').append(((OverlappingMacros) macroDef).name()).append(']');
+        }
+      };
+      // Twice, for the uncached and cached templates
+      for (int i = 0; i < 2; ++i) {
+        // The first registered macro that matches wins, like a linear scan of the macros
+        assertEquals("[A_LONG]", processor.process(ctx, "${A}X"));
+        assertEquals("[A]Y", processor.process(ctx, "${A}Y"));
+        assertEquals("[B]X", processor.process(ctx, "${B}X"));
+        assertEquals("[A]-[B]-[A_LONG]", processor.process(ctx, "${A}-${B}-${A}X"));
+      }
+    }
+  }
+
   private String process(String snippet) {
     return process(snippet, true);
   }
@@ -148,10 +268,55 @@ public class SnippetProcessorTest {
   }
 
   static enum TestMacros implements SnippetMacroType {
-    TEST;
+    TEST,
+    NESTED,
+    PART;
 
     @Override public String key() {
-      return "${TEST}";
+      return "${" + name() + "}";
+    }
+  }
+
+  static enum OverlappingMacros implements SnippetMacroType {
+    A_LONG("${A}X"),
+    A("${A}"),
+    A_DUPLICATE("${A}"),
+    B("${B}"),
+    B_LONG("${B}X");
+
+    private final String key;
+
+    private OverlappingMacros(String key) {
+      this.key = key;
+    }
+
+    @Override public String key() {
+      return key;
+    }
+  }
+
+  static class TestProcessor extends SnippetProcessor {
+    TestProcessor(int templateCacheBytes) {
+      super(templateCacheBytes);
+    }
+
+    @Override protected List<SnippetMacroType> registerMacros() {
+      return ImmutableList.<SnippetMacroType>copyOf(TestMacros.values());
+    }
+
+    @Override protected void processMacroAt(
+        SnippetProcessorContext ctx, StringBuilder sb, SnippetMacroType macroDef) {
+      switch ((TestMacros) macroDef) {
+        case TEST:
+          sb.append("test");
+          break;
+        case NESTED:
+          sb.append("(${TEST})");
+          break;
+        case PART:
+          sb.append("ST}");
+          break;
+      }
     }
   }
 }